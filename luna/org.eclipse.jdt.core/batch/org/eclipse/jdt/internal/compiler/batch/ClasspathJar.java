@@ -10,9 +10,12 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.compiler.batch;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -22,20 +25,36 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.classfmt.BinaryTypeCache;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
 import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.util.JarIndex;
 import org.eclipse.jdt.internal.compiler.util.ManifestAnalyzer;
 import org.eclipse.jdt.internal.compiler.util.Util;
 
 @SuppressWarnings({"rawtypes", "unchecked"})
 public class ClasspathJar extends ClasspathLocation {
 
+/**
+ * The directory in which the indexes of the jars are kept between compilations, given by the system property
+ * <code>jdt.compiler.jarIndexDirectory</code>. Indexes are only kept in memory when it is not set.
+ */
+static final File IndexDirectory;
+static {
+	String directory = System.getProperty("jdt.compiler.jarIndexDirectory"); //$NON-NLS-1$
+	IndexDirectory = directory == null ? null : new File(directory);
+}
+
 protected File file;
 protected ZipFile zipFile;
+protected JarIndex index; // null if the jar is read through its zip file
+protected RandomAccessFile indexedFile; // the jar read through its index, opened on first read
 protected boolean closeZipFileAtEnd;
 protected Hashtable packageCache;
+protected long lastModified;
+protected long length;
 
 public ClasspathJar(File file, boolean closeZipFileAtEnd,
 		AccessRuleSet accessRuleSet, String destinationPath) {
@@ -51,9 +70,16 @@ public List fetchLinkedJars(FileSystem.ClasspathSectionProblemReporter problemRe
 	try {
 		initialize();
 		ArrayList result = new ArrayList();
-		ZipEntry manifest = this.zipFile.getEntry("META-INF/MANIFEST.MF"); //$NON-NLS-1$
-		if (manifest != null) { // non-null implies regular file
-			inputStream = this.zipFile.getInputStream(manifest);
+		if (this.index != null) {
+			byte[] manifest = this.index.getEntryBytes("META-INF/MANIFEST.MF", getIndexedChannel()); //$NON-NLS-1$
+			if (manifest != null)
+				inputStream = new ByteArrayInputStream(manifest);
+		} else {
+			ZipEntry manifest = this.zipFile.getEntry("META-INF/MANIFEST.MF"); //$NON-NLS-1$
+			if (manifest != null) // non-null implies regular file
+				inputStream = this.zipFile.getInputStream(manifest);
+		}
+		if (inputStream != null) {
 			ManifestAnalyzer analyzer = new ManifestAnalyzer();
 			boolean success = analyzer.analyzeManifestContents(inputStream);
 			List calledFileNames = analyzer.getCalledFileNames();
@@ -95,7 +121,9 @@ public NameEnvironmentAnswer findClass(char[] typeName, String qualifiedPackageN
 		return null; // most common case
 
 	try {
-		ClassFileReader reader = ClassFileReader.read(this.zipFile, qualifiedBinaryFileName);
+		ClassFileReader reader = this.index != null
+			? BinaryTypeCache.Shared.read(this.index, getIndexedChannel(), qualifiedBinaryFileName, null)
+			: BinaryTypeCache.Shared.read(this.zipFile, this.lastModified, this.length, qualifiedBinaryFileName, null);
 		if (reader != null)
 			return new NameEnvironmentAnswer(reader, fetchAccessRestriction(qualifiedBinaryFileName));
 	} catch(ClassFormatException e) {
@@ -109,8 +137,14 @@ public char[][][] findTypeNames(String qualifiedPackageName) {
 	if (!isPackage(qualifiedPackageName))
 		return null; // most common case
 
+	ZipFile jar;
+	try {
+		jar = getZipFile();
+	} catch (IOException e) {
+		return null;
+	}
 	ArrayList answers = new ArrayList();
-	nextEntry : for (Enumeration e = this.zipFile.entries(); e.hasMoreElements(); ) {
+	nextEntry : for (Enumeration e = jar.entries(); e.hasMoreElements(); ) {
 		String fileName = ((ZipEntry) e.nextElement()).getName();
 
 		// add the package name & all of its parent packages
@@ -139,12 +173,41 @@ public char[][][] findTypeNames(String qualifiedPackageName) {
 	}
 	return null;
 }
-public void initialize() throws IOException {
-	if (this.zipFile == null) {
+/**
+ * Answer the zip file of the jar, opening it if the jar is only read through its index.
+ */
+protected ZipFile getZipFile() throws IOException {
+	if (this.zipFile == null)
 		this.zipFile = new ZipFile(this.file);
+	return this.zipFile;
+}
+/**
+ * Answer a channel on the jar to read its entries through its index, opening the jar on first use.
+ * Entries are read with positional reads rather than through a mapping, which would keep the jar
+ * locked until garbage collected.
+ */
+protected FileChannel getIndexedChannel() throws IOException {
+	if (this.indexedFile == null)
+		this.indexedFile = new RandomAccessFile(this.index.file, "r"); //$NON-NLS-1$
+	return this.indexedFile.getChannel();
+}
+public void initialize() throws IOException {
+	if (this.zipFile == null && this.index == null) {
+		// answering packages and class files from the index of the jar does not need to open it
+		this.index = JarIndex.get(this.file, IndexDirectory);
+		if (this.index != null) {
+			this.lastModified = this.index.lastModified;
+			this.length = this.index.length;
+		} else {
+			this.zipFile = new ZipFile(this.file);
+			this.lastModified = this.file.lastModified();
+			this.length = this.file.length();
+		}
 	}
 }
 public boolean isPackage(String qualifiedPackageName) {
+	if (this.index != null)
+		return this.index.isPackage(qualifiedPackageName);
 	if (this.packageCache != null)
 		return this.packageCache.containsKey(qualifiedPackageName);
 
@@ -168,13 +231,24 @@ public boolean isPackage(String qualifiedPackageName) {
 	return this.packageCache.containsKey(qualifiedPackageName);
 }
 public void reset() {
-	if (this.zipFile != null && this.closeZipFileAtEnd) {
-		try {
-			this.zipFile.close();
-		} catch(IOException e) {
-			// ignore
+	if (this.closeZipFileAtEnd) {
+		if (this.zipFile != null) {
+			try {
+				this.zipFile.close();
+			} catch(IOException e) {
+				// ignore
+			}
+			this.zipFile = null;
+		}
+		if (this.indexedFile != null) {
+			try {
+				this.indexedFile.close();
+			} catch(IOException e) {
+				// ignore
+			}
+			this.indexedFile = null;
 		}
-		this.zipFile = null;
+		this.index = null;
 	}
 	this.packageCache = null;
 }
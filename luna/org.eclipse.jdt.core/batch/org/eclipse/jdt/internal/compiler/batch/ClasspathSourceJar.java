@@ -14,6 +14,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
@@ -33,13 +34,19 @@ public class ClasspathSourceJar extends ClasspathJar {
 		if (!isPackage(qualifiedPackageName))
 			return null; // most common case
 
-		ZipEntry sourceEntry = this.zipFile.getEntry(qualifiedBinaryFileName.substring(0, qualifiedBinaryFileName.length() - 6)  + SUFFIX_STRING_java);
+		ZipFile sourceJar;
+		try {
+			sourceJar = getZipFile();
+		} catch (IOException e) {
+			return null;
+		}
+		ZipEntry sourceEntry = sourceJar.getEntry(qualifiedBinaryFileName.substring(0, qualifiedBinaryFileName.length() - 6)  + SUFFIX_STRING_java);
 		if (sourceEntry != null) {
 			try {
 				InputStream stream = null;
 				char[] contents = null; 
 				try {
-					stream = this.zipFile.getInputStream(sourceEntry);
+					stream = sourceJar.getInputStream(sourceEntry);
 					contents = Util.getInputStreamAsCharArray(stream, -1, this.encoding);
 				} finally {
 					if (stream != null)
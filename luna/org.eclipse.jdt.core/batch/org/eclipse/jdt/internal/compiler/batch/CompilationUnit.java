@@ -74,7 +74,7 @@ public char[] getContents() {
 
 	// otherwise retrieve it
 	try {
-		return Util.getFileCharContent(new File(new String(this.fileName)), this.encoding);
+		return Util.getFileCharContent(new File(new String(this.fileName)), this.encoding, true /* sources do not change while compiling */);
 	} catch (IOException e) {
 		this.contents = CharOperation.NO_CHAR; // assume no source if asked again
 		throw new AbortCompilationUnit(null, e, this.encoding);
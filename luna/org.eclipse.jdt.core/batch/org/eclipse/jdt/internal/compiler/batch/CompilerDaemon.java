@@ -0,0 +1,575 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipFile;
+
+import org.eclipse.jdt.internal.compiler.classfmt.BinaryTypeCache;
+import org.eclipse.jdt.internal.compiler.util.Util;
+
+/**
+ * A long-lived batch compiler which keeps its classpath warm across compilations.
+ * <br>
+ * The daemon listens on a loopback port and runs each compilation request with its own {@link Main}, exactly as
+ * if the compiler had been started with the same arguments, streaming the output back to the client.
+ * Jar files of the classpaths stay open between compilations along with their package tables, until the jar changes
+ * on disk (as seen from its timestamp and size). The class files read from them remain in the {@link BinaryTypeCache}.
+ * <br>
+ * Usage:
+ * <ul>
+ * <li><code>CompilerDaemon -server [-port &lt;port&gt;]</code> starts the daemon</li>
+ * <li><code>CompilerDaemon [-port &lt;port&gt;] &lt;compiler arguments&gt;</code> compiles through the daemon,
+ * 		or in process if no daemon is running in the same working directory</li>
+ * <li><code>CompilerDaemon [-port &lt;port&gt;] -stop</code> stops the daemon</li>
+ * </ul>
+ * Requests must present the token the daemon writes in a file of the user home directory, which is only readable
+ * by its owner. Since relative paths of the compiler arguments are resolved against the working directory, the
+ * daemon only accepts compilations from clients running in its own working directory.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class CompilerDaemon {
+
+	public static final int DEFAULT_PORT = 7705;
+	static final int MAX_CACHED_JARS = 256;
+	static final int TOKEN_LENGTH = 32; // hex digits of 16 random bytes
+
+	// client requests
+	static final String COMPILE = "compile"; //$NON-NLS-1$
+	static final String STOP = "stop"; //$NON-NLS-1$
+
+	// daemon answers
+	static final byte OUT = 1;
+	static final byte ERR = 2;
+	static final byte EXIT = 3;
+	static final byte REFUSED = 4;
+
+	int port;
+	String token;
+	File tokenFile;
+	File workingDirectory;
+	ServerSocket serverSocket;
+	LinkedHashMap jars; // canonical path of the jar -> JarState, in least recently used order
+
+	/**
+	 * The shared contents of a jar file, valid as long as the jar is not modified.
+	 */
+	static class JarState {
+		final File file;
+		final long lastModified;
+		final long length;
+		ZipFile zipFile;
+		Hashtable packageCache;
+		int users;
+		boolean discarded;
+
+		JarState(File file, long lastModified, long length) {
+			this.file = file;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+		synchronized ZipFile open() throws IOException {
+			if (this.zipFile == null)
+				this.zipFile = new ZipFile(this.file);
+			return this.zipFile;
+		}
+		synchronized void close() {
+			if (this.zipFile != null) {
+				try {
+					this.zipFile.close();
+				} catch (IOException e) {
+					// ignore
+				}
+				this.zipFile = null;
+			}
+		}
+	}
+
+	/**
+	 * A jar classpath entry of one compilation backed by the shared state of its jar.
+	 * Access rules and destination path remain the ones of the compilation.
+	 */
+	static class CachedClasspathJar extends ClasspathJar {
+		final JarState state;
+
+		CachedClasspathJar(JarState state, ClasspathJar jar) {
+			super(state.file, false, jar.accessRuleSet, jar.destinationPath);
+			this.state = state;
+			this.path = jar.getPath();
+		}
+		public void initialize() throws IOException {
+			this.zipFile = this.state.open();
+			this.lastModified = this.state.lastModified;
+			this.length = this.state.length;
+		}
+		public boolean isPackage(String qualifiedPackageName) {
+			if (this.packageCache == null) {
+				synchronized (this.state) {
+					if (this.state.packageCache == null) {
+						super.isPackage(qualifiedPackageName);
+						this.state.packageCache = this.packageCache;
+					}
+					this.packageCache = this.state.packageCache;
+				}
+			}
+			return this.packageCache.containsKey(qualifiedPackageName);
+		}
+		public void reset() {
+			// the jar stays open for the next compilations
+			this.zipFile = null;
+			this.packageCache = null;
+		}
+	}
+
+	/**
+	 * The batch compiler of one request, using the shared jars of the daemon.
+	 */
+	class DaemonMain extends Main {
+		ArrayList usedJars = new ArrayList();
+
+		DaemonMain(PrintWriter outWriter, PrintWriter errWriter) {
+			super(outWriter, errWriter, false /* systemExit */, null /* options */, null /* progress */);
+		}
+		public FileSystem getLibraryAccess() {
+			FileSystem.Classpath[] classpaths = new FileSystem.Classpath[this.checkedClasspaths.length];
+			for (int i = 0, length = classpaths.length; i < length; i++) {
+				FileSystem.Classpath classpath = this.checkedClasspaths[i];
+				if (classpath.getClass() == ClasspathJar.class) {
+					JarState state = acquire((ClasspathJar) classpath);
+					if (state != null) {
+						this.usedJars.add(state);
+						classpath.reset(); // may have been opened to read its manifest
+						classpath = new CachedClasspathJar(state, (ClasspathJar) classpath);
+					}
+				}
+				classpaths[i] = classpath;
+			}
+			return new FileSystem(classpaths, this.filenames);
+		}
+		public void performCompilation() {
+			try {
+				super.performCompilation();
+			} finally {
+				for (Iterator iterator = this.usedJars.iterator(); iterator.hasNext();)
+					release((JarState) iterator.next());
+				this.usedJars.clear();
+			}
+		}
+	}
+
+	/**
+	 * A writer which sends what is written as messages of the given kind.
+	 */
+	static class ChannelWriter extends Writer {
+		final DataOutputStream output;
+		final byte kind;
+
+		ChannelWriter(DataOutputStream output, byte kind) {
+			this.output = output;
+			this.kind = kind;
+		}
+		public void write(char[] buffer, int offset, int length) throws IOException {
+			if (length == 0) return;
+			synchronized (this.output) {
+				this.output.writeByte(this.kind);
+				writeString(this.output, new String(buffer, offset, length));
+			}
+		}
+		public void flush() throws IOException {
+			synchronized (this.output) {
+				this.output.flush();
+			}
+		}
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+public CompilerDaemon(int port) {
+	this.port = port;
+	this.tokenFile = new File(System.getProperty("user.home"), ".ecj-daemon-" + port); //$NON-NLS-1$ //$NON-NLS-2$
+	this.jars = new LinkedHashMap(16, 0.75f, true);
+}
+
+public static void main(String[] argv) {
+	int port = Integer.getInteger("jdt.compiler.daemon.port", DEFAULT_PORT).intValue(); //$NON-NLS-1$
+	boolean server = false, stop = false;
+	int start = 0;
+	while (start < argv.length) {
+		if ("-server".equals(argv[start])) { //$NON-NLS-1$
+			server = true;
+		} else if ("-stop".equals(argv[start])) { //$NON-NLS-1$
+			stop = true;
+		} else if ("-port".equals(argv[start]) && start + 1 < argv.length) { //$NON-NLS-1$
+			try {
+				port = Integer.parseInt(argv[++start]);
+			} catch (NumberFormatException e) {
+				printUsage();
+				System.exit(-1);
+			}
+		} else {
+			break; // compiler arguments
+		}
+		start++;
+	}
+	String[] arguments = new String[argv.length - start];
+	System.arraycopy(argv, start, arguments, 0, arguments.length);
+
+	CompilerDaemon daemon = new CompilerDaemon(port);
+	if (server) {
+		try {
+			daemon.serve();
+			System.exit(0);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(-1);
+		}
+	} else if (stop) {
+		System.exit(daemon.request(STOP, arguments) ? 0 : -1);
+	} else if (!daemon.request(COMPILE, arguments)) {
+		// no daemon to compile for us
+		Main.main(arguments);
+	}
+}
+
+static void printUsage() {
+	System.err.println(messages().bind("daemon.usage")); //$NON-NLS-1$
+}
+
+static Main messages() {
+	return new Main(new PrintWriter(System.out), new PrintWriter(System.err), false);
+}
+
+/**
+ * Accepts requests until a client asks the daemon to stop.
+ */
+public void serve() throws IOException {
+	this.workingDirectory = new File(System.getProperty("user.dir")).getCanonicalFile(); //$NON-NLS-1$
+	byte[] bytes = new byte[16];
+	new SecureRandom().nextBytes(bytes);
+	StringBuffer buffer = new StringBuffer(32);
+	for (int i = 0; i < bytes.length; i++)
+		buffer.append(Integer.toHexString((bytes[i] & 0xFF) | 0x100).substring(1));
+	this.token = buffer.toString();
+
+	this.serverSocket = new ServerSocket(this.port, 50, InetAddress.getByName("127.0.0.1")); //$NON-NLS-1$
+	try {
+		writeTokenFile();
+		System.out.println(messages().bind("daemon.started", new String[] { String.valueOf(this.port), this.tokenFile.getPath() })); //$NON-NLS-1$
+		while (true) {
+			final Socket socket;
+			try {
+				socket = this.serverSocket.accept();
+			} catch (IOException e) {
+				if (this.serverSocket.isClosed())
+					break; // stopped
+				throw e;
+			}
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					handle(socket);
+				}
+			}, "Compiler Daemon Request"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			thread.start();
+		}
+	} finally {
+		this.serverSocket.close();
+		this.tokenFile.delete();
+		synchronized (this.jars) {
+			for (Iterator iterator = this.jars.values().iterator(); iterator.hasNext();)
+				discard((JarState) iterator.next());
+			this.jars.clear();
+		}
+	}
+	System.out.println(messages().bind("daemon.stopped")); //$NON-NLS-1$
+}
+
+private void writeTokenFile() throws IOException {
+	// only the owner may talk to the daemon, the token is written once nobody else can open the file
+	this.tokenFile.delete();
+	if (!createOwnerOnlyFile(this.tokenFile)) {
+		if (!this.tokenFile.createNewFile())
+			throw new IOException(this.tokenFile.getPath());
+		this.tokenFile.setReadable(false, false);
+		this.tokenFile.setReadable(true, true);
+		this.tokenFile.setWritable(false, false);
+		this.tokenFile.setWritable(true, true);
+	}
+	FileOutputStream stream = new FileOutputStream(this.tokenFile);
+	try {
+		stream.write(this.token.getBytes(Util.UTF_8));
+	} finally {
+		stream.close();
+	}
+}
+
+/*
+ * Create the given file with permissions for its owner only (rw-------), answer false if the runtime
+ * (before Java 7) or the file system (not POSIX) does not support creating a file with permissions.
+ * The Java 7 API is called reflectively since the compiler still runs on Java 6.
+ */
+private static boolean createOwnerOnlyFile(File file) throws IOException {
+	try {
+		Class permissionsClass = Class.forName("java.nio.file.attribute.PosixFilePermissions"); //$NON-NLS-1$
+		Class attributeClass = Class.forName("java.nio.file.attribute.FileAttribute"); //$NON-NLS-1$
+		Class pathClass = Class.forName("java.nio.file.Path"); //$NON-NLS-1$
+		Object permissions = permissionsClass.getMethod("fromString", new Class[] { String.class }).invoke(null, new Object[] { "rw-------" }); //$NON-NLS-1$ //$NON-NLS-2$
+		Object attributes = Array.newInstance(attributeClass, 1);
+		Array.set(attributes, 0, permissionsClass.getMethod("asFileAttribute", new Class[] { Set.class }).invoke(null, new Object[] { permissions })); //$NON-NLS-1$
+		Object path = File.class.getMethod("toPath", new Class[0]).invoke(file, new Object[0]); //$NON-NLS-1$
+		Class.forName("java.nio.file.Files") //$NON-NLS-1$
+			.getMethod("createFile", new Class[] { pathClass, attributes.getClass() }) //$NON-NLS-1$
+			.invoke(null, new Object[] { path, attributes });
+		return true;
+	} catch (ClassNotFoundException e) {
+		return false;
+	} catch (NoSuchMethodException e) {
+		return false;
+	} catch (IllegalAccessException e) {
+		return false;
+	} catch (InvocationTargetException e) {
+		Throwable cause = e.getTargetException();
+		if (cause instanceof UnsupportedOperationException)
+			return false; // not a POSIX file system
+		if (cause instanceof IOException)
+			throw (IOException) cause; // e.g. the file already exists
+		throw new IOException(cause.toString());
+	}
+}
+
+void handle(Socket socket) {
+	try {
+		try {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			// the length is bounded before the token is checked, so that unauthenticated clients cannot make the daemon allocate large buffers
+			if (!MessageDigest.isEqual(this.token.getBytes(Util.UTF_8), readBytes(input, TOKEN_LENGTH)))
+				return;
+			String command = readString(input);
+			String directory = readString(input);
+			String[] arguments = new String[input.readInt()];
+			for (int i = 0; i < arguments.length; i++)
+				arguments[i] = readString(input);
+
+			int status;
+			if (STOP.equals(command)) {
+				status = 0;
+				this.serverSocket.close();
+			} else if (!this.workingDirectory.equals(new File(directory).getCanonicalFile())) {
+				// relative paths of the arguments would be resolved against the wrong directory
+				output.writeByte(REFUSED);
+				output.flush();
+				return;
+			} else {
+				status = compile(arguments, output);
+			}
+			synchronized (output) {
+				output.writeByte(EXIT);
+				output.writeInt(status);
+				output.flush();
+			}
+		} finally {
+			socket.close();
+		}
+	} catch (IOException e) {
+		// the client went away
+	}
+}
+
+private int compile(String[] arguments, DataOutputStream output) {
+	PrintWriter outWriter = new PrintWriter(new BufferedWriter(new ChannelWriter(output, OUT)));
+	PrintWriter errWriter = new PrintWriter(new BufferedWriter(new ChannelWriter(output, ERR)));
+	boolean success;
+	try {
+		success = new DaemonMain(outWriter, errWriter).compile(arguments);
+	} catch (Error e) {
+		// keep the daemon alive, the next compilation starts from scratch
+		e.printStackTrace(errWriter);
+		success = false;
+	}
+	outWriter.flush();
+	errWriter.flush();
+	return success ? 0 : -1;
+}
+
+/**
+ * Sends a request to the daemon and prints its output.
+ * Answer false if the request could not be handled by a daemon.
+ */
+boolean request(String command, String[] arguments) {
+	String requestToken = readTokenFile();
+	if (requestToken == null) {
+		if (STOP.equals(command))
+			System.err.println(messages().bind("daemon.notRunning", String.valueOf(this.port))); //$NON-NLS-1$
+		return false;
+	}
+	Socket socket;
+	try {
+		socket = new Socket(InetAddress.getByName("127.0.0.1"), this.port); //$NON-NLS-1$
+	} catch (IOException e) {
+		if (STOP.equals(command))
+			System.err.println(messages().bind("daemon.notRunning", String.valueOf(this.port))); //$NON-NLS-1$
+		return false;
+	}
+	boolean answered = false;
+	try {
+		try {
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			writeString(output, requestToken);
+			writeString(output, command);
+			writeString(output, System.getProperty("user.dir")); //$NON-NLS-1$
+			output.writeInt(arguments.length);
+			for (int i = 0; i < arguments.length; i++)
+				writeString(output, arguments[i]);
+			output.flush();
+
+			DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			while (true) {
+				byte kind = input.readByte();
+				answered = true;
+				switch (kind) {
+					case OUT :
+						System.out.print(readString(input));
+						break;
+					case ERR :
+						System.err.print(readString(input));
+						break;
+					case EXIT :
+						int status = input.readInt();
+						System.out.flush();
+						System.err.flush();
+						if (COMPILE.equals(command))
+							System.exit(status);
+						return true;
+					default :
+						return false; // refused
+				}
+			}
+		} finally {
+			socket.close();
+		}
+	} catch (IOException e) {
+		if (!answered)
+			return false;
+		// the output of the compilation is incomplete, do not compile again
+		System.out.flush();
+		System.err.println(messages().bind("daemon.connectionLost", e.toString())); //$NON-NLS-1$
+		System.exit(-1);
+		return true;
+	}
+}
+
+private String readTokenFile() {
+	if (!this.tokenFile.isFile())
+		return null;
+	try {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.tokenFile), Util.UTF_8));
+		try {
+			return reader.readLine();
+		} finally {
+			reader.close();
+		}
+	} catch (IOException e) {
+		return null;
+	}
+}
+
+/*
+ * Answer the shared state of the given jar and mark it as used, null if the jar cannot be shared.
+ */
+JarState acquire(ClasspathJar jar) {
+	File file = new File(jar.getPath());
+	long lastModified = file.lastModified();
+	long length = file.length();
+	if (lastModified == 0)
+		return null; // missing
+	synchronized (this.jars) {
+		JarState state = (JarState) this.jars.get(file.getPath());
+		if (state != null && (state.lastModified != lastModified || state.length != length)) {
+			this.jars.remove(file.getPath());
+			discard(state);
+			state = null;
+		}
+		if (state == null) {
+			state = new JarState(file, lastModified, length);
+			this.jars.put(file.getPath(), state);
+			if (this.jars.size() > MAX_CACHED_JARS) {
+				Iterator iterator = this.jars.entrySet().iterator();
+				JarState eldest = (JarState) ((Map.Entry) iterator.next()).getValue();
+				iterator.remove();
+				discard(eldest);
+			}
+		}
+		state.users++;
+		return state;
+	}
+}
+
+void release(JarState state) {
+	synchronized (this.jars) {
+		if (--state.users == 0 && state.discarded)
+			state.close();
+	}
+}
+
+private void discard(JarState state) {
+	// still open for the compilations using it
+	state.discarded = true;
+	if (state.users == 0)
+		state.close();
+}
+
+static String readString(DataInputStream input) throws IOException {
+	return new String(readBytes(input, Integer.MAX_VALUE), Util.UTF_8);
+}
+
+static byte[] readBytes(DataInputStream input, int maxLength) throws IOException {
+	int length = input.readInt();
+	if (length < 0 || length > maxLength)
+		throw new EOFException();
+	byte[] bytes = new byte[length];
+	input.readFully(bytes);
+	return bytes;
+}
+
+static void writeString(DataOutputStream output, String string) throws IOException {
+	byte[] bytes = string.getBytes(Util.UTF_8);
+	output.writeInt(bytes.length);
+	output.write(bytes);
+}
+}
@@ -981,6 +981,18 @@ public class Main implements ProblemSeverities, SuffixConstants {
 								String.valueOf(compilerStats.generateTime),
 								String.valueOf(((int) (compilerStats.generateTime * 1000.0 / time)) / 10.0),
 							}));
+				if (compilerStats.acceptedUnits != 0) {
+					printlnOut(
+						this.main.bind("compile.pipelineTime", //$NON-NLS-1$
+							new String[] {
+								String.valueOf(compilerStats.parsedUnits),
+								String.valueOf(compilerStats.processedUnits),
+								String.valueOf(compilerStats.processWaitTime),
+								String.valueOf(compilerStats.processBlockedTime),
+								String.valueOf(compilerStats.acceptedUnits),
+								String.valueOf(compilerStats.acceptWaitTime),
+							}));
+				}
 			}
 		}
 
@@ -4107,6 +4119,7 @@ public void performCompilation() {
 	// temporary code to allow the compiler to revert to a single thread
 	String setting = System.getProperty("jdt.compiler.useSingleThread"); //$NON-NLS-1$
 	this.batchCompiler.useSingleThread = setting != null && setting.equals("true"); //$NON-NLS-1$
+	this.batchCompiler.parserThreads = Integer.getInteger("jdt.compiler.parserThreads", 0).intValue(); //$NON-NLS-1$
 
 	if (this.compilerOptions.complianceLevel >= ClassFileConstants.JDK1_6
 			&& this.compilerOptions.processAnnotations) {
@@ -549,6 +549,7 @@ public final class CompletionEngine
 	boolean resolvingStaticImports = false;
 	boolean insideQualifiedReference = false;
 	boolean noProposal = true;
+	boolean requireCompletionNodeOnly;
 	CategorizedProblem problem = null;
 	char[] fileName = null;
 	int startPosition, actualCompletionPosition, endPosition, offset;
@@ -664,6 +665,7 @@ public final class CompletionEngine
 		super(settings);
 		this.javaProject = javaProject;
 		this.requestor = requestor;
+		this.requireCompletionNodeOnly = requestor instanceof CompletionNodeRequestor;
 		this.nameEnvironment = nameEnvironment;
 		this.typeCache = new HashtableOfObject(5);
 		this.openedBinaryTypes = 0;
@@ -1692,6 +1694,12 @@ public final class CompletionEngine
 
 		setSourceAndTokenRange(astNode.sourceStart, astNode.sourceEnd);
 
+		if (this.requireCompletionNodeOnly) {
+			// only the completion node and its parent are requested, skip the computation of proposals
+			buildContext(astNode, astNodeParent, compilationUnitDeclaration, qualifiedBinding, scope);
+			return true;
+		}
+
 		scope = computeForbiddenBindings(astNode, astNodeParent, scope);
 		computeUninterestingBindings(astNode, astNodeParent, scope);
 		if(astNodeParent != null) {
@@ -1819,7 +1827,7 @@ public final class CompletionEngine
 				if (parsedUnit.currentPackage instanceof CompletionOnPackageReference) {
 					contextAccepted = true;
 					buildContext(parsedUnit.currentPackage, null, parsedUnit, null, null);
-					if(!this.requestor.isIgnored(CompletionProposal.PACKAGE_REF)) {
+					if(!this.requireCompletionNodeOnly && !this.requestor.isIgnored(CompletionProposal.PACKAGE_REF)) {
 						findPackages((CompletionOnPackageReference) parsedUnit.currentPackage);
 					}
 					if(this.noProposal && this.problem != null) {
@@ -1840,6 +1848,9 @@ public final class CompletionEngine
 							if ((this.unitScope = parsedUnit.scope) != null) {
 								contextAccepted = true;
 								buildContext(importReference, null, parsedUnit, null, null);
+								if (this.requireCompletionNodeOnly) {
+									return;
+								}
 
 								long positions = importReference.sourcePositions[importReference.tokens.length - 1];
 								setSourceAndTokenRange((int) (positions >>> 32), (int) positions);
@@ -1888,7 +1899,7 @@ public final class CompletionEngine
 						} else if(importReference instanceof CompletionOnKeyword) {
 							contextAccepted = true;
 							buildContext(importReference, null, parsedUnit, null, null);
-							if(!this.requestor.isIgnored(CompletionProposal.KEYWORD)) {
+							if(!this.requireCompletionNodeOnly && !this.requestor.isIgnored(CompletionProposal.KEYWORD)) {
 								setSourceAndTokenRange(importReference.sourceStart, importReference.sourceEnd);
 								CompletionOnKeyword keyword = (CompletionOnKeyword)importReference;
 								findKeywords(keyword.getToken(), keyword.getPossibleKeywords(), false, parsedUnit.currentPackage != null);
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.codeassist;
+
+import org.eclipse.jdt.core.CompletionContext;
+import org.eclipse.jdt.core.CompletionProposal;
+import org.eclipse.jdt.core.CompletionRequestor;
+
+/**
+ * A completion requestor which is only interested in the completion node and its parent.
+ * <p>
+ * When the {@link CompletionEngine} is invoked with such a requestor it stops after the completion
+ * node has been resolved and reports an extended {@link InternalCompletionContext} through
+ * {@link #acceptCompletionNode(InternalCompletionContext)}. No proposals are computed, no types are searched
+ * and the expected types and visible elements are not computed.
+ * </p>
+ */
+public abstract class CompletionNodeRequestor extends CompletionRequestor {
+
+	public CompletionNodeRequestor() {
+		super(true);
+		setRequireExtendedContext(true);
+	}
+
+	/**
+	 * Proposals are never computed for this requestor.
+	 */
+	public final void accept(CompletionProposal proposal) {
+		// ignore
+	}
+
+	public final void acceptContext(CompletionContext context) {
+		if (context instanceof InternalCompletionContext) {
+			acceptCompletionNode((InternalCompletionContext) context);
+		}
+	}
+
+	/**
+	 * Accepts the context of the completion node. The context is extended if a completion node was found.
+	 *
+	 * @param context the completion context
+	 */
+	public abstract void acceptCompletionNode(InternalCompletionContext context);
+}
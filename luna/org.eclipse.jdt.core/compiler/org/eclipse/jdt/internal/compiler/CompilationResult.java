@@ -372,7 +372,7 @@ public void record(CategorizedProblem newProblem, ReferenceContext referenceCont
 	return;
 }
 
-public void record(CategorizedProblem newProblem, ReferenceContext referenceContext, boolean mandatoryError) {
+public synchronized void record(CategorizedProblem newProblem, ReferenceContext referenceContext, boolean mandatoryError) {
 	//new Exception("VERBOSE PROBLEM REPORTING").printStackTrace();
 	if(newProblem.getID() == IProblem.Task) {
 		recordTask(newProblem);
@@ -418,7 +418,7 @@ private void recordTask(CategorizedProblem newProblem) {
 	}
 	this.tasks[this.taskCount++] = newProblem;
 }
-public void removeProblem(CategorizedProblem problem) {
+public synchronized void removeProblem(CategorizedProblem problem) {
 	if (this.problemsMap != null) this.problemsMap.remove(problem);
 	if (this.firstErrors != null) this.firstErrors.remove(problem);
 	if (problem.isError()) {
@@ -52,6 +52,7 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 	public int annotationProcessorStartIndex = 0;
 	public ReferenceBinding[] referenceBindings;
 	public boolean useSingleThread = true; // by default the compiler will not use worker threads to read/process/write
+	public int parserThreads = 0; // threads parsing method bodies ahead of processing when not using a single thread (0: one per processor, -1: none)
 
 	// number of initial units parsed at once (-1: none)
 
@@ -687,6 +688,19 @@ public class Compiler implements ITypeRequestor, ProblemSeverities {
 		this.parser = new Parser(this.problemReporter, this.options.parseLiteralExpressionsAsConstants);
 	}
 
+	/**
+	 * Answer a new parser used by a parsing thread of the processing pipeline to parse method bodies,
+	 * or null if method bodies can only be parsed by the parser of this compiler (e.g. a subclass records
+	 * additional information while parsing).
+	 * Each parser has its own problem reporter since it remembers the reference context of the reported problems.
+	 */
+	public Parser newBodyParser() {
+		if (this.parser == null || this.parser.getClass() != Parser.class)
+			return null;
+		ProblemReporter reporter = new ProblemReporter(this.problemReporter.policy, this.options, this.problemReporter.problemFactory);
+		return new Parser(reporter, this.options.parseLiteralExpressionsAsConstants);
+	}
+
 	/**
 	 * Add the initial set of compilation units into the loop
 	 *  ->  build compilation unit declarations, their bindings and record their results.
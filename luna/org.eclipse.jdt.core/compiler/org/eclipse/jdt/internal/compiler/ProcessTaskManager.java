@@ -11,32 +11,83 @@
 
 package org.eclipse.jdt.internal.compiler;
 
+import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.eclipse.jdt.internal.compiler.ast.CompilationUnitDeclaration;
+import org.eclipse.jdt.internal.compiler.impl.CompilerStats;
+import org.eclipse.jdt.internal.compiler.parser.Parser;
 import org.eclipse.jdt.internal.compiler.util.Messages;
 
+/**
+ * Pipeline used by the compiler when it does not run on a single thread:
+ * <ul>
+ * <li>method bodies are parsed ahead of time by a pool of parsing threads, each one using its own parser</li>
+ * <li>units are resolved, analysed and generated in order by the processing thread, since these phases
+ * 		complete bindings of the shared lookup environment</li>
+ * <li>processed units are accepted in order by the compiler thread (see {@link #removeNextUnit()})</li>
+ * </ul>
+ * The stages are connected by bounded queues: a stage blocks when the next one falls behind and
+ * waits without polling when no unit is available.
+ */
 public class ProcessTaskManager implements Runnable {
 
 	Compiler compiler;
 	private int unitIndex;
-	private Thread processingThread;
-	CompilationUnitDeclaration unitToProcess;
-	private Throwable caughtException;
+	private volatile Thread processingThread;
+	volatile CompilationUnitDeclaration unitToProcess;
+	private volatile Throwable caughtException;
+
+	// parsing stage (null if method bodies are parsed by the processing thread)
+	private ExecutorService parsingService;
+	private ConcurrentLinkedQueue<Parser> idleParsers;
+	private LinkedList<CompilationUnitDeclaration> parsingUnits;
+	private LinkedList<Future<CompilationUnitDeclaration>> parsingTasks;
+	private int parseIndex, parseAhead;
+
+	// units waiting to be accepted, followed by END once the processing thread is done
+	private BlockingQueue<Object> processedUnits;
+	private static final Object END = new Object();
 
-	// queue
-	volatile int currentIndex, availableIndex, size, sleepCount;
-	CompilationUnitDeclaration[] units;
+	// stage counters
+	final AtomicLong parsedCount = new AtomicLong(), parseTime = new AtomicLong();
+	long processWaitTime, processBlockedTime, acceptWaitTime;
+	int processedCount, acceptedCount;
 
 	public static final int PROCESSED_QUEUE_SIZE = 12;
+	public static final int PARSED_UNITS_PER_THREAD = 4;
 
 public ProcessTaskManager(Compiler compiler) {
 	this.compiler = compiler;
 	this.unitIndex = 0;
+	this.processedUnits = new ArrayBlockingQueue<Object>(PROCESSED_QUEUE_SIZE);
 
-	this.currentIndex = 0;
-	this.availableIndex = 0;
-	this.size = PROCESSED_QUEUE_SIZE;
-	this.sleepCount = 0; // 0 is no one, +1 is the processing thread & -1 is the writing/main thread
-	this.units = new CompilationUnitDeclaration[this.size];
+	int threads = compiler.parserThreads == 0 ? Runtime.getRuntime().availableProcessors() : compiler.parserThreads;
+	Parser parser = threads > 0 ? compiler.newBodyParser() : null;
+	if (parser != null) {
+		this.idleParsers = new ConcurrentLinkedQueue<Parser>();
+		this.idleParsers.add(parser);
+		this.parsingUnits = new LinkedList<CompilationUnitDeclaration>();
+		this.parsingTasks = new LinkedList<Future<CompilationUnitDeclaration>>();
+		this.parseIndex = 0;
+		this.parseAhead = threads * PARSED_UNITS_PER_THREAD;
+		this.parsingService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Compiler Parsing Task"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
 
 	synchronized (this) {
 		this.processingThread = new Thread(this, "Compiler Processing Task"); //$NON-NLS-1$
@@ -45,84 +96,94 @@ public ProcessTaskManager(Compiler compiler) {
 	}
 }
 
-// add unit to the queue - wait if no space is available
-private synchronized void addNextUnit(CompilationUnitDeclaration newElement) {
-	while (this.units[this.availableIndex] != null) {
-		//System.out.print('a');
-		//if (this.sleepCount < 0) throw new IllegalStateException(new Integer(this.sleepCount).toString());
-		this.sleepCount = 1;
-		try {
-			wait(250);
-		} catch (InterruptedException ignore) {
-			// ignore
+// answer the next unit to process with its method bodies parsed - wait if the parsing threads are behind
+private CompilationUnitDeclaration nextParsedUnit() {
+	if (this.parsingService == null)
+		return this.compiler.getUnitToProcess(this.unitIndex);
+
+	// keep the parsing threads ahead, more units can be injected by the lookup environment while processing
+	CompilationUnitDeclaration next;
+	while (this.parsingTasks.size() < this.parseAhead && (next = this.compiler.getUnitToProcess(this.parseIndex)) != null) {
+		this.parseIndex++;
+		this.parsingUnits.add(next);
+		this.parsingTasks.add(this.parsingService.submit(parseTask(next)));
+	}
+	Future<CompilationUnitDeclaration> task = this.parsingTasks.poll();
+	if (task == null)
+		return null;
+	this.unitToProcess = this.parsingUnits.poll();
+
+	long waitStart = System.currentTimeMillis();
+	try {
+		while (true) {
+			try {
+				return task.get();
+			} catch (InterruptedException ignore) {
+				// ignore
+			}
 		}
-		this.sleepCount = 0;
+	} catch (ExecutionException e) {
+		// rethrow the exception of the parsing thread as if the processing thread had parsed the unit
+		Throwable cause = e.getCause();
+		if (cause instanceof Error)
+			throw (Error) cause;
+		throw (RuntimeException) cause;
+	} finally {
+		this.processWaitTime += System.currentTimeMillis() - waitStart;
 	}
+}
 
-	this.units[this.availableIndex++] = newElement;
-	if (this.availableIndex >= this.size)
-		this.availableIndex = 0;
-	if (this.sleepCount <= -1)
-		notify(); // wake up writing thread to accept next unit - could be the last one - must avoid deadlock
+private Callable<CompilationUnitDeclaration> parseTask(final CompilationUnitDeclaration unit) {
+	return new Callable<CompilationUnitDeclaration>() {
+		public CompilationUnitDeclaration call() {
+			Parser parser = ProcessTaskManager.this.idleParsers.poll();
+			if (parser == null)
+				parser = ProcessTaskManager.this.compiler.newBodyParser();
+			long parseStart = System.currentTimeMillis();
+			parser.getMethodBodies(unit); // a parser which failed is not reused
+			ProcessTaskManager.this.parseTime.addAndGet(System.currentTimeMillis() - parseStart);
+			ProcessTaskManager.this.parsedCount.incrementAndGet();
+			ProcessTaskManager.this.idleParsers.add(parser);
+			return unit;
+		}
+	};
 }
 
 public CompilationUnitDeclaration removeNextUnit() throws Error {
-	CompilationUnitDeclaration next = null;
-	boolean yield = false;
-	synchronized (this) {
-		next = this.units[this.currentIndex];
-		if (next == null || this.caughtException != null) {
-			do {
-				if (this.processingThread == null) {
-					if (this.caughtException != null) {
-						// rethrow the caught exception from the processingThread in the main compiler thread
-						if (this.caughtException instanceof Error)
-							throw (Error) this.caughtException;
-						throw (RuntimeException) this.caughtException;
-					}
-					return null;
-				}
-				//System.out.print('r');
-				//if (this.sleepCount > 0) throw new IllegalStateException(new Integer(this.sleepCount).toString());
-				this.sleepCount = -1;
-				try {
-					wait(100);
-				} catch (InterruptedException ignore) {
-					// ignore
-				}
-				this.sleepCount = 0;
-				next = this.units[this.currentIndex];
-			} while (next == null);
+	Object next = null;
+	boolean interrupted = false;
+	long waitStart = System.currentTimeMillis();
+	while (next == null) {
+		try {
+			next = this.processedUnits.take(); // waits if no units are in the processed queue
+		} catch (InterruptedException e) {
+			interrupted = true;
 		}
+	}
+	this.acceptWaitTime += System.currentTimeMillis() - waitStart;
+	if (interrupted)
+		Thread.currentThread().interrupt();
 
-		this.units[this.currentIndex++] = null;
-		if (this.currentIndex >= this.size)
-			this.currentIndex = 0;
-		if (this.sleepCount >= 1 && ++this.sleepCount > 4) {
-			notify(); // wake up processing thread to add next unit but only after removing some elements first
-			yield = this.sleepCount > 8;
+	if (next == END) {
+		if (this.caughtException != null) {
+			// rethrow the caught exception from the processingThread in the main compiler thread
+			if (this.caughtException instanceof Error)
+				throw (Error) this.caughtException;
+			throw (RuntimeException) this.caughtException;
 		}
+		return null;
 	}
-	if (yield)
-		Thread.yield();
-	return next;
+	this.acceptedCount++;
+	return (CompilationUnitDeclaration) next;
 }
 
 public void run() {
-	while (this.processingThread != null) {
-		this.unitToProcess = null;
-		int index = -1;
-		try {
-			synchronized (this) {
-				if (this.processingThread == null) return;
-
-				this.unitToProcess = this.compiler.getUnitToProcess(this.unitIndex);
-				if (this.unitToProcess == null) {
-					this.processingThread = null;
-					return;
-				}
-				index = this.unitIndex++;
-			}
+	try {
+		while (this.processingThread != null) {
+			this.unitToProcess = nextParsedUnit();
+			if (this.unitToProcess == null)
+				return;
+			int index = this.unitIndex++;
 
 			try {
 				this.compiler.reportProgress(Messages.bind(Messages.compilation_processing, new String(this.unitToProcess.getFileName())));
@@ -136,23 +197,30 @@ public void run() {
 						}));
 				this.compiler.process(this.unitToProcess, index);
 			} finally {
-				if (this.unitToProcess != null)
-					this.unitToProcess.cleanUp();
+				this.unitToProcess.cleanUp();
 			}
+			this.processedCount++;
 
-			addNextUnit(this.unitToProcess);
-		} catch (Error e) {
-			synchronized (this) {
-				this.processingThread = null;
-				this.caughtException = e;
-			}
-			return;
-		} catch (RuntimeException e) {
-			synchronized (this) {
-				this.processingThread = null;
-				this.caughtException = e;
-			}
+			long blockedStart = System.currentTimeMillis();
+			put(this.unitToProcess); // waits if the compiler thread has not accepted the previous units yet
+			this.processBlockedTime += System.currentTimeMillis() - blockedStart;
+		}
+	} catch (Error e) {
+		this.caughtException = e;
+	} catch (RuntimeException e) {
+		this.caughtException = e;
+	} finally {
+		put(END);
+	}
+}
+
+private void put(Object element) {
+	while (true) {
+		try {
+			this.processedUnits.put(element);
 			return;
+		} catch (InterruptedException ignore) {
+			// ignore
 		}
 	}
 }
@@ -164,13 +232,30 @@ public void shutdown() {
 			if (this.processingThread != null) {
 				t = this.processingThread;
 				this.processingThread = null;
-				notifyAll();
 			}
 		}
-		if (t != null)
+		if (t != null) {
+			// make room for the unit being processed so that the processing thread can stop
+			this.processedUnits.clear();
 			t.join(250); // do not wait forever
+			this.processedUnits.clear();
+		}
 	} catch (InterruptedException ignored) {
 		// ignore
+	} finally {
+		if (this.parsingService != null) {
+			// tasks already submitted still complete, the processing thread may be waiting for them
+			this.parsingService.shutdown();
+			this.parsingService = null;
+		}
+		CompilerStats stats = this.compiler.stats;
+		stats.parseTime += this.parseTime.get();
+		stats.parsedUnits += this.parsedCount.get();
+		stats.processedUnits += this.processedCount;
+		stats.acceptedUnits += this.acceptedCount;
+		stats.processWaitTime += this.processWaitTime;
+		stats.processBlockedTime += this.processBlockedTime;
+		stats.acceptWaitTime += this.acceptWaitTime;
 	}
 }
 }
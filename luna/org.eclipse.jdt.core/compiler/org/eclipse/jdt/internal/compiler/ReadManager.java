@@ -8,25 +8,32 @@
  * Contributors:
  *     IBM Corporation - initial API and implementation
  *******************************************************************************/
-
 package org.eclipse.jdt.internal.compiler;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
 import org.eclipse.jdt.internal.compiler.env.ICompilationUnit;
 
-@SuppressWarnings({"rawtypes", "unchecked"})
+/**
+ * Reads the contents of the units to compile ahead of the parser.
+ * <br>
+ * Reading threads claim the next unit to read with an atomic counter and publish its contents in the slot
+ * of the unit, the parser thread takes the contents from the slot or reads the unit itself if no reading
+ * thread claimed it yet. A thread only parks when it has to wait:
+ * the parser thread when the contents of the next unit are not read yet, a reading thread when it would
+ * read more than CACHE_SIZE units ahead of the parser.
+ */
 public class ReadManager implements Runnable {
 	ICompilationUnit[] units;
-	int nextFileToRead;
-	ICompilationUnit[] filesRead;
-	char[][] contentsRead;
-	int readyToReadPosition;
-	int nextAvailablePosition;
-	Thread[] readingThreads;
-	char[] readInProcessMarker = new char[0];
-	int sleepingThreadCount;
-	private Throwable caughtException;
+	AtomicInteger nextFileToRead;
+	AtomicReferenceArray<char[]> contentsRead;
+	volatile int nextFileToParse;
+	volatile Thread[] readingThreads;
+	volatile Thread waitingThread;
+	final char[] readInProcessMarker = new char[0];
+	private volatile Throwable caughtException;
 
 	static final int START_CUSHION = 5;
 	public static final int THRESHOLD = 10;
@@ -34,169 +41,128 @@ public class ReadManager implements Runnable {
 
 public ReadManager(ICompilationUnit[] files, int length) {
 	// start the background threads to read the file's contents
-	int threadCount = 0;
-	try {
-		Class runtime = Class.forName("java.lang.Runtime"); //$NON-NLS-1$
-		java.lang.reflect.Method m = runtime.getDeclaredMethod("availableProcessors", new Class[0]); //$NON-NLS-1$
-		if (m != null) {
-			Integer result = (Integer) m.invoke(Runtime.getRuntime(), (Object[]) null);
-			threadCount = result.intValue() + 1;
-			if (threadCount < 2)
-				threadCount = 0;
-			else if (threadCount > CACHE_SIZE)
-				threadCount = CACHE_SIZE;
-		}
-	} catch (IllegalAccessException ignored) { // ignored
-	} catch (ClassNotFoundException e) { // ignored
-	} catch (SecurityException e) { // ignored
-	} catch (NoSuchMethodException e) { // ignored
-	} catch (IllegalArgumentException e) { // ignored
-	} catch (InvocationTargetException e) { // ignored
-	}
+	int threadCount = Runtime.getRuntime().availableProcessors() + 1;
+	if (threadCount < 2)
+		threadCount = 0;
+	else if (threadCount > CACHE_SIZE)
+		threadCount = CACHE_SIZE;
 
 	if (threadCount > 0) {
-		synchronized (this) {
-			this.units = new ICompilationUnit[length];
-			System.arraycopy(files, 0, this.units, 0, length);
-			this.nextFileToRead = START_CUSHION; // skip some files to reduce the number of times we have to wait
-			this.filesRead = new ICompilationUnit[CACHE_SIZE];
-			this.contentsRead = new char[CACHE_SIZE][];
-			this.readyToReadPosition = 0;
-			this.nextAvailablePosition = 0;
-			this.sleepingThreadCount = 0;
-			this.readingThreads = new Thread[threadCount];
-			for (int i = threadCount; --i >= 0;) {
-				this.readingThreads[i] = new Thread(this, "Compiler Source File Reader"); //$NON-NLS-1$
-				this.readingThreads[i].setDaemon(true);
-				this.readingThreads[i].start();
-			}
+		this.units = new ICompilationUnit[length];
+		System.arraycopy(files, 0, this.units, 0, length);
+		this.nextFileToRead = new AtomicInteger(START_CUSHION); // skip some files to reduce the number of times we have to wait
+		this.contentsRead = new AtomicReferenceArray<char[]>(length);
+		this.nextFileToParse = 0;
+		Thread[] threads = new Thread[threadCount];
+		for (int i = threadCount; --i >= 0;) {
+			threads[i] = new Thread(this, "Compiler Source File Reader"); //$NON-NLS-1$
+			threads[i].setDaemon(true);
 		}
+		this.readingThreads = threads;
+		for (int i = threadCount; --i >= 0;)
+			threads[i].start();
 	}
 }
 
 public char[] getContents(ICompilationUnit unit) throws Error {
-	if (this.readingThreads == null || this.units.length == 0) {
-		if (this.caughtException != null) {
-			// rethrow the caught exception from the readingThreads in the main compiler thread
-			if (this.caughtException instanceof Error)
-				throw (Error) this.caughtException;
-			throw (RuntimeException) this.caughtException;
-		}
+	rethrowCaughtException();
+	if (this.units == null)
 		return unit.getContents();
+
+	int unitIndex = this.nextFileToParse;
+	if (unitIndex >= this.units.length || this.units[unitIndex] != unit) {
+		// must make sure we're reading ahead of the unit
+		unitIndex = 0;
+		for (int l = this.units.length; unitIndex < l; unitIndex++)
+			if (this.units[unitIndex] == unit) break;
+		if (unitIndex == this.units.length || unitIndex < this.nextFileToParse)
+			return unit.getContents(); // not included in the initial files or already read - should not happen
+		// skip the units which will not be read and start over from this one
+		for (int i = this.nextFileToParse; i < unitIndex; i++)
+			this.contentsRead.set(i, null);
+		this.nextFileToParse = unitIndex;
+		int next = this.nextFileToRead.get();
+		while (next < unitIndex + START_CUSHION && !this.nextFileToRead.compareAndSet(next, unitIndex + START_CUSHION))
+			next = this.nextFileToRead.get();
+		wakeUpReadingThreads();
 	}
 
-	boolean yield = false;
-	char[] result = null;
-	synchronized (this) {
-		if (unit == this.filesRead[this.readyToReadPosition]) {
-			result = this.contentsRead[this.readyToReadPosition];
-			while (result == this.readInProcessMarker || result == null) {
-				// let the readingThread know we're waiting
-				//System.out.print('|');
-				this.contentsRead[this.readyToReadPosition] = null;
-				try {
-					wait(250);
-				} catch (InterruptedException ignore) { // ignore
-				}
-				if (this.caughtException != null) {
-					// rethrow the caught exception from the readingThreads in the main compiler thread
-					if (this.caughtException instanceof Error)
-						throw (Error) this.caughtException;
-					throw (RuntimeException) this.caughtException;
-				}
-				result = this.contentsRead[this.readyToReadPosition];
-			}
-			// free spot for next file
-			this.filesRead[this.readyToReadPosition] = null;
-			this.contentsRead[this.readyToReadPosition] = null;
-			if (++this.readyToReadPosition >= this.contentsRead.length)
-				this.readyToReadPosition = 0;
-			if (this.sleepingThreadCount > 0) {
-				//System.out.print('+');
-				//System.out.print(this.nextFileToRead);
-				notify();
-				yield = this.sleepingThreadCount == this.readingThreads.length;
-			}
-		} else {
-			// must make sure we're reading ahead of the unit
-			int unitIndex = 0;
-			for (int l = this.units.length; unitIndex < l; unitIndex++)
-				if (this.units[unitIndex] == unit) break;
-			if (unitIndex == this.units.length) {
-				// attempting to read a unit that was not included in the initial files - should not happen
-				this.units = new ICompilationUnit[0]; // stop looking for more
-			} else if (unitIndex >= this.nextFileToRead) {
-				// start over
-				//System.out.println(unitIndex + " vs " + this.nextFileToRead);
-				this.nextFileToRead = unitIndex + START_CUSHION;
-				this.readyToReadPosition = 0;
-				this.nextAvailablePosition = 0;
-				this.filesRead = new ICompilationUnit[CACHE_SIZE];
-				this.contentsRead = new char[CACHE_SIZE][];
-				notifyAll();
-			}
-		}
+	char[] result = this.contentsRead.get(unitIndex);
+	if (result == null && this.contentsRead.compareAndSet(unitIndex, null, this.readInProcessMarker)) {
+		// no reading thread took the unit, read it here
+		result = unit.getContents();
+	} else {
+		// a reading thread took the unit, wait for its contents
+		this.waitingThread = Thread.currentThread();
+		while ((result = this.contentsRead.get(unitIndex)) == this.readInProcessMarker && this.readingThreads != null)
+			LockSupport.park(this);
+		this.waitingThread = null;
+		rethrowCaughtException();
+		if (result == this.readInProcessMarker || result == null)
+			result = unit.getContents(); // shutting down
 	}
-	if (yield)
-		Thread.yield(); // ensure other threads get a chance
-	if (result != null)
-		return result;
-	//System.out.print('-');
-	return unit.getContents();
+	// free spot for next file
+	this.contentsRead.set(unitIndex, null);
+	this.nextFileToParse = unitIndex + 1;
+	wakeUpReadingThreads();
+	return result;
+}
+
+private void rethrowCaughtException() {
+	Throwable exception = this.caughtException;
+	if (exception != null) {
+		// rethrow the caught exception from the readingThreads in the main compiler thread
+		if (exception instanceof Error)
+			throw (Error) exception;
+		throw (RuntimeException) exception;
+	}
+}
+
+private void wakeUpReadingThreads() {
+	Thread[] threads = this.readingThreads;
+	if (threads != null)
+		for (int i = threads.length; --i >= 0;)
+			LockSupport.unpark(threads[i]);
 }
 
 public void run() {
 	try {
-		while (this.readingThreads != null && this.nextFileToRead < this.units.length) {
-			ICompilationUnit unit = null;
-			int position = -1;
-			synchronized (this) {
-				if (this.readingThreads == null) return;
+		while (this.readingThreads != null) {
+			int index = this.nextFileToRead.getAndIncrement();
+			if (index >= this.units.length) return;
 
-				while (this.filesRead[this.nextAvailablePosition] != null) {
-					this.sleepingThreadCount++;
-					try {
-						wait(250); // wait until a spot in contents is available
-					} catch (InterruptedException e) { // ignore
-					}
-					this.sleepingThreadCount--;
-					if (this.readingThreads == null) return;
-				}
+			// wait until a spot in contents is available
+			while (index >= this.nextFileToParse + CACHE_SIZE && this.readingThreads != null)
+				LockSupport.park(this);
+			if (index < this.nextFileToParse || !this.contentsRead.compareAndSet(index, null, this.readInProcessMarker))
+				continue; // skipped or read by the parser thread
 
-				if (this.nextFileToRead >= this.units.length) return;
-				unit = this.units[this.nextFileToRead++];
-				position = this.nextAvailablePosition;
-				if (++this.nextAvailablePosition >= this.contentsRead.length)
-					this.nextAvailablePosition = 0;
-				this.filesRead[position] = unit;
-				this.contentsRead[position] = this.readInProcessMarker; // mark the spot so we know its being read
-			}
-			char[] result = unit.getContents();
-			synchronized (this) {
-				if (this.filesRead[position] == unit) {
-					if (this.contentsRead[position] == null) // wake up main thread which is waiting for this file
-						notifyAll();
-					this.contentsRead[position] = result;
-				}
+			char[] result = this.units[index].getContents();
+			if (this.contentsRead.compareAndSet(index, this.readInProcessMarker, result)) {
+				if (index < this.nextFileToParse)
+					this.contentsRead.compareAndSet(index, result, null); // skipped by the parser thread meanwhile
+				Thread waiting = this.waitingThread;
+				if (waiting != null) // wake up main thread which may be waiting for this file
+					LockSupport.unpark(waiting);
 			}
 		}
 	} catch (Error e) {
-		synchronized (this) {
-			this.caughtException = e;
-			shutdown();
-		}
-		return;
+		this.caughtException = e;
+		shutdown();
 	} catch (RuntimeException e) {
-		synchronized (this) {
-			this.caughtException = e;
-			shutdown();
-		}
-		return;
+		this.caughtException = e;
+		shutdown();
 	}
 }
 
-public synchronized void shutdown() {
+public void shutdown() {
+	Thread[] threads = this.readingThreads;
 	this.readingThreads = null; // mark the read manager as shutting down so that the reading threads stop
-	notifyAll();
+	if (threads != null)
+		for (int i = threads.length; --i >= 0;)
+			LockSupport.unpark(threads[i]);
+	Thread waiting = this.waitingThread;
+	if (waiting != null)
+		LockSupport.unpark(waiting);
+}
 }
-}
\ No newline at end of file
@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.classfmt;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.util.HashtableOfObject;
+import org.eclipse.jdt.internal.compiler.util.JarIndex;
+import org.eclipse.jdt.internal.compiler.util.Util;
+
+/**
+ * A process wide cache of the class files read from jars, shared by all lookup environments.
+ * <br>
+ * Class files are cached as fully initialized {@link ClassFileReader}s, which no longer change once read and
+ * can be used by several environments at the same time. Their names, descriptors and signatures are interned
+ * so that the names shared by many types (e.g. <code>java/lang/Object</code>) are only kept once.
+ * Entries are keyed by the path, timestamp and size of the jar, along with the name of the entry and the file
+ * name given to the reader, so that a modified jar is never answered from the cache.
+ * The least recently used class files are dropped when their size exceeds the limit given in megabytes by the
+ * system property <code>jdt.compiler.binaryTypeCacheSize</code> (16 by default, 0 disables the cache).
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class BinaryTypeCache {
+
+	public static final BinaryTypeCache Shared =
+		new BinaryTypeCache(Integer.getInteger("jdt.compiler.binaryTypeCacheSize", 16).longValue() * 1024 * 1024); //$NON-NLS-1$
+
+	static final int MAX_NAMES = 64 * 1024;
+
+	static class Key {
+		final String jarPath;
+		final long lastModified;
+		final long length;
+		final String entryName;
+		final char[] fileName;
+		final int hashCode;
+
+		Key(String jarPath, long lastModified, long length, String entryName, char[] fileName) {
+			this.jarPath = jarPath;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.entryName = entryName;
+			this.fileName = fileName;
+			this.hashCode = jarPath.hashCode() * 31 + entryName.hashCode();
+		}
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return this.hashCode == other.hashCode
+				&& this.lastModified == other.lastModified
+				&& this.length == other.length
+				&& this.entryName.equals(other.entryName)
+				&& this.jarPath.equals(other.jarPath)
+				&& CharOperation.equals(this.fileName, other.fileName);
+		}
+		public int hashCode() {
+			return this.hashCode;
+		}
+	}
+
+	static class Entry {
+		final ClassFileReader reader;
+		final int size;
+
+		Entry(ClassFileReader reader, int size) {
+			this.reader = reader;
+			this.size = size;
+		}
+	}
+
+	final long maxSize;
+	long size;
+	LinkedHashMap entries; // Key -> Entry, in least recently used order
+	HashtableOfObject names; // interned names
+
+	// statistics
+	public int hits, misses;
+
+public BinaryTypeCache(long maxSize) {
+	this.maxSize = maxSize;
+	this.entries = new LinkedHashMap(256, 0.75f, true);
+	this.names = new HashtableOfObject(1024);
+}
+
+/**
+ * Answer the reader of the given class file of the jar, reading it only if it is not cached yet.
+ * Answer null if the jar has no such entry.
+ *
+ * @param zipFile the opened jar
+ * @param lastModified the timestamp of the jar, 0 if unknown (the class file is then not cached)
+ * @param length the size of the jar
+ * @param entryName the name of the class file entry, e.g. <code>java/lang/Object.class</code>
+ * @param fileName the file name of the reader, null to use the entry name
+ */
+public ClassFileReader read(ZipFile zipFile, long lastModified, long length, String entryName, char[] fileName)
+		throws ClassFormatException, IOException {
+	if (this.maxSize <= 0 || lastModified == 0) {
+		ZipEntry entry = zipFile.getEntry(entryName);
+		if (entry == null)
+			return null;
+		return new ClassFileReader(Util.getZipEntryByteContent(entry, zipFile), fileName == null ? entryName.toCharArray() : fileName);
+	}
+
+	Key key = new Key(zipFile.getName(), lastModified, length, entryName, fileName);
+	ClassFileReader reader = cached(key);
+	if (reader != null)
+		return reader;
+
+	// read outside of the lock, another thread may read the same class file meanwhile
+	ZipEntry entry = zipFile.getEntry(entryName);
+	if (entry == null)
+		return null;
+	byte[] bytes = Util.getZipEntryByteContent(entry, zipFile);
+	return cache(key, new ClassFileReader(bytes, fileName == null ? entryName.toCharArray() : fileName, true), bytes.length);
+}
+
+/**
+ * Answer the reader of the given class file of the indexed jar, reading it only if it is not cached yet.
+ * Answer null if the jar has no such entry.
+ *
+ * @param index the index of the jar
+ * @param channel a channel on the jar
+ * @param entryName the name of the class file entry, e.g. <code>java/lang/Object.class</code>
+ * @param fileName the file name of the reader, null to use the entry name
+ */
+public ClassFileReader read(JarIndex index, FileChannel channel, String entryName, char[] fileName)
+		throws ClassFormatException, IOException {
+	if (this.maxSize <= 0) {
+		byte[] bytes = index.getEntryBytes(entryName, channel);
+		if (bytes == null)
+			return null;
+		return new ClassFileReader(bytes, fileName == null ? entryName.toCharArray() : fileName);
+	}
+
+	Key key = new Key(index.file.getPath(), index.lastModified, index.length, entryName, fileName);
+	ClassFileReader reader = cached(key);
+	if (reader != null)
+		return reader;
+
+	byte[] bytes = index.getEntryBytes(entryName, channel);
+	if (bytes == null)
+		return null;
+	return cache(key, new ClassFileReader(bytes, fileName == null ? entryName.toCharArray() : fileName, true), bytes.length);
+}
+
+private synchronized ClassFileReader cached(Key key) {
+	Entry cached = (Entry) this.entries.get(key);
+	if (cached == null)
+		return null;
+	this.hits++;
+	return cached.reader;
+}
+
+private synchronized ClassFileReader cache(Key key, ClassFileReader reader, int readerSize) {
+	Entry cached = (Entry) this.entries.get(key);
+	if (cached != null)
+		return cached.reader;
+	this.misses++;
+	reader.internNames(this);
+	this.entries.put(key, new Entry(reader, readerSize));
+	this.size += readerSize;
+	if (this.size > this.maxSize) {
+		for (Iterator iterator = this.entries.entrySet().iterator(); this.size > this.maxSize && iterator.hasNext();) {
+			Entry eldest = (Entry) ((Map.Entry) iterator.next()).getValue();
+			iterator.remove();
+			this.size -= eldest.size;
+		}
+	}
+	return reader;
+}
+
+public synchronized void clear() {
+	this.entries.clear();
+	this.size = 0;
+	this.names = new HashtableOfObject(1024);
+}
+
+/*
+ * Answer the shared copy of the given name. Must be called while holding the lock of the cache.
+ */
+char[] intern(char[] name) {
+	if (name == null || name.length == 0)
+		return name;
+	char[] interned = (char[]) this.names.get(name);
+	if (interned != null)
+		return interned;
+	if (this.names.elementSize >= MAX_NAMES)
+		this.names = new HashtableOfObject(1024); // start over rather than keeping the names of dropped types
+	this.names.put(name, name);
+	return name;
+}
+
+char[][] intern(char[][] names) {
+	if (names != null)
+		for (int i = names.length; --i >= 0;)
+			names[i] = intern(names[i]);
+	return names;
+}
+
+public synchronized String toString() {
+	return "BinaryTypeCache: " + this.entries.size() + " class files (" + this.size / 1024 + " KB), " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		+ this.hits + " hits, " + this.misses + " misses"; //$NON-NLS-1$ //$NON-NLS-2$
+}
+}
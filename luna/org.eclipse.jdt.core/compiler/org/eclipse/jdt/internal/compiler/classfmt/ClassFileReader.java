@@ -37,6 +37,7 @@ public class ClassFileReader extends ClassFileStruct implements IBinaryType {
 	private TypeAnnotationInfo[] typeAnnotations;
 	private FieldInfo[] fields;
 	private int fieldsCount;
+	private int fieldsOffset;
 
 	// initialized in case the .class file is a nested type
 	private InnerClassInfo innerInfo;
@@ -46,7 +47,11 @@ public class ClassFileReader extends ClassFileStruct implements IBinaryType {
 	private int interfacesCount;
 	private MethodInfo[] methods;
 	private int methodsCount;
+	private int methodsOffset;
 	private char[] signature;
+	private int signatureUtf8Offset = -1;
+	// offsets of the annotation attributes which are not decoded yet
+	private int[] annotationAttributeOffsets;
 	private char[] sourceName;
 	private char[] sourceFileName;
 	private char[] superclassName;
@@ -146,7 +151,8 @@ public ClassFileReader(byte classFileBytes[], char[] fileName) throws ClassForma
  * 		Actual name of the file that contains the bytes, can be null
  *
  * @param fullyInitialize boolean
- * 		Flag to fully initialize the new object
+ * 		Flag to fully initialize the new object, otherwise its members, annotations and
+ * 		signature are only decoded from the retained bytes when first accessed
  * @exception ClassFormatException
  */
 public ClassFileReader(byte[] classFileBytes, char[] fileName, boolean fullyInitialize) throws ClassFormatException {
@@ -254,31 +260,16 @@ public ClassFileReader(byte[] classFileBytes, char[] fileName, boolean fullyInit
 				readOffset += 2;
 			}
 		}
-		// Read the fields, use exception handlers to catch bad format
+		// Skip the fields, they are decoded on demand (see getFields())
 		this.fieldsCount = u2At(readOffset);
 		readOffset += 2;
-		if (this.fieldsCount != 0) {
-			FieldInfo field;
-			this.fields = new FieldInfo[this.fieldsCount];
-			for (int i = 0; i < this.fieldsCount; i++) {
-				field = FieldInfo.createField(this.reference, this.constantPoolOffsets, readOffset);
-				this.fields[i] = field;
-				readOffset += field.sizeInBytes();
-			}
-		}
-		// Read the methods
+		this.fieldsOffset = readOffset;
+		readOffset = skipMembers(readOffset, this.fieldsCount);
+		// Skip the methods, they are decoded on demand (see getMethods())
 		this.methodsCount = u2At(readOffset);
 		readOffset += 2;
-		if (this.methodsCount != 0) {
-			this.methods = new MethodInfo[this.methodsCount];
-			boolean isAnnotationType = (this.accessFlags & ClassFileConstants.AccAnnotation) != 0;
-			for (int i = 0; i < this.methodsCount; i++) {
-				this.methods[i] = isAnnotationType
-					? AnnotationMethodInfo.createAnnotationMethod(this.reference, this.constantPoolOffsets, readOffset)
-					: MethodInfo.createMethod(this.reference, this.constantPoolOffsets, readOffset);
-				readOffset += this.methods[i].sizeInBytes();
-			}
-		}
+		this.methodsOffset = readOffset;
+		readOffset = skipMembers(readOffset, this.methodsCount);
 
 		// Read the attributes
 		int attributesCount = u2At(readOffset);
@@ -288,7 +279,7 @@ public ClassFileReader(byte[] classFileBytes, char[] fileName, boolean fullyInit
 			int utf8Offset = this.constantPoolOffsets[u2At(readOffset)];
 			char[] attributeName = utf8At(utf8Offset + 3, u2At(utf8Offset + 1));
 			if (attributeName.length == 0) {
-				readOffset += (6 + u4At(readOffset + 2));
+				readOffset = skipAttribute(readOffset);
 				continue;
 			}
 			switch(attributeName[0] ) {
@@ -348,21 +339,19 @@ public ClassFileReader(byte[] classFileBytes, char[] fileName, boolean fullyInit
 								break;
 							case 'i' :
 								if (CharOperation.equals(attributeName, AttributeNamesConstants.SignatureName)) {
-									utf8Offset = this.constantPoolOffsets[u2At(readOffset + 6)];
-									this.signature = utf8At(utf8Offset + 3, u2At(utf8Offset + 1));
+									this.signatureUtf8Offset = this.constantPoolOffsets[u2At(readOffset + 6)];
 								}
 						}
 					}
 					break;
 				case 'R' :
-					if (CharOperation.equals(attributeName, AttributeNamesConstants.RuntimeVisibleAnnotationsName)) {
-						decodeAnnotations(readOffset, true);
-					} else if (CharOperation.equals(attributeName, AttributeNamesConstants.RuntimeInvisibleAnnotationsName)) {
-						decodeAnnotations(readOffset, false);
-					} else if (CharOperation.equals(attributeName, AttributeNamesConstants.RuntimeVisibleTypeAnnotationsName)) {
-						decodeTypeAnnotations(readOffset, true);
-					} else if (CharOperation.equals(attributeName, AttributeNamesConstants.RuntimeInvisibleTypeAnnotationsName)) {
-						decodeTypeAnnotations(readOffset, false);
+					// decoded on demand (see decodeAnnotationAttributes())
+					if (this.annotationAttributeOffsets == null) {
+						this.annotationAttributeOffsets = new int[] { readOffset };
+					} else {
+						int length = this.annotationAttributeOffsets.length;
+						System.arraycopy(this.annotationAttributeOffsets, 0, this.annotationAttributeOffsets = new int[length + 1], 0, length);
+						this.annotationAttributeOffsets[length] = readOffset;
 					}
 					break;
 				case 'M' :
@@ -382,7 +371,7 @@ public ClassFileReader(byte[] classFileBytes, char[] fileName, boolean fullyInit
 						}
 					}
 			}
-			readOffset += (6 + u4At(readOffset + 2));
+			readOffset = skipAttribute(readOffset);
 		}
 		if (fullyInitialize) {
 			initialize();
@@ -405,6 +394,52 @@ public int accessFlags() {
 	return this.accessFlags;
 }
 
+/*
+ * Walks the members without decoding them. Only the structure is checked, i.e. that every member and attribute
+ * lies within the bytes: their contents are decoded by getFields() and getMethods(), see skipAttribute(int).
+ */
+private int skipMembers(int readOffset, int membersCount) throws ClassFormatException {
+	for (int i = 0; i < membersCount; i++) {
+		int attributesCount = u2At(readOffset + 6);
+		readOffset += 8;
+		for (int j = 0; j < attributesCount; j++)
+			readOffset = skipAttribute(readOffset);
+	}
+	return readOffset;
+}
+
+/*
+ * Answer the offset following the attribute at the given offset, which must lie within the bytes. A lazily
+ * decoding reader does not look into the attribute: malformed contents (constant pool references, names,
+ * annotations) are only detected when the attribute is decoded, whereas a fully initialized reader decodes
+ * it in initialize() and thus rejects it with a ClassFormatException.
+ */
+private int skipAttribute(int readOffset) throws ClassFormatException {
+	long attributeEnd = readOffset + 6 + u4At(readOffset + 2);
+	if (attributeEnd > this.reference.length)
+		throw new ClassFormatException(ClassFormatException.ErrTruncatedInput, readOffset);
+	return (int) attributeEnd;
+}
+
+private void decodeAnnotationAttributes() {
+	int[] offsets = this.annotationAttributeOffsets;
+	this.annotationAttributeOffsets = null;
+	for (int i = 0, length = offsets.length; i < length; i++) {
+		int readOffset = offsets[i];
+		int utf8Offset = this.constantPoolOffsets[u2At(readOffset)];
+		char[] attributeName = utf8At(utf8Offset + 3, u2At(utf8Offset + 1));
+		if (CharOperation.equals(attributeName, AttributeNamesConstants.RuntimeVisibleAnnotationsName)) {
+			decodeAnnotations(readOffset, true);
+		} else if (CharOperation.equals(attributeName, AttributeNamesConstants.RuntimeInvisibleAnnotationsName)) {
+			decodeAnnotations(readOffset, false);
+		} else if (CharOperation.equals(attributeName, AttributeNamesConstants.RuntimeVisibleTypeAnnotationsName)) {
+			decodeTypeAnnotations(readOffset, true);
+		} else if (CharOperation.equals(attributeName, AttributeNamesConstants.RuntimeInvisibleTypeAnnotationsName)) {
+			decodeTypeAnnotations(readOffset, false);
+		}
+	}
+}
+
 private void decodeAnnotations(int offset, boolean runtimeVisible) {
 	int numberOfAnnotations = u2At(offset + 6);
 	if (numberOfAnnotations > 0) {
@@ -469,6 +504,8 @@ private void decodeTypeAnnotations(int offset, boolean runtimeVisible) {
  * @return the annotations or null if there is none.
  */
 public IBinaryAnnotation[] getAnnotations() {
+	if (this.annotationAttributeOffsets != null)
+		decodeAnnotationAttributes();
 	return this.annotations;
 }
 
@@ -476,6 +513,8 @@ public IBinaryAnnotation[] getAnnotations() {
  * @return the type annotations or null if there is none.
  */
 public IBinaryTypeAnnotation[] getTypeAnnotations() {
+	if (this.annotationAttributeOffsets != null)
+		decodeAnnotationAttributes();
 	return this.typeAnnotations;
 }
 
@@ -533,6 +572,15 @@ public char[] getEnclosingTypeName() {
  * @return org.eclipse.jdt.internal.compiler.api.IBinaryField[]
  */
 public IBinaryField[] getFields() {
+	if (this.fields == null && this.fieldsCount != 0) {
+		FieldInfo[] decodedFields = new FieldInfo[this.fieldsCount];
+		int readOffset = this.fieldsOffset;
+		for (int i = 0; i < this.fieldsCount; i++) {
+			decodedFields[i] = FieldInfo.createField(this.reference, this.constantPoolOffsets, readOffset);
+			readOffset += decodedFields[i].sizeInBytes();
+		}
+		this.fields = decodedFields;
+	}
 	return this.fields;
 }
 
@@ -544,6 +592,8 @@ public char[] getFileName() {
 }
 
 public char[] getGenericSignature() {
+	if (this.signature == null && this.signatureUtf8Offset != -1)
+		this.signature = utf8At(this.signatureUtf8Offset + 3, u2At(this.signatureUtf8Offset + 1));
 	return this.signature;
 }
 
@@ -649,6 +699,18 @@ public IBinaryNestedType[] getMemberTypes() {
  * @return org.eclipse.jdt.internal.compiler.api.env.IBinaryMethod[]
  */
 public IBinaryMethod[] getMethods() {
+	if (this.methods == null && this.methodsCount != 0) {
+		MethodInfo[] decodedMethods = new MethodInfo[this.methodsCount];
+		boolean isAnnotationType = (this.accessFlags & ClassFileConstants.AccAnnotation) != 0;
+		int readOffset = this.methodsOffset;
+		for (int i = 0; i < this.methodsCount; i++) {
+			decodedMethods[i] = isAnnotationType
+				? AnnotationMethodInfo.createAnnotationMethod(this.reference, this.constantPoolOffsets, readOffset)
+				: MethodInfo.createMethod(this.reference, this.constantPoolOffsets, readOffset);
+			readOffset += decodedMethods[i].sizeInBytes();
+		}
+		this.methods = decodedMethods;
+	}
 	return this.methods;
 }
 
@@ -767,6 +829,8 @@ public char[] getSuperclassName() {
 }
 
 public long getTagBits() {
+	if (this.annotationAttributeOffsets != null)
+		decodeAnnotationAttributes(); // standard annotations are recorded in the tag bits
 	return this.tagBits;
 }
 
@@ -922,6 +986,7 @@ public boolean hasStructuralChanges(byte[] newBytes, boolean orderRequired, bool
 		}
 
 		// fields
+		getFields();
 		FieldInfo[] otherFieldInfos = (FieldInfo[]) newClassFile.getFields();
 		int otherFieldInfosLength = otherFieldInfos == null ? 0 : otherFieldInfos.length;
 		boolean compareFields = true;
@@ -952,6 +1017,7 @@ public boolean hasStructuralChanges(byte[] newBytes, boolean orderRequired, bool
 		}
 
 		// methods
+		getMethods();
 		MethodInfo[] otherMethodInfos = (MethodInfo[]) newClassFile.getMethods();
 		int otherMethodInfosLength = otherMethodInfos == null ? 0 : otherMethodInfos.length;
 		boolean compareMethods = true;
@@ -1140,12 +1206,33 @@ private boolean hasStructuralMethodChanges(MethodInfo currentMethodInfo, MethodI
 	return false;
 }
 
+/**
+ * Replace the names of the fully initialized receiver by their shared copies.
+ */
+void internNames(BinaryTypeCache cache) {
+	this.className = cache.intern(this.className);
+	this.superclassName = cache.intern(this.superclassName);
+	cache.intern(this.interfaceNames);
+	this.signature = cache.intern(this.signature);
+	this.enclosingTypeName = cache.intern(this.enclosingTypeName);
+	for (int i = 0, max = this.fieldsCount; i < max; i++) {
+		this.fields[i].internNames(cache);
+	}
+	for (int i = 0, max = this.methodsCount; i < max; i++) {
+		this.methods[i].internNames(cache);
+	}
+}
+
 /**
  * This method is used to fully initialize the contents of the receiver. All methodinfos, fields infos
  * will be therefore fully initialized and we can get rid of the bytes.
  */
 private void initialize() throws ClassFormatException {
 	try {
+		getFields();
+		getMethods();
+		getGenericSignature();
+		getTagBits();
 		for (int i = 0, max = this.fieldsCount; i < max; i++) {
 			this.fields[i].initialize();
 		}
@@ -290,6 +290,11 @@ public Object getWrappedConstantValue() {
 public boolean hasConstant() {
 	return getConstant() != Constant.NotAConstant;
 }
+void internNames(BinaryTypeCache cache) {
+	this.name = cache.intern(this.name);
+	this.descriptor = cache.intern(this.descriptor);
+	this.signature = cache.intern(this.signature);
+}
 /**
  * This method is used to fully initialize the contents of the receiver. All methodinfos, fields infos
  * will be therefore fully initialized and we can get rid of the bytes.
@@ -336,6 +336,12 @@ public char[] getSelector() {
 public long getTagBits() {
 	return this.tagBits;
 }
+void internNames(BinaryTypeCache cache) {
+	this.name = cache.intern(this.name);
+	this.descriptor = cache.intern(this.descriptor);
+	this.signature = cache.intern(this.signature);
+	cache.intern(this.exceptionNames);
+}
 /**
  * This method is used to fully initialize the contents of the receiver. All methodinfos, fields infos
  * will be therefore fully initialized and we can get rid of the bytes.
@@ -24,6 +24,14 @@ public class CompilerStats implements Comparable {
 	public long analyzeTime;
 	public long generateTime;
 
+	// processing pipeline (see ProcessTaskManager)
+	public long parsedUnits; // units whose method bodies were parsed by the parsing threads
+	public long processedUnits;
+	public long acceptedUnits;
+	public long processWaitTime; // processing thread waiting for parsed units
+	public long processBlockedTime; // processing thread waiting for the compiler thread to accept units
+	public long acceptWaitTime; // compiler thread waiting for processed units
+
 /**
  * Returns the total elapsed time (between start and end)
  * @return the time spent between start and end
@@ -27,7 +27,7 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.compiler.parser;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
@@ -190,6 +190,13 @@ public class Parser extends CommitRollbackParser implements ConflictedParser, Op
 	public static char nasr[] = null;
 	public static char non_terminal_index[] = null;
 	private final static String READABLE_NAMES_FILE = "readableNames"; //$NON-NLS-1$
+	private final static String TABLES_FILE = "parser.rsc"; //$NON-NLS-1$
+	private final static int TABLES_MAGIC = 0x4A445450; // JDTP
+	private final static int TABLES_VERSION = 1;
+	private final static int TABLES_COUNT = 25;
+	private final static int TABLES_HEADER_LENGTH = 24;
+	private final static int READABLE_NAMES_TABLE = 25;
+	private static byte[] tablesContents = null; // until the recovery tables are decoded
 
 	public static String readableName[] = null;
 
@@ -395,6 +402,38 @@ public class Parser extends CommitRollbackParser implements ConflictedParser, Op
 		Collections.sort(entries);
 		buildFile(file, entries);
 	}
+	private static void buildFileForTables(String filename, int tableCount) {
+		// pack the tables built from the LPG files into a single file, see readTablesFile(String)
+		byte[][] contents = new byte[tableCount + 1][];
+		try {
+			for (int i = 0; i < tableCount; i++) {
+				contents[i] = Util.getFileByteContent(new File(FILEPREFIX + (i + 1) + ".rsc")); //$NON-NLS-1$
+			}
+			contents[tableCount] = Util.getFileByteContent(new File(READABLE_NAMES_FILE + ".props")); //$NON-NLS-1$
+		} catch (IOException e) {
+			System.out.println(Messages.parser_incorrectPath);
+			return;
+		}
+		int length = TABLES_HEADER_LENGTH + contents.length * 8;
+		for (int i = 0; i < contents.length; i++) {
+			length += contents[i].length;
+		}
+		byte[] bytes = new byte[length];
+		writeInt(bytes, 0, TABLES_MAGIC);
+		writeInt(bytes, 4, TABLES_VERSION);
+		writeInt(bytes, 8, NUM_RULES);
+		writeInt(bytes, 12, NUM_STATES);
+		writeInt(bytes, 16, NUM_SYMBOLS);
+		writeInt(bytes, 20, contents.length);
+		int offset = TABLES_HEADER_LENGTH + contents.length * 8;
+		for (int i = 0; i < contents.length; i++) {
+			writeInt(bytes, TABLES_HEADER_LENGTH + i * 8, offset);
+			writeInt(bytes, TABLES_HEADER_LENGTH + i * 8 + 4, contents[i].length);
+			System.arraycopy(contents[i], 0, bytes, offset, contents[i].length);
+			offset += contents[i].length;
+		}
+		buildFileForTable(filename, bytes);
+	}
 	private final static void buildFileForTable(String filename, byte[] bytes) {
 		java.io.FileOutputStream stream = null;
 		try {
@@ -655,7 +694,8 @@ public class Parser extends CommitRollbackParser implements ConflictedParser, Op
 				newNonTerminalIndex,
 				newLhs,
 				tokens);
-	
+
+		buildFileForTables(TABLES_FILE, i);
 	
 		System.out.println(Messages.parser_moveFiles);
 	}
@@ -692,50 +732,62 @@ public class Parser extends CommitRollbackParser implements ConflictedParser, Op
 		return in_symb[original_state(state)];
 	}
 	public final static void initTables() throws java.io.IOException {
-	
-		final String prefix = FILEPREFIX;
-		int i = 0;
-		lhs = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		char[] chars = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
+
+		byte[] bytes = readTablesFile(TABLES_FILE);
+		tablesContents = bytes;
+		lhs = readTable(bytes, 1);
+		char[] chars = readTable(bytes, 2);
 		check_table = new short[chars.length];
 		for (int c = chars.length; c-- > 0;) {
 			check_table[c] = (short) (chars[c] - 32768);
 		}
-		asb = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		asr = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		nasb = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		nasr = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		terminal_index = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		non_terminal_index = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		term_action = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-	
-		scope_prefix = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		scope_suffix = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		scope_lhs = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		scope_state_set = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		scope_rhs = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		scope_state = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		in_symb = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-	
-		rhs = readByteTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		term_check = readByteTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		scope_la = readByteTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-	
-		name = readNameTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-	
-		rules_compliance = readLongTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-	
-		readableName = readReadableNameTable(READABLE_NAMES_FILE + ".props"); //$NON-NLS-1$
-	
-		reverse_index = computeReverseTable(terminal_index, non_terminal_index, name);
-	
-		recovery_templates_index = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-		recovery_templates = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-	
-		statements_recovery_filter = readTable(prefix + (++i) + ".rsc"); //$NON-NLS-1$
-	
+		terminal_index = readTable(bytes, 7);
+		non_terminal_index = readTable(bytes, 8);
+		term_action = readTable(bytes, 9);
+
+		rhs = readByteTable(bytes, 17);
+		term_check = readByteTable(bytes, 18);
+
+		name = readNameTable(bytes, 20);
+
 		base_action = lhs;
 	}
+	/**
+	 * Decode the tables which are only used to diagnose and recover from syntax errors (see DiagnoseParser and
+	 * RecoveryScanner), they are not needed for correct sources. Must be called before accessing one of these tables.
+	 */
+	public synchronized static void initRecoveryTables() {
+		byte[] bytes = tablesContents;
+		if (bytes == null) return; // already decoded
+
+		asb = readTable(bytes, 3);
+		asr = readTable(bytes, 4);
+		nasb = readTable(bytes, 5);
+		nasr = readTable(bytes, 6);
+
+		scope_prefix = readTable(bytes, 10);
+		scope_suffix = readTable(bytes, 11);
+		scope_lhs = readTable(bytes, 12);
+		scope_state_set = readTable(bytes, 13);
+		scope_rhs = readTable(bytes, 14);
+		scope_state = readTable(bytes, 15);
+		in_symb = readTable(bytes, 16);
+
+		scope_la = readByteTable(bytes, 19);
+
+		rules_compliance = readLongTable(bytes, 21);
+
+		readableName = readReadableNameTable(bytes, READABLE_NAMES_TABLE);
+
+		reverse_index = computeReverseTable(terminal_index, non_terminal_index, name);
+
+		recovery_templates_index = readTable(bytes, 22);
+		recovery_templates = readTable(bytes, 23);
+
+		statements_recovery_filter = readTable(bytes, 24);
+
+		tablesContents = null;
+	}
 	public static int nasi(int state) {
 		return nasb[original_state(state)];
 	}
@@ -746,59 +798,20 @@ public class Parser extends CommitRollbackParser implements ConflictedParser, Op
 		return -base_check(state);
 	}
 
-	protected static byte[] readByteTable(String filename) throws java.io.IOException {
-	
-		//files are located at Parser.class directory
-	
-		InputStream stream = Parser.class.getResourceAsStream(filename);
-		if (stream == null) {
-			throw new java.io.IOException(Messages.bind(Messages.parser_missingFile, filename));
-		}
-		byte[] bytes = null;
-		try {
-			stream = new BufferedInputStream(stream);
-			bytes = Util.getInputStreamAsByteArray(stream, -1);
-		} finally {
-			try {
-				stream.close();
-			} catch (IOException e) {
-				// ignore
-			}
-		}
-		return bytes;
+	protected static byte[] readByteTable(byte[] bytes, int table) {
+		int offset = tableOffset(bytes, table);
+		int length = tableLength(bytes, table);
+		byte[] result = new byte[length];
+		System.arraycopy(bytes, offset, result, 0, length);
+		return result;
 	}
-	protected static long[] readLongTable(String filename) throws java.io.IOException {
-	
-		//files are located at Parser.class directory
-	
-		InputStream stream = Parser.class.getResourceAsStream(filename);
-		if (stream == null) {
-			throw new java.io.IOException(Messages.bind(Messages.parser_missingFile, filename));
-		}
-		byte[] bytes = null;
-		try {
-			stream = new BufferedInputStream(stream);
-			bytes = Util.getInputStreamAsByteArray(stream, -1);
-		} finally {
-			try {
-				stream.close();
-			} catch (IOException e) {
-				// ignore
-			}
-		}
-	
-		//minimal integrity check (even size expected)
-		int length = bytes.length;
-		if (length % 8 != 0)
-			throw new java.io.IOException(Messages.bind(Messages.parser_corruptedFile, filename));
-	
+	protected static long[] readLongTable(byte[] bytes, int table) {
+		int i = tableOffset(bytes, table);
+
 		// convert bytes into longs
-		long[] longs = new long[length / 8];
-		int i = 0;
-		int longIndex = 0;
-	
-		while (true) {
-			longs[longIndex++] =
+		long[] longs = new long[tableLength(bytes, table) / 8];
+		for (int longIndex = 0; longIndex < longs.length; longIndex++) {
+			longs[longIndex] =
 			  (((long) (bytes[i++] & 0xFF)) << 56)
 			+ (((long) (bytes[i++] & 0xFF)) << 48)
 			+ (((long) (bytes[i++] & 0xFF)) << 40)
@@ -807,15 +820,12 @@ public class Parser extends CommitRollbackParser implements ConflictedParser, Op
 			+ (((long) (bytes[i++] & 0xFF)) << 16)
 			+ (((long) (bytes[i++] & 0xFF)) << 8)
 			+ (bytes[i++] & 0xFF);
-	
-			if (i == length)
-				break;
 		}
 		return longs;
 	}
 
-	protected static String[] readNameTable(String filename) throws java.io.IOException {
-		char[] contents = readTable(filename);
+	protected static String[] readNameTable(byte[] bytes, int table) {
+		char[] contents = readTable(bytes, table);
 		char[][] nameAsChar = CharOperation.splitOn('\n', contents);
 	
 		String[] result = new String[nameAsChar.length + 1];
@@ -826,10 +836,10 @@ public class Parser extends CommitRollbackParser implements ConflictedParser, Op
 	
 		return result;
 	}
-	protected static String[] readReadableNameTable(String filename){
+	protected static String[] readReadableNameTable(byte[] bytes, int table){
 		String[] result = new String[name.length];
 		
-		InputStream is = Parser.class.getResourceAsStream(filename);
+		InputStream is = new ByteArrayInputStream(bytes, tableOffset(bytes, table), tableLength(bytes, table));
 		Properties props = new Properties();
 		try {
 			props.load(is);
@@ -850,17 +860,31 @@ public class Parser extends CommitRollbackParser implements ConflictedParser, Op
 		}
 		return result;
 	}
-	protected static char[] readTable(String filename) throws java.io.IOException {
-	
+	protected static char[] readTable(byte[] bytes, int table) {
+		int i = tableOffset(bytes, table);
+
+		// convert bytes into chars
+		char[] chars = new char[tableLength(bytes, table) / 2];
+		for (int charIndex = 0; charIndex < chars.length; charIndex++) {
+			chars[charIndex] = (char) (((bytes[i++] & 0xFF) << 8) + (bytes[i++] & 0xFF));
+		}
+		return chars;
+	}
+	/*
+	 * The tables file starts with a header (magic number, format version, size of the grammar, number of tables),
+	 * followed by the offset and length of each table and then by the tables, each one with the contents of the
+	 * file it has been built from: parser1.rsc to parser24.rsc then readableNames.props.
+	 */
+	protected static byte[] readTablesFile(String filename) throws java.io.IOException {
+
 		//files are located at Parser.class directory
-	
+
 		InputStream stream = Parser.class.getResourceAsStream(filename);
 		if (stream == null) {
 			throw new java.io.IOException(Messages.bind(Messages.parser_missingFile, filename));
 		}
 		byte[] bytes = null;
 		try {
-			stream = new BufferedInputStream(stream);
 			bytes = Util.getInputStreamAsByteArray(stream, -1);
 		} finally {
 			try {
@@ -869,23 +893,41 @@ public class Parser extends CommitRollbackParser implements ConflictedParser, Op
 				// ignore
 			}
 		}
-	
-		//minimal integrity check (even size expected)
-		int length = bytes.length;
-		if ((length & 1) != 0)
+
+		//integrity check (tables built for the current grammar, consistent offsets, even size of char and long tables)
+		boolean valid = bytes.length >= TABLES_HEADER_LENGTH
+			&& readInt(bytes, 0) == TABLES_MAGIC
+			&& readInt(bytes, 4) == TABLES_VERSION
+			&& readInt(bytes, 8) == NUM_RULES
+			&& readInt(bytes, 12) == NUM_STATES
+			&& readInt(bytes, 16) == NUM_SYMBOLS
+			&& readInt(bytes, 20) == TABLES_COUNT
+			&& bytes.length >= TABLES_HEADER_LENGTH + TABLES_COUNT * 8;
+		for (int table = 1; valid && table <= TABLES_COUNT; table++) {
+			int offset = tableOffset(bytes, table);
+			int length = tableLength(bytes, table);
+			valid = offset >= TABLES_HEADER_LENGTH + TABLES_COUNT * 8 && length >= 0 && offset + length <= bytes.length
+				&& (table == READABLE_NAMES_TABLE || table == 17 || table == 18 || table == 19 || (length & 1) == 0)
+				&& (table != 21 || length % 8 == 0);
+		}
+		if (!valid)
 			throw new java.io.IOException(Messages.bind(Messages.parser_corruptedFile, filename));
-	
-		// convert bytes into chars
-		char[] chars = new char[length / 2];
-		int i = 0;
-		int charIndex = 0;
-	
-		while (true) {
-			chars[charIndex++] = (char) (((bytes[i++] & 0xFF) << 8) + (bytes[i++] & 0xFF));
-			if (i == length)
-				break;
-		}
-		return chars;
+		return bytes;
+	}
+	private static void writeInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+	private static int readInt(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 24) + ((bytes[offset + 1] & 0xFF) << 16) + ((bytes[offset + 2] & 0xFF) << 8) + (bytes[offset + 3] & 0xFF);
+	}
+	private static int tableOffset(byte[] bytes, int table) {
+		return readInt(bytes, TABLES_HEADER_LENGTH + (table - 1) * 8);
+	}
+	private static int tableLength(byte[] bytes, int table) {
+		return readInt(bytes, TABLES_HEADER_LENGTH + (table - 1) * 8 + 4);
 	}
 	public static int tAction(int state, int sym) {
 		return term_action[term_check[base_action[state]+sym] == sym ? base_action[state] + sym : base_action[state]];
@@ -37,6 +37,7 @@ public class RecoveryScanner extends Scanner {
 				scanner.taskTags,
 				scanner.taskPriorities,
 				scanner.isTaskCaseSensitive);
+		Parser.initRecoveryTables();
 		setData(data);
 	}
 	
@@ -57,6 +58,7 @@ public class RecoveryScanner extends Scanner {
 				taskTags,
 				taskPriorities,
 				isTaskCaseSensitive);
+		Parser.initRecoveryTables();
 		setData(data);
 	}
 
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.util;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+
+/**
+ * The keys of the hashtables of {char[] --> value }, using linear probing to resolve collisions.
+ * <br>
+ * Growing the table places the keys directly at their new slots, without comparing them. Subclasses keep their
+ * values in a table parallel to the table of keys.
+ * <br>
+ * The slot of a key only depends on its hash code and the size of the table, which grows the same way whatever the
+ * subclass, so that walking the table of keys always answers them in the same order.
+ */
+public abstract class CharArrayHashtable {
+
+	// to avoid using Enumerations, walk the individual tables skipping nulls
+	public char[] keyTable[];
+
+	public int elementSize; // number of elements in the table
+	int threshold;
+
+	CharArrayHashtable(int size) {
+		this.elementSize = 0;
+		allocate(size);
+	}
+
+	/*
+	 * Allocate the tables for the given expected number of elements, answer their length.
+	 * The previous tables are dropped, subclasses allocate their table of values with the answered length.
+	 */
+	final int allocate(int size) {
+		this.threshold = size; // size represents the expected number of elements
+		int extraRoom = (int) (size * 1.75f);
+		if (this.threshold == extraRoom)
+			extraRoom++;
+		this.keyTable = new char[extraRoom][];
+		return extraRoom;
+	}
+
+	public void clear() {
+		for (int i = this.keyTable.length; --i >= 0;)
+			this.keyTable[i] = null;
+		this.elementSize = 0;
+	}
+
+	final void copyKeysTo(CharArrayHashtable result) {
+		result.elementSize = this.elementSize;
+		result.threshold = this.threshold;
+
+		int length = this.keyTable.length;
+		result.keyTable = new char[length][];
+		System.arraycopy(this.keyTable, 0, result.keyTable, 0, length);
+	}
+
+	public boolean containsKey(char[] key) {
+		return slotOf(key, CharOperation.hashCode(key)) >= 0;
+	}
+
+	/*
+	 * Answer the slot of the given key, or -(slot + 1) for the free slot at which it would be added.
+	 */
+	final int slotOf(char[] key, int hash) {
+		int length = this.keyTable.length,
+			index = hash % length;
+		int keyLength = key.length;
+		char[] currentKey;
+		while ((currentKey = this.keyTable[index]) != null) {
+			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
+				return index;
+			if (++index == length) {
+				index = 0;
+			}
+		}
+		return -index - 1;
+	}
+
+	/*
+	 * Add a key at the given free slot, answer whether the table must now grow.
+	 */
+	final boolean addAt(int slot, char[] key) {
+		this.keyTable[slot] = key;
+		// assumes the threshold is never equal to the size of the table
+		return ++this.elementSize > this.threshold;
+	}
+
+	/*
+	 * Put a key which is known not to be in the table yet at its first free slot, answer the slot.
+	 * The number of elements is left unchanged.
+	 */
+	final int addUnsafely(char[] key, int hash) {
+		int length = this.keyTable.length,
+			index = hash % length;
+		while (this.keyTable[index] != null) {
+			if (++index == length) {
+				index = 0;
+			}
+		}
+		this.keyTable[index] = key;
+		return index;
+	}
+
+	public int size() {
+		return this.elementSize;
+	}
+}
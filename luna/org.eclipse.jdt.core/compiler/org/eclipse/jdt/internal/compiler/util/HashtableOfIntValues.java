@@ -15,134 +15,68 @@ import org.eclipse.jdt.core.compiler.CharOperation;
 /**
  * Hashtable of {char[] --> int}
  */
-public final class HashtableOfIntValues implements Cloneable {
+public final class HashtableOfIntValues extends CharArrayHashtable implements Cloneable {
 
 	public static final int NO_VALUE = Integer.MIN_VALUE;
 
 	// to avoid using Enumerations, walk the individual tables skipping nulls
-	public char[] keyTable[];
 	public int valueTable[];
 
-	public int elementSize; // number of elements in the table
-	int threshold;
-
 	public HashtableOfIntValues() {
 		this(13);
 	}
 
 	public HashtableOfIntValues(int size) {
-
-		this.elementSize = 0;
-		this.threshold = size; // size represents the expected number of elements
-		int extraRoom = (int) (size * 1.75f);
-		if (this.threshold == extraRoom)
-			extraRoom++;
-		this.keyTable = new char[extraRoom][];
-		this.valueTable = new int[extraRoom];
+		super(size);
+		this.valueTable = new int[this.keyTable.length];
 	}
 
 	public Object clone() throws CloneNotSupportedException {
 		HashtableOfIntValues result = (HashtableOfIntValues) super.clone();
-		result.elementSize = this.elementSize;
-		result.threshold = this.threshold;
+		copyKeysTo(result);
 
-		int length = this.keyTable.length;
-		result.keyTable = new char[length][];
-		System.arraycopy(this.keyTable, 0, result.keyTable, 0, length);
-
-		length = this.valueTable.length;
+		int length = this.valueTable.length;
 		result.valueTable = new int[length];
 		System.arraycopy(this.valueTable, 0, result.valueTable, 0, length);
 		return result;
 	}
 
-	public boolean containsKey(char[] key) {
-		int length = this.keyTable.length,
-			index = CharOperation.hashCode(key) % length;
-		int keyLength = key.length;
-		char[] currentKey;
-		while ((currentKey = this.keyTable[index]) != null) {
-			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
-				return true;
-			if (++index == length) {
-				index = 0;
-			}
-		}
-		return false;
-	}
-
 	public int get(char[] key) {
-		int length = this.keyTable.length,
-			index = CharOperation.hashCode(key) % length;
-		int keyLength = key.length;
-		char[] currentKey;
-		while ((currentKey = this.keyTable[index]) != null) {
-			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
-				return this.valueTable[index];
-			if (++index == length) {
-				index = 0;
-			}
-		}
-		return NO_VALUE;
+		int index = slotOf(key, CharOperation.hashCode(key));
+		return index >= 0 ? this.valueTable[index] : NO_VALUE;
 	}
 
 	public int put(char[] key, int value) {
-		int length = this.keyTable.length,
-			index = CharOperation.hashCode(key) % length;
-		int keyLength = key.length;
-		char[] currentKey;
-		while ((currentKey = this.keyTable[index]) != null) {
-			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
-				return this.valueTable[index] = value;
-			if (++index == length) {
-				index = 0;
-			}
-		}
-		this.keyTable[index] = key;
+		int index = slotOf(key, CharOperation.hashCode(key));
+		if (index >= 0)
+			return this.valueTable[index] = value;
+		index = -index - 1;
 		this.valueTable[index] = value;
-
-		// assumes the threshold is never equal to the size of the table
-		if (++this.elementSize > this.threshold)
+		if (addAt(index, key))
 			rehash();
 		return value;
 	}
 
 	public int removeKey(char[] key) {
-		int length = this.keyTable.length,
-			index = CharOperation.hashCode(key) % length;
-		int keyLength = key.length;
-		char[] currentKey;
-		while ((currentKey = this.keyTable[index]) != null) {
-			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key)) {
-				int value = this.valueTable[index];
-				this.elementSize--;
-				this.keyTable[index] = null;
-				this.valueTable[index] = NO_VALUE;
-				rehash();
-				return value;
-			}
-			if (++index == length) {
-				index = 0;
-			}
-		}
-		return NO_VALUE;
+		int index = slotOf(key, CharOperation.hashCode(key));
+		if (index < 0)
+			return NO_VALUE;
+		int value = this.valueTable[index];
+		this.elementSize--;
+		this.keyTable[index] = null;
+		this.valueTable[index] = NO_VALUE;
+		rehash();
+		return value;
 	}
 
 	private void rehash() {
-
-		HashtableOfIntValues newHashtable = new HashtableOfIntValues(this.elementSize * 2);		// double the number of expected elements
+		char[][] oldKeys = this.keyTable;
+		int[] oldValues = this.valueTable;
+		this.valueTable = new int[allocate(this.elementSize * 2)]; // double the number of expected elements
 		char[] currentKey;
-		for (int i = this.keyTable.length; --i >= 0;)
-			if ((currentKey = this.keyTable[i]) != null)
-				newHashtable.put(currentKey, this.valueTable[i]);
-
-		this.keyTable = newHashtable.keyTable;
-		this.valueTable = newHashtable.valueTable;
-		this.threshold = newHashtable.threshold;
-	}
-
-	public int size() {
-		return this.elementSize;
+		for (int i = oldKeys.length; --i >= 0;)
+			if ((currentKey = oldKeys[i]) != null)
+				this.valueTable[addUnsafely(currentKey, CharOperation.hashCode(currentKey))] = oldValues[i];
 	}
 
 	public String toString() {
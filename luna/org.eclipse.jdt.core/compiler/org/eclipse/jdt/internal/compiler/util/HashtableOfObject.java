@@ -15,100 +15,48 @@ import org.eclipse.jdt.core.compiler.CharOperation;
 /**
  * Hashtable of {char[] --> Object }
  */
-public final class HashtableOfObject implements Cloneable {
+public final class HashtableOfObject extends CharArrayHashtable implements Cloneable {
 
 	// to avoid using Enumerations, walk the individual tables skipping nulls
-	public char[] keyTable[];
 	public Object valueTable[];
 
-	public int elementSize; // number of elements in the table
-	int threshold;
-
 	public HashtableOfObject() {
 		this(13);
 	}
 
 	public HashtableOfObject(int size) {
-
-		this.elementSize = 0;
-		this.threshold = size; // size represents the expected number of elements
-		int extraRoom = (int) (size * 1.75f);
-		if (this.threshold == extraRoom)
-			extraRoom++;
-		this.keyTable = new char[extraRoom][];
-		this.valueTable = new Object[extraRoom];
+		super(size);
+		this.valueTable = new Object[this.keyTable.length];
 	}
 
 	public void clear() {
-		for (int i = this.keyTable.length; --i >= 0;) {
-			this.keyTable[i] = null;
+		super.clear();
+		for (int i = this.valueTable.length; --i >= 0;)
 			this.valueTable[i] = null;
-		}
-		this.elementSize = 0;
 	}
 
 	public Object clone() throws CloneNotSupportedException {
 		HashtableOfObject result = (HashtableOfObject) super.clone();
-		result.elementSize = this.elementSize;
-		result.threshold = this.threshold;
+		copyKeysTo(result);
 
-		int length = this.keyTable.length;
-		result.keyTable = new char[length][];
-		System.arraycopy(this.keyTable, 0, result.keyTable, 0, length);
-
-		length = this.valueTable.length;
+		int length = this.valueTable.length;
 		result.valueTable = new Object[length];
 		System.arraycopy(this.valueTable, 0, result.valueTable, 0, length);
 		return result;
 	}
 
-	public boolean containsKey(char[] key) {
-		int length = this.keyTable.length,
-			index = CharOperation.hashCode(key) % length;
-		int keyLength = key.length;
-		char[] currentKey;
-		while ((currentKey = this.keyTable[index]) != null) {
-			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
-				return true;
-			if (++index == length) {
-				index = 0;
-			}
-		}
-		return false;
-	}
-
 	public Object get(char[] key) {
-		int length = this.keyTable.length,
-			index = CharOperation.hashCode(key) % length;
-		int keyLength = key.length;
-		char[] currentKey;
-		while ((currentKey = this.keyTable[index]) != null) {
-			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
-				return this.valueTable[index];
-			if (++index == length) {
-				index = 0;
-			}
-		}
-		return null;
+		int index = slotOf(key, CharOperation.hashCode(key));
+		return index >= 0 ? this.valueTable[index] : null;
 	}
 
 	public Object put(char[] key, Object value) {
-		int length = this.keyTable.length,
-			index = CharOperation.hashCode(key) % length;
-		int keyLength = key.length;
-		char[] currentKey;
-		while ((currentKey = this.keyTable[index]) != null) {
-			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
-				return this.valueTable[index] = value;
-			if (++index == length) {
-				index = 0;
-			}
-		}
-		this.keyTable[index] = key;
+		int index = slotOf(key, CharOperation.hashCode(key));
+		if (index >= 0)
+			return this.valueTable[index] = value;
+		index = -index - 1;
 		this.valueTable[index] = value;
-
-		// assumes the threshold is never equal to the size of the table
-		if (++this.elementSize > this.threshold)
+		if (addAt(index, key))
 			rehash();
 		return value;
 	}
@@ -123,16 +71,8 @@ public final class HashtableOfObject implements Cloneable {
 	 * @param value The value of the table entry
 	 */
 	public void putUnsafely(char[] key, Object value) {
-		int length = this.keyTable.length,
-			index = CharOperation.hashCode(key) % length;
-		while (this.keyTable[index] != null) {
-			if (++index == length) {
-				index = 0;
-			}
-		}
-		this.keyTable[index] = key;
-		this.valueTable[index] = value;
-	
+		this.valueTable[addUnsafely(key, CharOperation.hashCode(key))] = value;
+
 		// assumes the threshold is never equal to the size of the table
 		if (++this.elementSize > this.threshold) {
 			rehash();
@@ -140,41 +80,25 @@ public final class HashtableOfObject implements Cloneable {
 	}
 
 	public Object removeKey(char[] key) {
-		int length = this.keyTable.length,
-			index = CharOperation.hashCode(key) % length;
-		int keyLength = key.length;
-		char[] currentKey;
-		while ((currentKey = this.keyTable[index]) != null) {
-			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key)) {
-				Object value = this.valueTable[index];
-				this.elementSize--;
-				this.keyTable[index] = null;
-				this.valueTable[index] = null;
-				rehash();
-				return value;
-			}
-			if (++index == length) {
-				index = 0;
-			}
-		}
-		return null;
+		int index = slotOf(key, CharOperation.hashCode(key));
+		if (index < 0)
+			return null;
+		Object value = this.valueTable[index];
+		this.elementSize--;
+		this.keyTable[index] = null;
+		this.valueTable[index] = null;
+		rehash();
+		return value;
 	}
 
 	private void rehash() {
-
-		HashtableOfObject newHashtable = new HashtableOfObject(this.elementSize * 2);		// double the number of expected elements
+		char[][] oldKeys = this.keyTable;
+		Object[] oldValues = this.valueTable;
+		this.valueTable = new Object[allocate(this.elementSize * 2)]; // double the number of expected elements
 		char[] currentKey;
-		for (int i = this.keyTable.length; --i >= 0;)
-			if ((currentKey = this.keyTable[i]) != null)
-				newHashtable.putUnsafely(currentKey, this.valueTable[i]);
-
-		this.keyTable = newHashtable.keyTable;
-		this.valueTable = newHashtable.valueTable;
-		this.threshold = newHashtable.threshold;
-	}
-
-	public int size() {
-		return this.elementSize;
+		for (int i = oldKeys.length; --i >= 0;)
+			if ((currentKey = oldKeys[i]) != null)
+				this.valueTable[addUnsafely(currentKey, CharOperation.hashCode(currentKey))] = oldValues[i];
 	}
 
 	public String toString() {
@@ -13,86 +13,39 @@ package org.eclipse.jdt.internal.compiler.util;
 import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.internal.compiler.lookup.PackageBinding;
 
-public final class HashtableOfPackage {
+public final class HashtableOfPackage extends CharArrayHashtable {
 	// to avoid using Enumerations, walk the individual tables skipping nulls
-	public char[] keyTable[];
 	public PackageBinding valueTable[];
 
-	public int elementSize; // number of elements in the table
-	int threshold;
 public HashtableOfPackage() {
 	this(3); // usually not very large
 }
 public HashtableOfPackage(int size) {
-	this.elementSize = 0;
-	this.threshold = size; // size represents the expected number of elements
-	int extraRoom = (int) (size * 1.75f);
-	if (this.threshold == extraRoom)
-		extraRoom++;
-	this.keyTable = new char[extraRoom][];
-	this.valueTable = new PackageBinding[extraRoom];
-}
-public boolean containsKey(char[] key) {
-	int length = this.keyTable.length,
-		index = CharOperation.hashCode(key) % length;
-	int keyLength = key.length;
-	char[] currentKey;
-	while ((currentKey = this.keyTable[index]) != null) {
-		if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
-			return true;
-		if (++index == length) {
-			index = 0;
-		}
-	}
-	return false;
+	super(size);
+	this.valueTable = new PackageBinding[this.keyTable.length];
 }
 public PackageBinding get(char[] key) {
-	int length = this.keyTable.length,
-		index = CharOperation.hashCode(key) % length;
-	int keyLength = key.length;
-	char[] currentKey;
-	while ((currentKey = this.keyTable[index]) != null) {
-		if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
-			return this.valueTable[index];
-		if (++index == length) {
-			index = 0;
-		}
-	}
-	return null;
+	int index = slotOf(key, CharOperation.hashCode(key));
+	return index >= 0 ? this.valueTable[index] : null;
 }
 public PackageBinding put(char[] key, PackageBinding value) {
-	int length = this.keyTable.length,
-		index = CharOperation.hashCode(key) % length;
-	int keyLength = key.length;
-	char[] currentKey;
-	while ((currentKey = this.keyTable[index]) != null) {
-		if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
-			return this.valueTable[index] = value;
-		if (++index == length) {
-			index = 0;
-		}
-	}
-	this.keyTable[index] = key;
+	int index = slotOf(key, CharOperation.hashCode(key));
+	if (index >= 0)
+		return this.valueTable[index] = value;
+	index = -index - 1;
 	this.valueTable[index] = value;
-
-	// assumes the threshold is never equal to the size of the table
-	if (++this.elementSize > this.threshold)
+	if (addAt(index, key))
 		rehash();
 	return value;
 }
 private void rehash() {
-	HashtableOfPackage newHashtable = new HashtableOfPackage(this.elementSize * 2); // double the number of expected elements
+	char[][] oldKeys = this.keyTable;
+	PackageBinding[] oldValues = this.valueTable;
+	this.valueTable = new PackageBinding[allocate(this.elementSize * 2)]; // double the number of expected elements
 	char[] currentKey;
-	for (int i = this.keyTable.length; --i >= 0;)
-		if ((currentKey = this.keyTable[i]) != null)
-			newHashtable.put(currentKey, this.valueTable[i]);
-
-	this.keyTable = newHashtable.keyTable;
-	this.valueTable = newHashtable.valueTable;
-	this.threshold = newHashtable.threshold;
-}
-public int size() {
-	return this.elementSize;
+	for (int i = oldKeys.length; --i >= 0;)
+		if ((currentKey = oldKeys[i]) != null)
+			this.valueTable[addUnsafely(currentKey, CharOperation.hashCode(currentKey))] = oldValues[i];
 }
 public String toString() {
 	String s = ""; //$NON-NLS-1$
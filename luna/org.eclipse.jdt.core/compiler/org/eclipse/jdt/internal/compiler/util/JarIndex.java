@@ -0,0 +1,426 @@
+/*******************************************************************************
+ * Copyright (c) 2014 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.compiler.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * The directory of a jar file: its packages and the location, size and compression method of its entries.
+ * <br>
+ * The index is built once from the central directory of the jar, then answered from a process wide cache
+ * or from its copy in an index directory (if any) as long as the size, timestamp and end of central directory record
+ * of the jar are unchanged. An index is a flat table of hashed entry and package names, saved and loaded as is,
+ * so that getting the index of a jar is a constant time operation once it is indexed.
+ * The least recently used indexes are dropped from the cache when their size exceeds the limit given in megabytes
+ * by the system property <code>jdt.compiler.jarIndexCacheSize</code> (16 by default).
+ * <br>
+ * The contents of the entries are read with the index through a channel on the jar, which is opened and closed
+ * by the user of the index. An index does not keep its jar open. Jars using zip64 extensions are not indexed.
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class JarIndex {
+
+	static final int MAGIC = 0x4A444A49; // JDJI
+	static final int VERSION = 1;
+
+	// zip format
+	static final int END_SIGNATURE = 0x06054b50;
+	static final int END_RECORD_SIZE = 22;
+	static final int MAX_COMMENT_SIZE = 0xFFFF;
+	static final int CENTRAL_SIGNATURE = 0x02014b50;
+	static final int CENTRAL_HEADER_SIZE = 46;
+	static final int LOCAL_SIGNATURE = 0x04034b50;
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int STORED = 0;
+	static final int DEFLATED = 8;
+
+	// header of an index
+	static final int JAR_LENGTH = 8;
+	static final int JAR_LAST_MODIFIED = 16;
+	static final int END_POSITION = 24;
+	static final int END_RECORD = 32;
+	static final int ENTRY_SLOTS = END_RECORD + END_RECORD_SIZE;
+	static final int PACKAGE_SLOTS = ENTRY_SLOTS + 4;
+	static final int ENTRY_COUNT = PACKAGE_SLOTS + 4;
+	static final int HEADER_SIZE = ENTRY_COUNT + 4;
+	// entry record: hash, local header offset, compressed size, size, method, name length, name chars
+	static final int ENTRY_RECORD_SIZE = 4 + 8 + 4 + 4 + 2 + 2;
+	// package record: hash, name length, name chars
+	static final int PACKAGE_RECORD_SIZE = 4 + 2;
+
+	static final long MAX_CACHE_SIZE = Integer.getInteger("jdt.compiler.jarIndexCacheSize", 16).longValue() * 1024 * 1024; //$NON-NLS-1$
+	private static final LinkedHashMap Cache = new LinkedHashMap(64, 0.75f, true); // jar path -> JarIndex, in least recently used order
+	private static long CacheSize;
+
+	public final File file;
+	public final long lastModified;
+	public final long length;
+	private final ByteBuffer table; // header, entry slots, package slots, records
+	private final int entrySlots, packageSlots;
+
+private JarIndex(File file, ByteBuffer table) {
+	this.file = file;
+	this.table = table;
+	this.length = table.getLong(JAR_LENGTH);
+	this.lastModified = table.getLong(JAR_LAST_MODIFIED);
+	this.entrySlots = table.getInt(ENTRY_SLOTS);
+	this.packageSlots = table.getInt(PACKAGE_SLOTS);
+}
+
+/**
+ * Answer the index of the given jar, null if the jar cannot be indexed.
+ *
+ * @param jar the jar file
+ * @param indexDirectory the directory in which indexes are saved, null to keep them in memory only
+ */
+public static JarIndex get(File jar, File indexDirectory) {
+	long lastModified = jar.lastModified();
+	long length = jar.length();
+	if (lastModified == 0)
+		return null; // missing
+	String key = jar.getPath();
+	synchronized (Cache) {
+		JarIndex index = (JarIndex) Cache.get(key);
+		if (index != null && index.lastModified == lastModified && index.length == length)
+			return index;
+	}
+
+	JarIndex index = null;
+	File indexFile = indexDirectory == null ? null : indexFile(jar, indexDirectory);
+	try {
+		if (indexFile != null && indexFile.isFile())
+			index = load(jar, indexFile, lastModified, length);
+		if (index == null) {
+			ByteBuffer table = build(jar, lastModified, length);
+			if (table == null)
+				return null; // not a jar or using zip64 extensions
+			index = new JarIndex(jar, table);
+			if (indexFile != null)
+				save(table, indexFile);
+		}
+	} catch (IOException e) {
+		return null;
+	} catch (RuntimeException e) {
+		return null; // corrupted jar
+	}
+	synchronized (Cache) {
+		JarIndex previous = (JarIndex) Cache.put(key, index);
+		if (previous != null)
+			CacheSize -= previous.table.capacity();
+		CacheSize += index.table.capacity();
+		for (Iterator iterator = Cache.entrySet().iterator(); CacheSize > MAX_CACHE_SIZE && iterator.hasNext();) {
+			JarIndex eldest = (JarIndex) ((Map.Entry) iterator.next()).getValue();
+			if (eldest == index)
+				break; // keep the index just built, even if larger than the cache
+			iterator.remove();
+			CacheSize -= eldest.table.capacity();
+		}
+	}
+	return index;
+}
+
+private static File indexFile(File jar, File indexDirectory) {
+	String path = jar.getAbsolutePath();
+	return new File(indexDirectory, jar.getName() + '-' + Integer.toHexString(path.hashCode()) + ".index"); //$NON-NLS-1$
+}
+
+private static JarIndex load(File jar, File indexFile, long lastModified, long length) throws IOException {
+	FileInputStream stream = new FileInputStream(indexFile);
+	ByteBuffer table;
+	try {
+		FileChannel channel = stream.getChannel();
+		long size = channel.size();
+		if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+			return null;
+		table = ByteBuffer.allocate((int) size);
+		while (table.hasRemaining())
+			if (channel.read(table) < 0)
+				return null;
+	} finally {
+		stream.close();
+	}
+	if (table.getInt(0) != MAGIC || table.getInt(4) != VERSION
+			|| table.getLong(JAR_LENGTH) != length || table.getLong(JAR_LAST_MODIFIED) != lastModified)
+		return null;
+
+	// a jar rewritten within the timestamp resolution is recognized by its central directory
+	byte[] endRecord = new byte[END_RECORD_SIZE];
+	RandomAccessFile file = new RandomAccessFile(jar, "r"); //$NON-NLS-1$
+	try {
+		file.seek(table.getLong(END_POSITION));
+		file.readFully(endRecord);
+	} finally {
+		file.close();
+	}
+	for (int i = 0; i < END_RECORD_SIZE; i++)
+		if (table.get(END_RECORD + i) != endRecord[i])
+			return null;
+	return new JarIndex(jar, table);
+}
+
+private static void save(ByteBuffer table, File indexFile) {
+	File directory = indexFile.getParentFile();
+	if (!directory.isDirectory() && !directory.mkdirs())
+		return;
+	// other processes may read the index meanwhile, only replace it once written
+	File temporary = new File(directory, indexFile.getName() + '.' + Long.toHexString(System.nanoTime()));
+	try {
+		FileOutputStream stream = new FileOutputStream(temporary);
+		try {
+			ByteBuffer contents = table.duplicate();
+			contents.clear();
+			FileChannel channel = stream.getChannel();
+			while (contents.hasRemaining())
+				channel.write(contents);
+		} finally {
+			stream.close();
+		}
+		if (!temporary.renameTo(indexFile)) {
+			indexFile.delete();
+			temporary.renameTo(indexFile);
+		}
+	} catch (IOException e) {
+		// keep the index in memory only
+	} finally {
+		temporary.delete();
+	}
+}
+
+/*
+ * Build the table of the given jar from its central directory, null if the jar cannot be indexed.
+ */
+private static ByteBuffer build(File jar, long lastModified, long length) throws IOException {
+	if (length < END_RECORD_SIZE || length > Integer.MAX_VALUE)
+		return null;
+	RandomAccessFile file = new RandomAccessFile(jar, "r"); //$NON-NLS-1$
+	try {
+		// find the end of central directory record, followed by the comment of the jar
+		int tailLength = (int) Math.min(length, END_RECORD_SIZE + MAX_COMMENT_SIZE);
+		byte[] tail = new byte[tailLength];
+		file.seek(length - tailLength);
+		file.readFully(tail);
+		ByteBuffer tailBuffer = ByteBuffer.wrap(tail).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+		int end = tailLength - END_RECORD_SIZE;
+		while (end >= 0 && (tailBuffer.getInt(end) != END_SIGNATURE || end + END_RECORD_SIZE + (tailBuffer.getShort(end + 20) & 0xFFFF) != tailLength))
+			end--;
+		if (end < 0)
+			return null; // not a jar
+		int entryCount = tailBuffer.getShort(end + 10) & 0xFFFF;
+		long directorySize = tailBuffer.getInt(end + 12) & 0xFFFFFFFFL;
+		long directoryOffset = tailBuffer.getInt(end + 16) & 0xFFFFFFFFL;
+		if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL)
+			return null; // zip64
+		long endPosition = length - tailLength + end;
+		long base = endPosition - directorySize - directoryOffset; // size of the data prepended to the jar, if any
+		if (base < 0)
+			return null;
+
+		byte[] directory = new byte[(int) directorySize];
+		file.seek(base + directoryOffset);
+		file.readFully(directory);
+		ByteBuffer entries = ByteBuffer.wrap(directory).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+
+		// decode the names and collect the packages
+		String[] names = new String[entryCount];
+		SimpleSet packages = new SimpleSet(41);
+		packages.add(Util.EMPTY_STRING);
+		int position = 0, recordsSize = 0;
+		for (int i = 0; i < entryCount; i++) {
+			if (entries.getInt(position) != CENTRAL_SIGNATURE)
+				throw new ZipException("Invalid central directory of " + jar); //$NON-NLS-1$
+			int nameLength = entries.getShort(position + 28) & 0xFFFF;
+			String name = new String(directory, position + CENTRAL_HEADER_SIZE, nameLength, Util.UTF_8);
+			names[i] = name;
+			recordsSize += ENTRY_RECORD_SIZE + 2 * name.length();
+			int last = name.lastIndexOf('/');
+			while (last > 0) {
+				// add the package name & all of its parent packages
+				String packageName = name.substring(0, last);
+				if (packages.addIfNotIncluded(packageName) == null)
+					break; // already existed
+				last = packageName.lastIndexOf('/');
+			}
+			position += CENTRAL_HEADER_SIZE + nameLength + (entries.getShort(position + 30) & 0xFFFF) + (entries.getShort(position + 32) & 0xFFFF);
+		}
+		Object[] packageNames = new Object[packages.elementSize];
+		packages.asArray(packageNames);
+		for (int i = packageNames.length; --i >= 0;)
+			recordsSize += PACKAGE_RECORD_SIZE + 2 * ((String) packageNames[i]).length();
+
+		int entrySlots = slots(entryCount);
+		int packageSlots = slots(packageNames.length);
+		int recordsStart = HEADER_SIZE + 4 * (entrySlots + packageSlots);
+		ByteBuffer table = ByteBuffer.allocate(recordsStart + recordsSize);
+		table.putInt(0, MAGIC);
+		table.putInt(4, VERSION);
+		table.putLong(JAR_LENGTH, length);
+		table.putLong(JAR_LAST_MODIFIED, lastModified);
+		table.putLong(END_POSITION, endPosition);
+		for (int i = 0; i < END_RECORD_SIZE; i++)
+			table.put(END_RECORD + i, tail[end + i]);
+		table.putInt(ENTRY_SLOTS, entrySlots);
+		table.putInt(PACKAGE_SLOTS, packageSlots);
+		table.putInt(ENTRY_COUNT, entryCount);
+
+		table.position(recordsStart);
+		position = 0;
+		for (int i = 0; i < entryCount; i++) {
+			String name = names[i];
+			int record = table.position();
+			int hash = name.hashCode();
+			table.putInt(hash);
+			table.putLong(base + (entries.getInt(position + 42) & 0xFFFFFFFFL));
+			table.putInt(entries.getInt(position + 20));
+			table.putInt(entries.getInt(position + 24));
+			table.putShort(entries.getShort(position + 10));
+			putName(table, name);
+			insert(table, HEADER_SIZE, entrySlots, hash, record);
+			position += CENTRAL_HEADER_SIZE + (entries.getShort(position + 28) & 0xFFFF) + (entries.getShort(position + 30) & 0xFFFF) + (entries.getShort(position + 32) & 0xFFFF);
+		}
+		for (int i = packageNames.length; --i >= 0;) {
+			String name = (String) packageNames[i];
+			int record = table.position();
+			int hash = name.hashCode();
+			table.putInt(hash);
+			putName(table, name);
+			insert(table, HEADER_SIZE + 4 * entrySlots, packageSlots, hash, record);
+		}
+		table.clear();
+		return table;
+	} finally {
+		file.close();
+	}
+}
+
+private static int slots(int count) {
+	int slots = 16;
+	while (slots < count * 2) // keep at most half of the slots used
+		slots <<= 1;
+	return slots;
+}
+
+private static void putName(ByteBuffer table, String name) {
+	int length = name.length();
+	table.putShort((short) length);
+	for (int i = 0; i < length; i++)
+		table.putChar(name.charAt(i));
+}
+
+private static void insert(ByteBuffer table, int slotsStart, int slots, int hash, int record) {
+	int index = hash & (slots - 1);
+	while (table.getInt(slotsStart + 4 * index) != 0)
+		index = (index + 1) & (slots - 1);
+	table.putInt(slotsStart + 4 * index, record);
+}
+
+/*
+ * Answer the position of the record with the given name, -1 if none.
+ * nameOffset is the offset of the name length in the records.
+ */
+private int find(String name, int slotsStart, int slots, int nameOffset) {
+	int hash = name.hashCode();
+	int length = name.length();
+	int index = hash & (slots - 1);
+	int record;
+	nextSlot : while ((record = this.table.getInt(slotsStart + 4 * index)) != 0) {
+		index = (index + 1) & (slots - 1);
+		if (this.table.getInt(record) != hash || this.table.getShort(record + nameOffset) != length)
+			continue;
+		for (int i = 0, charPosition = record + nameOffset + 2; i < length; i++, charPosition += 2)
+			if (this.table.getChar(charPosition) != name.charAt(i))
+				continue nextSlot;
+		return record;
+	}
+	return -1;
+}
+
+public boolean isPackage(String qualifiedPackageName) {
+	return find(qualifiedPackageName, HEADER_SIZE + 4 * this.entrySlots, this.packageSlots, 4) != -1;
+}
+
+public boolean hasEntry(String entryName) {
+	return find(entryName, HEADER_SIZE, this.entrySlots, ENTRY_RECORD_SIZE - 2) != -1;
+}
+
+public int size() {
+	return this.table.getInt(ENTRY_COUNT);
+}
+
+/**
+ * Answer the contents of the given entry read through the given channel on the jar, null if there is no such entry.
+ */
+public byte[] getEntryBytes(String entryName, FileChannel channel) throws IOException {
+	int record = find(entryName, HEADER_SIZE, this.entrySlots, ENTRY_RECORD_SIZE - 2);
+	if (record == -1)
+		return null;
+	long offset = this.table.getLong(record + 4);
+	ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+	readFully(channel, header, offset);
+	if (header.getInt(0) != LOCAL_SIGNATURE)
+		throw new ZipException("Invalid local header of " + entryName); //$NON-NLS-1$
+	long dataOffset = offset + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+	ByteBuffer data = ByteBuffer.allocate(this.table.getInt(record + 12));
+	readFully(channel, data, dataOffset);
+	return contents(record, data.array());
+}
+
+private byte[] contents(int record, byte[] data) throws IOException {
+	int method = this.table.getShort(record + 20) & 0xFFFF;
+	if (method == STORED)
+		return data;
+	if (method != DEFLATED)
+		throw new ZipException("Unsupported compression method " + method); //$NON-NLS-1$
+	byte[] contents = new byte[this.table.getInt(record + 16)];
+	Inflater inflater = new Inflater(true);
+	try {
+		inflater.setInput(data);
+		int read = 0;
+		while (read < contents.length) {
+			int inflated = inflater.inflate(contents, read, contents.length - read);
+			if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+				break;
+			read += inflated;
+		}
+		if (read != contents.length)
+			throw new ZipException("Truncated entry"); //$NON-NLS-1$
+	} catch (DataFormatException e) {
+		throw new ZipException(e.getMessage());
+	} finally {
+		inflater.end();
+	}
+	return contents;
+}
+
+private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+	while (buffer.hasRemaining()) {
+		int read = channel.read(buffer, position);
+		if (read < 0)
+			throw new ZipException("Truncated jar"); //$NON-NLS-1$
+		position += read;
+	}
+}
+
+public String toString() {
+	return "Index of " + this.file.getPath() + " (" + size() + " entries)"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+}
+}
@@ -37,7 +37,7 @@ public SimpleSetOfCharArray(int size) {
 
 public Object add(char[] object) {
 	int length = this.values.length;
-	int index = (CharOperation.hashCode(object) & 0x7FFFFFFF) % length;
+	int index = CharOperation.hashCode(object) % length;
 	char[] current;
 	while ((current = this.values[index]) != null) {
 		if (CharOperation.equals(current, object)) return this.values[index] = object;
@@ -78,7 +78,7 @@ public Object clone() throws CloneNotSupportedException {
 
 public char[] get(char[] object) {
 	int length = this.values.length;
-	int index = (CharOperation.hashCode(object) & 0x7FFFFFFF) % length;
+	int index = CharOperation.hashCode(object) % length;
 	char[] current;
 	while ((current = this.values[index]) != null) {
 		if (CharOperation.equals(current, object)) return current;
@@ -93,7 +93,7 @@ public char[] get(char[] object) {
 
 public boolean includes(char[] object) {
 	int length = this.values.length;
-	int index = (CharOperation.hashCode(object) & 0x7FFFFFFF) % length;
+	int index = CharOperation.hashCode(object) % length;
 	char[] current;
 	while ((current = this.values[index]) != null) {
 		if (CharOperation.equals(current, object)) return true;
@@ -104,7 +104,7 @@ public boolean includes(char[] object) {
 
 public char[] remove(char[] object) {
 	int length = this.values.length;
-	int index = (CharOperation.hashCode(object) & 0x7FFFFFFF) % length;
+	int index = CharOperation.hashCode(object) % length;
 	char[] current;
 	while ((current = this.values[index]) != null) {
 		if (CharOperation.equals(current, object)) {
@@ -121,15 +121,22 @@ public char[] remove(char[] object) {
 }
 
 private void rehash() {
-	SimpleSetOfCharArray newSet = new SimpleSetOfCharArray(this.elementSize * 2); // double the number of expected elements
+	int size = this.elementSize * 2; // double the number of expected elements
+	if (size < 3) size = 3;
+	char[][] oldValues = this.values;
+	int length = 2 * size + 1;
+	this.threshold = size + 1;
+	this.values = new char[length][];
 	char[] current;
-	for (int i = this.values.length; --i >= 0;)
-		if ((current = this.values[i]) != null)
-			newSet.add(current);
-
-	this.values = newSet.values;
-	this.elementSize = newSet.elementSize;
-	this.threshold = newSet.threshold;
+	for (int i = oldValues.length; --i >= 0;) {
+		if ((current = oldValues[i]) != null) {
+			// the values are known to be different, place them without comparing them
+			int index = CharOperation.hashCode(current) % length;
+			while (this.values[index] != null)
+				if (++index == length) index = 0;
+			this.values[index] = current;
+		}
+	}
 }
 
 public String toString() {
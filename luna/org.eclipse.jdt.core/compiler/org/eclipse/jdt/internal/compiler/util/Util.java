@@ -24,6 +24,12 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.HashSet;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -226,8 +232,15 @@ public class Util implements SuffixConstants {
 	}
 
 	private static final int DEFAULT_READING_SIZE = 8192;
+	private static final int MAPPED_FILE_THRESHOLD = 64 * 1024; // mapping smaller files costs more than reading them
+	// buffers of larger files are dropped after use, the pooled buffers are kept as long as their threads live
+	private static final int MAX_POOLED_BUFFER_SIZE = MAPPED_FILE_THRESHOLD;
+	private static final ThreadLocal<ByteBuffer> READING_BUFFER = new ThreadLocal<ByteBuffer>();
+	private static final ThreadLocal<char[]> DECODING_BUFFER = new ThreadLocal<char[]>();
 	private static final int DEFAULT_WRITING_SIZE = 1024;
 	public final static String UTF_8 = "UTF-8";	//$NON-NLS-1$
+	private final static String ISO_8859_1 = "ISO-8859-1";	//$NON-NLS-1$
+	private final static String US_ASCII = "US-ASCII";	//$NON-NLS-1$
 	public static final String LINE_SEPARATOR = System.getProperty("line.separator"); //$NON-NLS-1$
 
 	public static final String EMPTY_STRING = new String(CharOperation.NO_CHAR);
@@ -407,20 +420,126 @@ public class Util implements SuffixConstants {
 	 * @throws IOException if a problem occured reading the file.
 	 */
 	public static char[] getFileCharContent(File file, String encoding) throws IOException {
-		InputStream stream = null;
+		return getFileCharContent(file, encoding, false);
+	}
+	/**
+	 * Returns the contents of the given file as a char array.
+	 * When encoding is null, then the platform default one is used.
+	 * The file is read through its channel into a buffer pooled by the current thread (a new buffer is used for
+	 * files larger than 64KB), or mapped in memory
+	 * if mapLargeFiles is set and the file is large. A mapped file stays mapped until the buffer is garbage
+	 * collected and cannot be truncated or deleted in the meantime on some platforms, thus only clients which
+	 * do not expect the files to change while reading them (e.g. the batch compiler) should map them.
+	 * @throws IOException if a problem occured reading the file.
+	 */
+	public static char[] getFileCharContent(File file, String encoding, boolean mapLargeFiles) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
 		try {
-			stream = new FileInputStream(file);
-			return getInputStreamAsCharArray(stream, (int) file.length(), encoding);
-		} finally {
-			if (stream != null) {
-				try {
-					stream.close();
-				} catch (IOException e) {
-					// ignore
+			FileChannel channel = stream.getChannel();
+			long size = channel.size();
+			ByteBuffer bytes;
+			if (mapLargeFiles && size >= MAPPED_FILE_THRESHOLD) {
+				bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} else {
+				bytes = READING_BUFFER.get();
+				// one spare byte, so that reaching the end of the file does not look like a file which grew
+				if (bytes == null || bytes.capacity() <= size) {
+					bytes = ByteBuffer.allocate(Math.max((int) size + 1, DEFAULT_READING_SIZE));
+					if (bytes.capacity() <= MAX_POOLED_BUFFER_SIZE)
+						READING_BUFFER.set(bytes);
+				}
+				bytes.clear();
+				while (channel.read(bytes) >= 0) {
+					if (!bytes.hasRemaining()) {
+						// the file grew since its size was read
+						ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() * 2);
+						bytes.flip();
+						bytes = larger.put(bytes);
+					}
 				}
+				bytes.flip();
+			}
+			return decode(bytes, encoding);
+		} finally {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				// ignore
 			}
 		}
 	}
+	/*
+	 * Decode the given bytes like an InputStreamReader would (malformed input is replaced), but without
+	 * intermediate buffers: ISO-8859-1 is mapped directly and the leading ASCII characters of US-ASCII and
+	 * UTF-8 contents, i.e. most of the time the entire source, are copied before a decoder takes over.
+	 */
+	private static char[] decode(ByteBuffer bytes, String encoding) {
+		Charset charset = null;
+		if (encoding != null) {
+			try {
+				charset = Charset.forName(encoding);
+			} catch (IllegalArgumentException e) {
+				// encoding is not supported
+			}
+		}
+		if (charset == null)
+			charset = Charset.defaultCharset();
+		String charsetName = charset.name();
+		int length = bytes.remaining();
+		int start = bytes.position();
+		char[] contents;
+		int count = 0;
+		if (ISO_8859_1.equals(charsetName)) {
+			contents = new char[length];
+			for (; count < length; count++)
+				contents[count] = (char) (bytes.get(start + count) & 0xFF);
+			return contents;
+		} else if (US_ASCII.equals(charsetName) || UTF_8.equals(charsetName)) {
+			// one byte never decodes to more than one char
+			contents = new char[length];
+			byte b;
+			while (count < length && (b = bytes.get(start + count)) >= 0)
+				contents[count++] = (char) b;
+			if (count < length) {
+				bytes.position(start + count);
+				CharBuffer buffer = CharBuffer.wrap(contents, count, length - count);
+				decode(charset, bytes, buffer);
+				count = buffer.position();
+			}
+		} else {
+			contents = DECODING_BUFFER.get();
+			int maxLength = (int) (length * (double) charset.newDecoder().maxCharsPerByte()) + 1;
+			if (contents == null || contents.length < maxLength) {
+				contents = new char[maxLength];
+				if (maxLength <= MAX_POOLED_BUFFER_SIZE)
+					DECODING_BUFFER.set(contents);
+			}
+			CharBuffer buffer = CharBuffer.wrap(contents);
+			decode(charset, bytes, buffer);
+			count = buffer.position();
+		}
+
+		// Do not keep first character for UTF-8 BOM encoding
+		int offset = 0;
+		if (count > 0 && UTF_8.equals(encoding)) {
+			if (contents[0] == 0xFEFF) { // if BOM char then skip
+				count--;
+				offset = 1;
+			}
+		}
+
+		// resize contents if necessary, a pooled buffer is never answered
+		if (count < contents.length)
+			System.arraycopy(contents, offset, contents = new char[count], 0, count);
+		return contents;
+	}
+	private static void decode(Charset charset, ByteBuffer bytes, CharBuffer buffer) {
+		CharsetDecoder decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		decoder.decode(bytes, buffer, true);
+		decoder.flush(buffer);
+	}
 	private static FileOutputStream getFileOutputStream(boolean generatePackagesStructure, String outputPath, String relativeFileName) throws IOException {
 		if (generatePackagesStructure) {
 			return new FileOutputStream(new File(buildAllDirectoriesInto(outputPath, relativeFileName)));
@@ -543,6 +543,7 @@ protected Compiler newCompiler() {
 	// temporary code to allow the compiler to revert to a single thread
 	String setting = System.getProperty("jdt.compiler.useSingleThread"); //$NON-NLS-1$
 	newCompiler.useSingleThread = setting != null && setting.equals("true"); //$NON-NLS-1$
+	newCompiler.parserThreads = Integer.getInteger("jdt.compiler.parserThreads", 0).intValue(); //$NON-NLS-1$
 
 	// enable the compiler reference info support
 	options.produceReferenceInfo = true;
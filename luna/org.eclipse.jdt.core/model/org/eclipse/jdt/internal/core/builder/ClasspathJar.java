@@ -14,16 +14,20 @@ package org.eclipse.jdt.internal.core.builder;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.*;
 
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.internal.compiler.classfmt.BinaryTypeCache;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
 import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
 import org.eclipse.jdt.internal.compiler.env.AccessRuleSet;
 import org.eclipse.jdt.internal.compiler.env.NameEnvironmentAnswer;
+import org.eclipse.jdt.internal.compiler.util.JarIndex;
 import org.eclipse.jdt.internal.compiler.util.SimpleLookupTable;
 import org.eclipse.jdt.internal.compiler.util.SimpleSet;
 import org.eclipse.jdt.internal.compiler.util.SuffixConstants;
 import org.eclipse.jdt.internal.core.util.Util;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.zip.*;
 
@@ -44,6 +48,23 @@ static class PackageCacheEntry {
 
 static SimpleLookupTable PackageCache = new SimpleLookupTable();
 
+static File IndexDirectory;
+
+/**
+ * Answer the directory in which the indexes of the jars are saved along with the state of the builder,
+ * null if the plugin is not running.
+ */
+static File indexDirectory() {
+	if (IndexDirectory == null) {
+		try {
+			IndexDirectory = JavaCore.getPlugin().getStateLocation().append("jarIndexes").toFile(); //$NON-NLS-1$
+		} catch (RuntimeException e) {
+			return null; // indexes are kept in memory only
+		}
+	}
+	return IndexDirectory;
+}
+
 /**
  * Calculate and cache the package list available in the zipFile.
  * @param jar The ClasspathJar to use
@@ -52,7 +73,7 @@ static SimpleLookupTable PackageCache = new SimpleLookupTable();
 static SimpleSet findPackageSet(ClasspathJar jar) {
 	String zipFileName = jar.zipFilename;
 	long lastModified = jar.lastModified();
-	long fileSize = new File(zipFileName).length();
+	long fileSize = jar.fileSize();
 	PackageCacheEntry cacheEntry = (PackageCacheEntry) PackageCache.get(zipFileName);
 	if (cacheEntry != null && cacheEntry.lastModified == lastModified && cacheEntry.fileSize == fileSize)
 		return cacheEntry.packageSet;
@@ -81,7 +102,10 @@ static SimpleSet findPackageSet(ClasspathJar jar) {
 String zipFilename; // keep for equals
 IFile resource;
 ZipFile zipFile;
+JarIndex index; // null if the jar is read through its zip file
+RandomAccessFile indexedFile;
 long lastModified;
+long fileSize;
 boolean closeZipFileAtEnd;
 SimpleSet knownPackageNames;
 AccessRuleSet accessRuleSet;
@@ -128,6 +152,14 @@ public void cleanup() {
 		}
 		this.zipFile = null;
 	}
+	if (this.indexedFile != null) {
+		try {
+			this.indexedFile.close();
+		} catch(IOException e) { // ignore it
+		}
+		this.indexedFile = null;
+	}
+	this.index = null;
 	this.knownPackageNames = null;
 }
 
@@ -146,7 +178,16 @@ public NameEnvironmentAnswer findClass(String binaryFileName, String qualifiedPa
 	if (!isPackage(qualifiedPackageName)) return null; // most common case
 
 	try {
-		ClassFileReader reader = ClassFileReader.read(this.zipFile, qualifiedBinaryFileName);
+		ClassFileReader reader;
+		if (this.index != null) {
+			// read through a channel rather than a mapping, which would lock the jar until garbage collected
+			if (this.indexedFile == null)
+				this.indexedFile = new RandomAccessFile(this.index.file, "r"); //$NON-NLS-1$
+			FileChannel channel = this.indexedFile.getChannel();
+			reader = BinaryTypeCache.Shared.read(this.index, channel, qualifiedBinaryFileName, null);
+		} else {
+			reader = BinaryTypeCache.Shared.read(this.zipFile, lastModified(), fileSize(), qualifiedBinaryFileName, null);
+		}
 		if (reader != null) {
 			if (this.accessRuleSet == null)
 				return new NameEnvironmentAnswer(reader, null);
@@ -169,11 +210,17 @@ public int hashCode() {
 }
 
 public boolean isPackage(String qualifiedPackageName) {
+	if (this.index != null)
+		return this.index.isPackage(qualifiedPackageName);
 	if (this.knownPackageNames != null)
 		return this.knownPackageNames.includes(qualifiedPackageName);
 
 	try {
 		if (this.zipFile == null) {
+			// answer the packages from the index of the jar, without opening it
+			this.index = JarIndex.get(new File(this.zipFilename), indexDirectory());
+			if (this.index != null)
+				return this.index.isPackage(qualifiedPackageName);
 			if (org.eclipse.jdt.internal.core.JavaModelManager.ZIP_ACCESS_VERBOSE) {
 				System.out.println("(" + Thread.currentThread() + ") [ClasspathJar.isPackage(String)] Creating ZipFile on " + this.zipFilename); //$NON-NLS-1$	//$NON-NLS-2$
 			}
@@ -193,6 +240,12 @@ public long lastModified() {
 	return this.lastModified;
 }
 
+long fileSize() {
+	if (this.fileSize == 0)
+		this.fileSize = new File(this.zipFilename).length();
+	return this.fileSize;
+}
+
 public String toString() {
 	String start = "Classpath jar file " + this.zipFilename; //$NON-NLS-1$
 	if (this.accessRuleSet == null)
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.core.builder;
 
+import java.io.IOException;
+
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.CoreException;
@@ -74,6 +76,17 @@ String extractTypeName() {
 }
 
 public char[] getContents() {
+	// read local files through their channel, the resource input stream is only needed for other file systems
+	IPath location = this.resource.getLocation();
+	if (location != null) {
+		try {
+			return org.eclipse.jdt.internal.compiler.util.Util.getFileCharContent(location.toFile(), this.resource.getCharset());
+		} catch (IOException e) {
+			// fall back to the resource contents which reports a missing file
+		} catch (CoreException e) {
+			// same as above
+		}
+	}
 
 	try {
 		return Util.getResourceContentsAsCharArray(this.resource);
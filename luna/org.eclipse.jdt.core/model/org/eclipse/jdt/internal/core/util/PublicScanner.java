@@ -63,6 +63,9 @@ public class PublicScanner implements IScanner, ITerminalSymbols {
 	public char[] withoutUnicodeBuffer;
 	public int withoutUnicodePtr; //when == 0 ==> no unicode in the current token
 	public boolean unicodeAsBackSlash = false;
+	// the last source checked for unicode escapes, see hasUnicodeEscapes()
+	private char[] checkedSource;
+	private boolean checkedSourceHasUnicodeEscapes;
 
 	public boolean scanningFloatLiteral = false;
 
@@ -1123,6 +1126,8 @@ public int getNextToken() throws InvalidInputException {
 		return this.currentPosition > this.eofPosition ? TokenNameEOF : TokenNameRBRACE;
 	}
 	int whiteStart = 0;
+	// white spaces and comments are skipped without the unicode checks when the source has no unicode escape
+	boolean hasUnicodeEscapes = hasUnicodeEscapes();
 	try {
 		while (true) { //loop for jumping over comments
 			this.withoutUnicodePtr = 0;
@@ -1134,6 +1139,26 @@ public int getNextToken() throws InvalidInputException {
 			int offset;
 			int unicodePtr;
 			boolean checkIfUnicode = false;
+			if (!hasUnicodeEscapes) {
+				// skip the white spaces up to the last one, which is consumed by the loop below
+				char[] src = this.source;
+				int pos = this.currentPosition;
+				int max = Math.min(this.eofPosition, src.length) - 1;
+				char c;
+				while (pos < max && ((c = src[pos]) == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f')) {
+					pos++;
+					if ((c == '\r' || c == '\n') && this.recordLineSeparator) {
+						this.currentCharacter = c;
+						this.currentPosition = pos;
+						pushLineSeparator();
+						pos = this.currentPosition;
+					}
+				}
+				if (pos != whiteStart) {
+					hasWhiteSpaces = true;
+					this.currentPosition = pos;
+				}
+			}
 			do {
 				unicodePtr = this.withoutUnicodePtr;
 				offset = this.currentPosition;
@@ -1552,6 +1577,26 @@ public int getNextToken() throws InvalidInputException {
 								} //jump over the \\
 								boolean isUnicode = false;
 								while (this.currentCharacter != '\r' && this.currentCharacter != '\n') {
+									if (!hasUnicodeEscapes) {
+										// find the end of the line, the code below handles the end of the source
+										char[] src = this.source;
+										int pos = this.currentPosition;
+										int max = Math.min(this.eofPosition, src.length - 1);
+										if (pos < max) {
+											int last;
+											char c;
+											do {
+												last = pos;
+												c = src[pos++];
+												if (c == '\\' && src[pos] == '\\')
+													pos++; //jump over the \\
+											} while (c != '\r' && c != '\n' && pos < max);
+											this.lastCommentLinePosition = last;
+											this.currentCharacter = c;
+											this.currentPosition = pos;
+											continue;
+										}
+									}
 									if (this.currentPosition >= this.eofPosition) {
 										this.lastCommentLinePosition = this.currentPosition;
 										this.currentPosition ++;
@@ -1673,6 +1718,32 @@ public int getNextToken() throws InvalidInputException {
 								//loop until end of comment */
 								int firstTag = 0;
 								while ((this.currentCharacter != '/') || (!star)) {
+									if (!hasUnicodeEscapes) {
+										// go through the comment up to its end, the code below handles the first tag and the end of the source
+										char[] src = this.source;
+										int pos = this.currentPosition;
+										int max = Math.min(this.eofPosition, src.length - 2);
+										char c = this.currentCharacter;
+										if (pos < max && (c != '@' || firstTag != 0)) {
+											do {
+												if ((c == '\r' || c == '\n') && this.recordLineSeparator) {
+													this.currentCharacter = c;
+													this.currentPosition = pos;
+													pushLineSeparator();
+													pos = this.currentPosition;
+												}
+												star = c == '*';
+												previous = pos;
+												c = src[pos++];
+												if (c == '\\' && src[pos] == '\\')
+													pos++; //jump over the \\
+											} while ((c != '/' || !star) && pos < max && (c != '@' || firstTag != 0));
+											this.currentCharacter = c;
+											this.currentPosition = pos;
+											isUnicode = false;
+											continue;
+										}
+									}
 									if (this.currentPosition >= this.eofPosition) {
 										throw new InvalidInputException(UNTERMINATED_COMMENT);
 									}
@@ -1792,6 +1863,25 @@ public int getNextToken() throws InvalidInputException {
 	}
 	return TokenNameEOF;
 }
+/*
+ * Answer whether the source may contain unicode escapes, in which case white spaces and comments
+ * are read one character at a time through the unicode checks. The answer is kept until the next setSource(char[]).
+ */
+private boolean hasUnicodeEscapes() {
+	char[] src = this.source;
+	if (src != this.checkedSource) {
+		boolean hasUnicodeEscapes = false;
+		for (int i = 0, max = src.length - 1; i < max; i++) {
+			if (src[i] == '\\' && src[i + 1] == 'u') {
+				hasUnicodeEscapes = true;
+				break;
+			}
+		}
+		this.checkedSource = src;
+		this.checkedSourceHasUnicodeEscapes = hasUnicodeEscapes;
+	}
+	return this.checkedSourceHasUnicodeEscapes;
+}
 public void getNextUnicodeChar()
 	throws InvalidInputException {
 	//VOID
@@ -2775,6 +2865,16 @@ public int scanIdentifierOrKeywordWithBoundCheck() {
 	identLoop: {
 		int pos;
 		int srcLength = this.eofPosition;
+		if (this.withoutUnicodePtr == 0) {
+			// skip the plain ascii identifier characters, the loop below handles the character following them
+			pos = this.currentPosition;
+			char c;
+			while (pos < srcLength && (c = src[pos]) < ScannerHelper.MAX_OBVIOUS
+					&& (ScannerHelper.OBVIOUS_IDENT_CHAR_NATURES[c] &
+						(ScannerHelper.C_UPPER_LETTER | ScannerHelper.C_LOWER_LETTER | ScannerHelper.C_IDENT_PART | ScannerHelper.C_DIGIT)) != 0)
+				pos++;
+			this.currentPosition = pos;
+		}
 		while (true) {
 			if ((pos = this.currentPosition) >= srcLength) // handle the obvious case upfront
 				break identLoop;
@@ -2837,6 +2937,16 @@ public int scanIdentifierOrKeyword() {
 	identLoop: {
 		int pos;
 		int srcLength = this.eofPosition;
+		if (this.withoutUnicodePtr == 0) {
+			// skip the plain ascii identifier characters, the loop below handles the character following them
+			pos = this.currentPosition;
+			char c;
+			while (pos < srcLength && (c = src[pos]) < ScannerHelper.MAX_OBVIOUS
+					&& (ScannerHelper.OBVIOUS_IDENT_CHAR_NATURES[c] &
+						(ScannerHelper.C_UPPER_LETTER | ScannerHelper.C_LOWER_LETTER | ScannerHelper.C_IDENT_PART | ScannerHelper.C_DIGIT)) != 0)
+				pos++;
+			this.currentPosition = pos;
+		}
 		while (true) {
 			if ((pos = this.currentPosition) >= srcLength) // handle the obvious case upfront
 				break identLoop;
@@ -3766,6 +3876,7 @@ public final void setSource(char[] sourceString){
 	this.initialPosition = this.currentPosition = 0;
 	this.containsAssertKeyword = false;
 	this.linePtr = -1;
+	this.checkedSource = null; // the same array may be given again with new contents
 }
 /*
  * Should be used if a parse (usually a diet parse) has already been performed on the unit,
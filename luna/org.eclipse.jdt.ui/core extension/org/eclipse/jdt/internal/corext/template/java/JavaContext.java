@@ -19,6 +19,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -172,18 +173,7 @@ public class JavaContext extends CompilationUnitContext {
 		if (!canEvaluate(template))
 			throw new TemplateException(JavaTemplateMessages.Context_error_cannot_evaluate);
 
-		TemplateTranslator translator= new TemplateTranslator() {
-			@Override
-			protected TemplateVariable createVariable(TemplateVariableType type, String name, int[] offsets) {
-//				TemplateVariableResolver resolver= getContextType().getResolver(type.getName());
-//				return resolver.createVariable();
-
-				MultiVariable variable= new JavaVariable(type, name, offsets);
-				fVariables.put(name, variable);
-				return variable;
-			}
-		};
-		TemplateBuffer buffer= translator.translate(template);
+		TemplateBuffer buffer= TemplateSkeleton.get(template).createBuffer(fVariables);
 
 		getContextType().resolve(buffer, this);
 
@@ -206,6 +196,82 @@ public class JavaContext extends CompilationUnitContext {
 		fImportRewrite= null;
 	}
 
+	/**
+	 * The translated pattern of a template, i.e. the pattern without the variable definitions and the type, name and offsets of its
+	 * variables. Skeletons are cached by pattern, thus evaluating a template only creates fresh variables instead of translating
+	 * the pattern again.
+	 *
+	 * @since 3.10
+	 */
+	private static final class TemplateSkeleton {
+
+		private static final int CACHE_SIZE= 256;
+
+		private static final Map<String, TemplateSkeleton> fgCache= new LinkedHashMap<String, TemplateSkeleton>(CACHE_SIZE, 0.75f, true) {
+			private static final long serialVersionUID= 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, TemplateSkeleton> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		};
+
+		private final String fString;
+		private final TemplateVariableType[] fTypes;
+		private final String[] fNames;
+		private final int[][] fOffsets;
+
+		private TemplateSkeleton(TemplateBuffer buffer) {
+			TemplateVariable[] variables= buffer.getVariables();
+			fString= buffer.getString();
+			fTypes= new TemplateVariableType[variables.length];
+			fNames= new String[variables.length];
+			fOffsets= new int[variables.length][];
+			for (int i= 0; i < variables.length; i++) {
+				fTypes[i]= variables[i].getVariableType();
+				fNames[i]= variables[i].getName();
+				fOffsets[i]= variables[i].getOffsets().clone();
+			}
+		}
+
+		/**
+		 * Returns the skeleton of the given template. The pattern is only translated if no skeleton of the pattern is cached.
+		 *
+		 * @param template the template
+		 * @return the skeleton of the template
+		 * @throws TemplateException if the pattern of the template has syntax errors
+		 */
+		static TemplateSkeleton get(Template template) throws TemplateException {
+			String pattern= template.getPattern();
+			synchronized (fgCache) {
+				TemplateSkeleton skeleton= fgCache.get(pattern);
+				if (skeleton != null)
+					return skeleton;
+			}
+			TemplateSkeleton skeleton= new TemplateSkeleton(new TemplateTranslator().translate(template));
+			synchronized (fgCache) {
+				fgCache.put(pattern, skeleton);
+			}
+			return skeleton;
+		}
+
+		/**
+		 * Creates a new template buffer with fresh variables.
+		 *
+		 * @param variables the map the created variables are added to
+		 * @return a new template buffer
+		 */
+		TemplateBuffer createBuffer(Map<String, MultiVariable> variables) {
+			TemplateVariable[] result= new TemplateVariable[fNames.length];
+			for (int i= 0; i < result.length; i++) {
+				MultiVariable variable= new JavaVariable(fTypes[i], fNames[i], fOffsets[i].clone());
+				variables.put(fNames[i], variable);
+				result[i]= variable;
+			}
+			return new TemplateBuffer(fString, result);
+		}
+	}
+
 	/*
 	 * @see TemplateContext#canEvaluate(Template templates)
 	 */
@@ -0,0 +1,48 @@
+package org.eclipse.jdt.postfixcompletion.benchmark;
+
+import org.junit.Test;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of this bundle inside the (headless) test runtime of <code>tycho-surefire</code>.
+ * <br/>
+ * The benchmarks need a running workspace and the JDT plug-ins, so JMH must not fork new JVMs but runs the benchmarks in the
+ * VM of the test runtime. The following system properties are used:
+ * <ul>
+ * <li><code>benchmark.include</code> - a regular expression selecting the benchmarks to run</li>
+ * <li><code>benchmark.profiler</code> - the JMH profiler to enable, <code>gc</code> by default to report the allocation rate</li>
+ * <li><code>benchmark.result</code> - the file the results are written to in JSON format</li>
+ * </ul>
+ */
+public class BenchmarkLauncher {
+
+	@Test
+	public void runBenchmarks() throws RunnerException {
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.include(System.getProperty("benchmark.include", ".*")) //$NON-NLS-1$ //$NON-NLS-2$
+				.forks(0)
+				.shouldFailOnError(true);
+		String profiler = System.getProperty("benchmark.profiler", "gc"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (profiler.length() > 0) {
+			options.addProfiler(profiler);
+		}
+		String result = System.getProperty("benchmark.result"); //$NON-NLS-1$
+		if (result != null) {
+			options.result(result).resultFormat(ResultFormatType.JSON);
+		}
+
+		// JMH looks up the generated META-INF/BenchmarkList and the benchmark classes with the context class loader
+		Thread thread = Thread.currentThread();
+		ClassLoader contextClassLoader = thread.getContextClassLoader();
+		thread.setContextClassLoader(BenchmarkLauncher.class.getClassLoader());
+		try {
+			new Runner(options.build()).run();
+		} finally {
+			thread.setContextClassLoader(contextClassLoader);
+		}
+	}
+}
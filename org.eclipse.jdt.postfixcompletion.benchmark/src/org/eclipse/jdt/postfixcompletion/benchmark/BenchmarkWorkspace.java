@@ -0,0 +1,96 @@
+package org.eclipse.jdt.postfixcompletion.benchmark;
+
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameRequestor;
+import org.eclipse.jdt.launching.JavaRuntime;
+
+/**
+ * This class sets up the Java project in the (headless) workspace of the benchmark runtime
+ * and creates the synthetic compilation units.
+ */
+public class BenchmarkWorkspace {
+
+	private static final String PROJECT_NAME = "PostfixBenchmark"; //$NON-NLS-1$
+
+	private BenchmarkWorkspace() {
+	}
+
+	/**
+	 * Returns the Java project of the benchmarks. The project is created and the indexer is waited for on the first call.
+	 *
+	 * @return the Java project
+	 * @throws CoreException
+	 */
+	public static synchronized IJavaProject getJavaProject() throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		IProject project = workspace.getRoot().getProject(PROJECT_NAME);
+		if (project.exists()) {
+			return JavaCore.create(project);
+		}
+
+		// Builds would interfere with the measurements
+		IWorkspaceDescription workspaceDescription = workspace.getDescription();
+		workspaceDescription.setAutoBuilding(false);
+		workspace.setDescription(workspaceDescription);
+
+		project.create(null);
+		project.open(null);
+		IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { JavaCore.NATURE_ID });
+		project.setDescription(description, null);
+
+		IFolder src = project.getFolder("src"); //$NON-NLS-1$
+		src.create(true, true, null);
+		IJavaProject javaProject = JavaCore.create(project);
+		javaProject.setRawClasspath(new IClasspathEntry[] {
+				JavaCore.newSourceEntry(src.getFullPath()),
+				JavaRuntime.getDefaultJREContainerEntry()
+		}, project.getFolder("bin").getFullPath(), null); //$NON-NLS-1$
+
+		waitForIndexer();
+		return javaProject;
+	}
+
+	/**
+	 * Creates (or replaces) a compilation unit with the given name and source.
+	 *
+	 * @param name the name of the compilation unit without extension
+	 * @param source the source
+	 * @return the compilation unit
+	 * @throws CoreException
+	 */
+	public static ICompilationUnit createCompilationUnit(String name, String source) throws CoreException {
+		IJavaProject javaProject = getJavaProject();
+		IPackageFragmentRoot root = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src")); //$NON-NLS-1$
+		IPackageFragment fragment = root.createPackageFragment(SyntheticSource.PACKAGE_NAME, true, null);
+		return fragment.createCompilationUnit(name + ".java", source, true, null); //$NON-NLS-1$
+	}
+
+	/**
+	 * Blocks until the indexer has processed all pending jobs, so the type searches of the completion
+	 * do not have to wait for it during the measurements.
+	 *
+	 * @throws CoreException
+	 */
+	public static void waitForIndexer() throws CoreException {
+		new SearchEngine().searchAllTypeNames(null, SearchPattern.R_EXACT_MATCH,
+				"!@$#!@".toCharArray(), SearchPattern.R_PATTERN_MATCH | SearchPattern.R_CASE_SENSITIVE, //$NON-NLS-1$
+				IJavaSearchConstants.CLASS, SearchEngine.createWorkspaceScope(), new TypeNameRequestor() {
+				}, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, null);
+	}
+}
@@ -0,0 +1,135 @@
+package org.eclipse.jdt.postfixcompletion.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.internal.compiler.util.HashtableOfObject;
+import org.eclipse.jdt.internal.compiler.util.SimpleSetOfCharArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the <code>char[]</code> keyed hashtables of the patched compiler with the previous implementations
+ * ({@link LegacyHashtableOfObject}, {@link LegacySimpleSetOfCharArray}).
+ * <br/>
+ * The keys are qualified type names like those the lookup environment keeps. Each benchmark method processes all keys:
+ * <ul>
+ * <li><code>put*</code>, <code>add*</code> - fill an empty table, its growth included</li>
+ * <li><code>get*</code>, <code>includes*</code> - look up each key once and a missing key as often, in a filled table</li>
+ * </ul>
+ * <code>HashtableOfObject</code> stands for the hashtables sharing <code>CharArrayHashtable</code>, which only differ in
+ * the type of their values.
+ */
+@SuppressWarnings("restriction")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class HashtableBenchmark {
+
+	/**
+	 * The number of keys, from the size of a scope to the number of types of a JRE.
+	 */
+	@Param({ "16", "1000", "20000" })
+	public int size;
+
+	private char[][] keys;
+	private char[][] missingKeys;
+
+	private HashtableOfObject table;
+	private LegacyHashtableOfObject legacyTable;
+	private SimpleSetOfCharArray set;
+	private LegacySimpleSetOfCharArray legacySet;
+
+	@Setup
+	public void setUp() {
+		keys = new char[size][];
+		missingKeys = new char[size][];
+		for (int i = 0; i < size; i++) {
+			String name = "java/package" + (i % 97) + "/Type" + i; //$NON-NLS-1$ //$NON-NLS-2$
+			keys[i] = name.toCharArray();
+			missingKeys[i] = (name + "$Missing").toCharArray(); //$NON-NLS-1$
+		}
+		table = putCurrent();
+		legacyTable = putLegacy();
+		set = addCurrent();
+		legacySet = addLegacy();
+	}
+
+	@Benchmark
+	public HashtableOfObject putCurrent() {
+		HashtableOfObject result = new HashtableOfObject();
+		for (char[] key : keys) {
+			result.put(key, key);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public LegacyHashtableOfObject putLegacy() {
+		LegacyHashtableOfObject result = new LegacyHashtableOfObject();
+		for (char[] key : keys) {
+			result.put(key, key);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public void getCurrent(Blackhole blackhole) {
+		for (int i = 0; i < size; i++) {
+			blackhole.consume(table.get(keys[i]));
+			blackhole.consume(table.get(missingKeys[i]));
+		}
+	}
+
+	@Benchmark
+	public void getLegacy(Blackhole blackhole) {
+		for (int i = 0; i < size; i++) {
+			blackhole.consume(legacyTable.get(keys[i]));
+			blackhole.consume(legacyTable.get(missingKeys[i]));
+		}
+	}
+
+	@Benchmark
+	public SimpleSetOfCharArray addCurrent() {
+		SimpleSetOfCharArray result = new SimpleSetOfCharArray();
+		for (char[] key : keys) {
+			result.add(key);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public LegacySimpleSetOfCharArray addLegacy() {
+		LegacySimpleSetOfCharArray result = new LegacySimpleSetOfCharArray();
+		for (char[] key : keys) {
+			result.add(key);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public void includesCurrent(Blackhole blackhole) {
+		for (int i = 0; i < size; i++) {
+			blackhole.consume(set.includes(keys[i]));
+			blackhole.consume(set.includes(missingKeys[i]));
+		}
+	}
+
+	@Benchmark
+	public void includesLegacy(Blackhole blackhole) {
+		for (int i = 0; i < size; i++) {
+			blackhole.consume(legacySet.includes(keys[i]));
+			blackhole.consume(legacySet.includes(missingKeys[i]));
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package org.eclipse.jdt.postfixcompletion.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.ui.IEditorPart;
+
+/**
+ * A {@link JavaContentAssistInvocationContext} which does not need an editor or a widget.
+ * <br/>
+ * The viewer is a proxy which only answers the document and an empty selection at the invocation offset, this is all
+ * the postfix completion asks the viewer for. All other methods return <code>null</code>, <code>false</code> or <code>0</code>.
+ */
+public class HeadlessInvocationContext extends JavaContentAssistInvocationContext {
+
+	private final ICompilationUnit compilationUnit;
+
+	public HeadlessInvocationContext(ICompilationUnit compilationUnit, IDocument document, int offset) {
+		super(createViewer(document, offset), offset, createProxy(IEditorPart.class, new DefaultValueHandler()));
+		this.compilationUnit = compilationUnit;
+	}
+
+	@Override
+	public ICompilationUnit getCompilationUnit() {
+		return compilationUnit;
+	}
+
+	/**
+	 * Creates a viewer proxy showing the given document with an empty selection at the given offset.
+	 *
+	 * @param document
+	 * @param offset
+	 * @return the viewer
+	 */
+	public static ITextViewer createViewer(final IDocument document, final int offset) {
+		return createProxy(ITextViewer.class, new DefaultValueHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("getDocument".equals(method.getName())) { //$NON-NLS-1$
+					return document;
+				}
+				if ("getSelectedRange".equals(method.getName())) { //$NON-NLS-1$
+					return new Point(offset, 0);
+				}
+				return super.invoke(proxy, method, args);
+			}
+		});
+	}
+
+	private static <T> T createProxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(HeadlessInvocationContext.class.getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	private static class DefaultValueHandler implements InvocationHandler {
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("equals".equals(name) && args != null && args.length == 1) { //$NON-NLS-1$
+				return Boolean.valueOf(proxy == args[0]);
+			}
+			if ("hashCode".equals(name) && args == null) { //$NON-NLS-1$
+				return Integer.valueOf(System.identityHashCode(proxy));
+			}
+			if ("toString".equals(name) && args == null) { //$NON-NLS-1$
+				return getClass().getName();
+			}
+			Class<?> returnType = method.getReturnType();
+			if (returnType == boolean.class) {
+				return Boolean.FALSE;
+			}
+			if (returnType == int.class) {
+				return Integer.valueOf(0);
+			}
+			if (returnType == long.class) {
+				return Long.valueOf(0);
+			}
+			if (returnType.isPrimitive() && returnType != void.class) {
+				throw new UnsupportedOperationException(method.toString());
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package org.eclipse.jdt.postfixcompletion.benchmark;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+
+/**
+ * The <code>HashtableOfObject</code> of the compiler before its keys have been moved into <code>CharArrayHashtable</code>,
+ * reduced to the operations measured by {@link HashtableBenchmark}. It is the baseline of the benchmark, do not change it.
+ */
+class LegacyHashtableOfObject {
+
+	char[] keyTable[];
+	Object valueTable[];
+
+	int elementSize;
+	int threshold;
+
+	LegacyHashtableOfObject() {
+		this(13);
+	}
+
+	LegacyHashtableOfObject(int size) {
+		this.elementSize = 0;
+		this.threshold = size;
+		int extraRoom = (int) (size * 1.75f);
+		if (this.threshold == extraRoom)
+			extraRoom++;
+		this.keyTable = new char[extraRoom][];
+		this.valueTable = new Object[extraRoom];
+	}
+
+	Object get(char[] key) {
+		int length = this.keyTable.length,
+			index = CharOperation.hashCode(key) % length;
+		int keyLength = key.length;
+		char[] currentKey;
+		while ((currentKey = this.keyTable[index]) != null) {
+			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
+				return this.valueTable[index];
+			if (++index == length) {
+				index = 0;
+			}
+		}
+		return null;
+	}
+
+	Object put(char[] key, Object value) {
+		int length = this.keyTable.length,
+			index = CharOperation.hashCode(key) % length;
+		int keyLength = key.length;
+		char[] currentKey;
+		while ((currentKey = this.keyTable[index]) != null) {
+			if (currentKey.length == keyLength && CharOperation.equals(currentKey, key))
+				return this.valueTable[index] = value;
+			if (++index == length) {
+				index = 0;
+			}
+		}
+		this.keyTable[index] = key;
+		this.valueTable[index] = value;
+
+		if (++this.elementSize > this.threshold)
+			rehash();
+		return value;
+	}
+
+	void putUnsafely(char[] key, Object value) {
+		int length = this.keyTable.length,
+			index = CharOperation.hashCode(key) % length;
+		while (this.keyTable[index] != null) {
+			if (++index == length) {
+				index = 0;
+			}
+		}
+		this.keyTable[index] = key;
+		this.valueTable[index] = value;
+
+		if (++this.elementSize > this.threshold) {
+			rehash();
+		}
+	}
+
+	private void rehash() {
+		LegacyHashtableOfObject newHashtable = new LegacyHashtableOfObject(this.elementSize * 2);
+		char[] currentKey;
+		for (int i = this.keyTable.length; --i >= 0;)
+			if ((currentKey = this.keyTable[i]) != null)
+				newHashtable.putUnsafely(currentKey, this.valueTable[i]);
+
+		this.keyTable = newHashtable.keyTable;
+		this.valueTable = newHashtable.valueTable;
+		this.threshold = newHashtable.threshold;
+	}
+}
@@ -0,0 +1,62 @@
+package org.eclipse.jdt.postfixcompletion.benchmark;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+
+/**
+ * The <code>SimpleSetOfCharArray</code> of the compiler before its growth has been changed to place the values directly,
+ * reduced to the operations measured by {@link HashtableBenchmark}. It is the baseline of the benchmark, do not change it.
+ */
+class LegacySimpleSetOfCharArray {
+
+	char[][] values;
+	int elementSize;
+	int threshold;
+
+	LegacySimpleSetOfCharArray() {
+		this(13);
+	}
+
+	LegacySimpleSetOfCharArray(int size) {
+		if (size < 3) size = 3;
+		this.elementSize = 0;
+		this.threshold = size + 1;
+		this.values = new char[2 * size + 1][];
+	}
+
+	Object add(char[] object) {
+		int length = this.values.length;
+		int index = (CharOperation.hashCode(object) & 0x7FFFFFFF) % length;
+		char[] current;
+		while ((current = this.values[index]) != null) {
+			if (CharOperation.equals(current, object)) return this.values[index] = object;
+			if (++index == length) index = 0;
+		}
+		this.values[index] = object;
+
+		if (++this.elementSize > this.threshold) rehash();
+		return object;
+	}
+
+	boolean includes(char[] object) {
+		int length = this.values.length;
+		int index = (CharOperation.hashCode(object) & 0x7FFFFFFF) % length;
+		char[] current;
+		while ((current = this.values[index]) != null) {
+			if (CharOperation.equals(current, object)) return true;
+			if (++index == length) index = 0;
+		}
+		return false;
+	}
+
+	private void rehash() {
+		LegacySimpleSetOfCharArray newSet = new LegacySimpleSetOfCharArray(this.elementSize * 2);
+		char[] current;
+		for (int i = this.values.length; --i >= 0;)
+			if ((current = this.values[i]) != null)
+				newSet.add(current);
+
+		this.values = newSet.values;
+		this.elementSize = newSet.elementSize;
+		this.threshold = newSet.threshold;
+	}
+}
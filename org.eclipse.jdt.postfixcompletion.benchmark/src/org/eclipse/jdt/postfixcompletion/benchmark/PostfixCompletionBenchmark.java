@@ -0,0 +1,159 @@
+package org.eclipse.jdt.postfixcompletion.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.internal.codeassist.CompletionNodeRequestor;
+import org.eclipse.jdt.internal.codeassist.InternalCompletionContext;
+import org.eclipse.jdt.internal.compiler.ast.ASTNode;
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.postfixcompletion.benchmark.SyntheticSource.Receiver;
+import org.eclipse.jdt.postfixcompletion.core.JavaStatementPostfixContext;
+import org.eclipse.jdt.postfixcompletion.core.JavaStatementPostfixContextType;
+import org.eclipse.jdt.postfixcompletion.core.PostfixCompletionInvocation;
+import org.eclipse.jdt.postfixcompletion.core.PostfixCompletionProposalComputer;
+import org.eclipse.jdt.postfixcompletion.core.PostfixTemplateEngine;
+import org.eclipse.jdt.postfixcompletion.core.PostfixTemplateIndex;
+import org.eclipse.jdt.postfixcompletion.core.PostfixTemplateProposal;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+import org.eclipse.jface.text.templates.Template;
+import org.eclipse.jface.text.templates.TemplateException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the phases of a single postfix code completion invocation on synthetic compilation units.
+ * <br/>
+ * Each benchmark method covers one phase:
+ * <ul>
+ * <li>{@link #computeCompletionProposals()} - the whole invocation as triggered by the content assist</li>
+ * <li>{@link #resolveCompletionNode()} - the context extension, i.e. the completion node lookup of the <code>CompletionEngine</code></li>
+ * <li>{@link #engineComplete()} - the template lookup and the creation of the proposals</li>
+ * <li>{@link #canEvaluate()} - the applicability check of all templates</li>
+ * <li>{@link #evaluate(Blackhole)} - the evaluation of all applicable templates as done for the preview</li>
+ * <li>{@link #addImportGenericClass()} - the import of the (generic) receiver type</li>
+ * </ul>
+ * The allocation per phase is reported by the GC profiler which is enabled by the {@link BenchmarkLauncher}.
+ */
+@SuppressWarnings("restriction")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class PostfixCompletionBenchmark {
+
+	@Param({ "100", "1000", "5000", "20000" })
+	public int lines;
+
+	@Param({ "SIMPLE", "COLLECTION", "ARRAY", "DEEP_GENERIC" })
+	public Receiver receiver;
+
+	private SyntheticSource source;
+	private ICompilationUnit compilationUnit;
+	private IDocument document;
+	private int offset;
+
+	private PostfixCompletionProposalComputer computer;
+	private JavaStatementPostfixContextType contextType;
+	private PostfixTemplateEngine engine;
+	private Template[] templates;
+
+	private ASTNode completionNode;
+	private ASTNode completionNodeParent;
+
+	@Setup(Level.Trial)
+	public void setUp() throws CoreException {
+		source = SyntheticSource.create(lines, receiver);
+		compilationUnit = BenchmarkWorkspace.createCompilationUnit(SyntheticSource.TYPE_NAME, source.getSource());
+		document = new Document(source.getSource());
+		offset = source.getCompletionOffset();
+
+		computer = new PostfixCompletionProposalComputer();
+		contextType = (JavaStatementPostfixContextType) JavaPlugin.getDefault().getTemplateContextRegistry().getContextType(JavaStatementPostfixContextType.ID_ALL);
+		engine = new PostfixTemplateEngine(contextType);
+		templates = PostfixTemplateIndex.getDefault().getTemplates();
+
+		InternalCompletionContext context = resolveCompletionNode();
+		if (context == null || !context.isExtended()) {
+			throw new IllegalStateException("No completion node at offset " + offset); //$NON-NLS-1$
+		}
+		completionNode = context.getCompletionNode();
+		completionNodeParent = context.getCompletionNodeParent();
+	}
+
+	@Benchmark
+	public List<ICompletionProposal> computeCompletionProposals() {
+		List<ICompletionProposal> result = computer.computeCompletionProposals(new HeadlessInvocationContext(compilationUnit, document, offset), new NullProgressMonitor());
+		computer.sessionEnded();
+		return result;
+	}
+
+	@Benchmark
+	public InternalCompletionContext resolveCompletionNode() throws JavaModelException {
+		final InternalCompletionContext[] result = new InternalCompletionContext[1];
+		compilationUnit.codeComplete(offset, new CompletionNodeRequestor() {
+			@Override
+			public void acceptCompletionNode(InternalCompletionContext context) {
+				result[0] = context;
+			}
+		});
+		return result[0];
+	}
+
+	@Benchmark
+	public PostfixTemplateProposal[] engineComplete() {
+		return engine.complete(new PostfixCompletionInvocation(document, offset, compilationUnit, completionNode, completionNodeParent));
+	}
+
+	@Benchmark
+	public int canEvaluate() {
+		JavaStatementPostfixContext context = createContext();
+		int result = 0;
+		for (Template template : templates) {
+			if (context.canEvaluate(template)) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	@Benchmark
+	public void evaluate(Blackhole blackhole) throws BadLocationException, TemplateException {
+		JavaStatementPostfixContext context = createContext();
+		context.setReadOnly(true);
+		for (Template template : templates) {
+			if (context.canEvaluate(template)) {
+				blackhole.consume(context.evaluate(template));
+			}
+		}
+	}
+
+	@Benchmark
+	public String addImportGenericClass() {
+		JavaStatementPostfixContext context = createContext();
+		context.setReadOnly(false);
+		return context.addImportGenericClass(source.getReceiverTypeName());
+	}
+
+	private JavaStatementPostfixContext createContext() {
+		return contextType.createContext(document, offset, 0, compilationUnit, completionNode, completionNodeParent);
+	}
+}
@@ -0,0 +1,165 @@
+package org.eclipse.jdt.postfixcompletion.benchmark;
+
+/**
+ * Generates the source of a synthetic compilation unit with a given number of lines and a single
+ * postfix completion location.
+ * <br/>
+ * The compilation unit consists of filler methods and a target method in the middle of the type which ends with
+ * <code>receiver.</code>. The receiver expression depends on the chosen {@link Receiver}, the deep generic receiver
+ * additionally declares a chain of generic member types which inherit from each other.
+ */
+public class SyntheticSource {
+
+	public static final String PACKAGE_NAME = "benchmark"; //$NON-NLS-1$
+	public static final String TYPE_NAME = "Synthetic"; //$NON-NLS-1$
+
+	private static final int GENERIC_DEPTH = 8;
+	private static final int HIERARCHY_DEPTH = 12;
+	private static final int LINES_PER_FILLER = 7;
+
+	/**
+	 * The receiver expression in front of the completion location.
+	 */
+	public enum Receiver {
+		/** A local variable of type <code>java.lang.String</code> */
+		SIMPLE,
+		/** A field of type <code>java.util.List&lt;String&gt;</code> */
+		COLLECTION,
+		/** A two dimensional array */
+		ARRAY,
+		/** A method invocation returning a nested generic type from a deep type hierarchy */
+		DEEP_GENERIC
+	}
+
+	private final String source;
+	private final int completionOffset;
+	private final String receiverTypeName;
+
+	private SyntheticSource(String source, int completionOffset, String receiverTypeName) {
+		this.source = source;
+		this.completionOffset = completionOffset;
+		this.receiverTypeName = receiverTypeName;
+	}
+
+	/**
+	 * Creates the source of a compilation unit with approximately the given number of lines.
+	 *
+	 * @param lines the number of lines of the compilation unit
+	 * @param receiver the receiver of the postfix completion
+	 * @return the generated source
+	 */
+	public static SyntheticSource create(int lines, Receiver receiver) {
+		StringBuilder sb = new StringBuilder(lines * 40);
+		sb.append("package ").append(PACKAGE_NAME).append(";\n\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append("public class ").append(TYPE_NAME).append(" {\n\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append("\tprivate java.util.List<String> values = new java.util.ArrayList<String>();\n"); //$NON-NLS-1$
+		sb.append("\tprivate int[][] matrix = new int[4][4];\n\n"); //$NON-NLS-1$
+		appendHierarchy(sb);
+
+		int fillers = Math.max(0, (lines - countLines(sb) - 10) / LINES_PER_FILLER);
+		int i = 0;
+		for (; i < fillers / 2; i++) {
+			appendFiller(sb, i);
+		}
+
+		String receiverTypeName;
+		sb.append("\tpublic void target() {\n"); //$NON-NLS-1$
+		switch (receiver) {
+		case SIMPLE:
+			sb.append("\t\tString value = values.get(0);\n"); //$NON-NLS-1$
+			sb.append("\t\tvalue."); //$NON-NLS-1$
+			receiverTypeName = "java.lang.String"; //$NON-NLS-1$
+			break;
+		case COLLECTION:
+			sb.append("\t\tvalues."); //$NON-NLS-1$
+			receiverTypeName = "java.util.List<java.lang.String>"; //$NON-NLS-1$
+			break;
+		case ARRAY:
+			sb.append("\t\tmatrix."); //$NON-NLS-1$
+			receiverTypeName = "int[][]"; //$NON-NLS-1$
+			break;
+		default:
+			sb.append("\t\tnew Node").append(HIERARCHY_DEPTH - 1).append("<").append(genericType(GENERIC_DEPTH)).append(">().self()."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			receiverTypeName = PACKAGE_NAME + "." + TYPE_NAME + ".Node" + (HIERARCHY_DEPTH - 1) + "<" + genericType(GENERIC_DEPTH) + ">"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			break;
+		}
+		int completionOffset = sb.length();
+		sb.append("\n\t}\n\n"); //$NON-NLS-1$
+
+		for (; i < fillers; i++) {
+			appendFiller(sb, i);
+		}
+		sb.append("}\n"); //$NON-NLS-1$
+		return new SyntheticSource(sb.toString(), completionOffset, receiverTypeName);
+	}
+
+	/**
+	 * Returns a fully qualified generic type with the given nesting depth,
+	 * i.e. <code>java.util.Map&lt;java.lang.String, java.util.List&lt;...&gt;&gt;</code>.
+	 *
+	 * @param depth the number of nested type arguments
+	 * @return the qualified type name
+	 */
+	public static String genericType(int depth) {
+		if (depth == 0) {
+			return "java.lang.String"; //$NON-NLS-1$
+		}
+		if (depth % 2 == 0) {
+			return "java.util.Map<java.lang.String, " + genericType(depth - 1) + ">"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return "java.util.List<" + genericType(depth - 1) + ">"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static void appendHierarchy(StringBuilder sb) {
+		sb.append("\tstatic class Node0<T> extends java.util.ArrayList<T> implements Comparable<Node0<T>>, java.util.concurrent.Callable<T> {\n"); //$NON-NLS-1$
+		sb.append("\t\tpublic int compareTo(Node0<T> o) { return 0; }\n"); //$NON-NLS-1$
+		sb.append("\t\tpublic T call() { return null; }\n"); //$NON-NLS-1$
+		sb.append("\t}\n"); //$NON-NLS-1$
+		for (int i = 1; i < HIERARCHY_DEPTH; i++) {
+			sb.append("\tstatic class Node").append(i).append("<T> extends Node").append(i - 1).append("<T> implements java.io.Serializable {\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			sb.append("\t\tNode").append(i).append("<T> self() { return this; }\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			sb.append("\t}\n"); //$NON-NLS-1$
+		}
+		sb.append('\n');
+	}
+
+	private static void appendFiller(StringBuilder sb, int i) {
+		sb.append("\tpublic int filler").append(i).append("(int a, String b) {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append("\t\tint result = a * ").append(i).append(";\n"); //$NON-NLS-1$ //$NON-NLS-2$
+		sb.append("\t\tif (b != null && b.length() > result) {\n"); //$NON-NLS-1$
+		sb.append("\t\t\tresult += values.size() + b.hashCode();\n"); //$NON-NLS-1$
+		sb.append("\t\t}\n"); //$NON-NLS-1$
+		sb.append("\t\treturn result;\n"); //$NON-NLS-1$
+		sb.append("\t}\n"); //$NON-NLS-1$
+	}
+
+	private static int countLines(CharSequence cs) {
+		int result = 0;
+		for (int i = 0; i < cs.length(); i++) {
+			if (cs.charAt(i) == '\n') {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the offset directly after the dot following the receiver expression.
+	 * @return
+	 */
+	public int getCompletionOffset() {
+		return completionOffset;
+	}
+
+	/**
+	 * Returns the fully qualified (generic) type of the receiver expression.
+	 * @return
+	 */
+	public String getReceiverTypeName() {
+		return receiverTypeName;
+	}
+}
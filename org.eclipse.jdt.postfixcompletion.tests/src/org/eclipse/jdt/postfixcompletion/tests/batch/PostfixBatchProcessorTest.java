@@ -0,0 +1,179 @@
+package org.eclipse.jdt.postfixcompletion.tests.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.launching.JavaRuntime;
+import org.eclipse.jdt.postfixcompletion.batch.PostfixBatchProcessor;
+import org.eclipse.jdt.postfixcompletion.batch.PostfixBatchProcessor.FileResult;
+import org.eclipse.jdt.postfixcompletion.batch.PostfixExpansion;
+import org.eclipse.jdt.postfixcompletion.core.JavaStatementPostfixContextType;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the expansion of postfix templates by the {@link PostfixBatchProcessor}.
+ */
+@SuppressWarnings("restriction")
+public class PostfixBatchProcessorTest {
+
+	private static final String PROJECT_NAME = "PostfixBatchTest"; //$NON-NLS-1$
+
+	private static IJavaProject javaProject;
+
+	@BeforeClass
+	public static void setUpProject() throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		IWorkspaceDescription workspaceDescription = workspace.getDescription();
+		workspaceDescription.setAutoBuilding(false);
+		workspace.setDescription(workspaceDescription);
+
+		IProject project = workspace.getRoot().getProject(PROJECT_NAME);
+		project.create(null);
+		project.open(null);
+		IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { JavaCore.NATURE_ID });
+		project.setDescription(description, null);
+
+		IFolder src = project.getFolder("src"); //$NON-NLS-1$
+		src.create(true, true, null);
+		javaProject = JavaCore.create(project);
+		javaProject.setRawClasspath(new IClasspathEntry[] {
+				JavaCore.newSourceEntry(src.getFullPath()),
+				JavaRuntime.getDefaultJREContainerEntry()
+		}, project.getFolder("bin").getFullPath(), null); //$NON-NLS-1$
+	}
+
+	@AfterClass
+	public static void deleteProject() throws CoreException {
+		javaProject.getProject().delete(true, null);
+	}
+
+	@Test
+	public void testExpansionAddsImport() throws Exception {
+		String source = "package p;\n" //$NON-NLS-1$
+				+ "\n" //$NON-NLS-1$
+				+ "public class A {\n" //$NON-NLS-1$
+				+ "	void m() {\n" //$NON-NLS-1$
+				+ "		java.util.Collections.emptyList();\n" //$NON-NLS-1$
+				+ "	}\n" //$NON-NLS-1$
+				+ "}\n"; //$NON-NLS-1$
+		ICompilationUnit unit = createCompilationUnit("A", source); //$NON-NLS-1$
+
+		String result = expand(unit, source, offsetAfter(source, "emptyList()"), "var"); //$NON-NLS-1$ //$NON-NLS-2$
+
+		assertTrue(result, result.contains("import java.util.List;")); //$NON-NLS-1$
+		assertTrue(result, result.contains("= java.util.Collections.emptyList();")); //$NON-NLS-1$
+		assertFalse(result, result.contains(".var")); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testImportsDoNotMoveRemainingExpansions() throws Exception {
+		String source = "package p;\n" //$NON-NLS-1$
+				+ "\n" //$NON-NLS-1$
+				+ "public class B {\n" //$NON-NLS-1$
+				+ "	void m1() {\n" //$NON-NLS-1$
+				+ "		java.util.Collections.emptyMap();\n" //$NON-NLS-1$
+				+ "	}\n" //$NON-NLS-1$
+				+ "	void m2() {\n" //$NON-NLS-1$
+				+ "		java.util.Collections.emptyList();\n" //$NON-NLS-1$
+				+ "	}\n" //$NON-NLS-1$
+				+ "}\n"; //$NON-NLS-1$
+		ICompilationUnit unit = createCompilationUnit("B", source); //$NON-NLS-1$
+
+		// The expansion in m2 is applied first, the import it adds is inserted above the expansion in m1
+		String result = expand(unit, source, offsetAfter(source, "emptyMap()"), "var", offsetAfter(source, "emptyList()"), "var"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+		assertTrue(result, result.contains("import java.util.List;")); //$NON-NLS-1$
+		assertTrue(result, result.contains("import java.util.Map;")); //$NON-NLS-1$
+		assertTrue(result, result.contains("= java.util.Collections.emptyMap();")); //$NON-NLS-1$
+		assertTrue(result, result.contains("= java.util.Collections.emptyList();")); //$NON-NLS-1$
+		assertFalse(result, result.contains(".var")); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testExpansionsShareImports() throws Exception {
+		String source = "package p;\n" //$NON-NLS-1$
+				+ "\n" //$NON-NLS-1$
+				+ "public class C {\n" //$NON-NLS-1$
+				+ "	void m1() {\n" //$NON-NLS-1$
+				+ "		java.util.Collections.emptyList();\n" //$NON-NLS-1$
+				+ "	}\n" //$NON-NLS-1$
+				+ "	void m2() {\n" //$NON-NLS-1$
+				+ "		java.util.Collections.singletonList(\"\");\n" //$NON-NLS-1$
+				+ "	}\n" //$NON-NLS-1$
+				+ "}\n"; //$NON-NLS-1$
+		ICompilationUnit unit = createCompilationUnit("C", source); //$NON-NLS-1$
+
+		// Both expansions are recorded in the same import rewrite, thus the import is added once
+		String result = expand(unit, source, offsetAfter(source, "emptyList()"), "var", offsetAfter(source, "singletonList(\"\")"), "var"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+		assertEquals(result, result.indexOf("import java.util.List;"), result.lastIndexOf("import java.util.List;")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(result, result.contains("import java.util.List;")); //$NON-NLS-1$
+		assertTrue(result, result.contains("= java.util.Collections.emptyList();")); //$NON-NLS-1$
+		assertTrue(result, result.contains("= java.util.Collections.singletonList(\"\");")); //$NON-NLS-1$
+		assertTrue(result, result.contains("public class C {\n	void m1() {\n")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Expands the given templates and applies the resulting edit to the original source.
+	 *
+	 * @param expansions pairs of the offset (an {@link Integer}) and the name of the template
+	 * @return the expanded source
+	 */
+	private static String expand(ICompilationUnit unit, String source, Object... expansions) throws Exception {
+		List<PostfixExpansion> list = new ArrayList<>();
+		for (int i = 0; i < expansions.length; i += 2) {
+			list.add(new PostfixExpansion(unit, ((Integer) expansions[i]).intValue(), (String) expansions[i + 1]));
+		}
+		Map<ICompilationUnit, List<PostfixExpansion>> requested = new LinkedHashMap<>();
+		requested.put(unit, list);
+
+		JavaStatementPostfixContextType contextType = (JavaStatementPostfixContextType) JavaPlugin.getDefault().getTemplateContextRegistry()
+				.getContextType(JavaStatementPostfixContextType.ID_ALL);
+		PostfixBatchProcessor processor = new PostfixBatchProcessor(contextType, 1);
+		List<String> failures = new ArrayList<>();
+		List<FileResult> results = processor.expand(processor.validate(requested, failures));
+		assertEquals(1, results.size());
+		failures.addAll(results.get(0).getFailures());
+		assertTrue(failures.toString(), failures.isEmpty());
+		assertEquals(list.size(), results.get(0).getExpanded());
+
+		IDocument document = new Document(source);
+		results.get(0).getEdit().apply(document);
+		return document.get();
+	}
+
+	private static Integer offsetAfter(String source, String text) {
+		return Integer.valueOf(source.indexOf(text) + text.length());
+	}
+
+	private static ICompilationUnit createCompilationUnit(String name, String source) throws CoreException {
+		IPackageFragmentRoot root = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src")); //$NON-NLS-1$
+		IPackageFragment fragment = root.createPackageFragment("p", true, null); //$NON-NLS-1$
+		return fragment.createCompilationUnit(name + ".java", source, true, null); //$NON-NLS-1$
+	}
+}
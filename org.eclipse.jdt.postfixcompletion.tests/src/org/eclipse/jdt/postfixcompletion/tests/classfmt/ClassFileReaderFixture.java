@@ -0,0 +1,29 @@
+package org.eclipse.jdt.postfixcompletion.tests.classfmt;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.List;
+
+/**
+ * The class file of this class is read by {@link ClassFileReaderTest}. Changing its members requires adapting the test.
+ */
+@Deprecated
+@ClassFileReaderFixture.Marker
+public class ClassFileReaderFixture<T> {
+
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface Marker {
+	}
+
+	public static final String CONSTANT = "constant"; //$NON-NLS-1$
+
+	protected List<T> elements;
+
+	@Marker
+	public void annotated() {
+	}
+
+	public T generic(List<? extends T> list, int index) {
+		return list.get(index);
+	}
+}
@@ -0,0 +1,112 @@
+package org.eclipse.jdt.postfixcompletion.tests.classfmt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFileReader;
+import org.eclipse.jdt.internal.compiler.classfmt.ClassFormatException;
+import org.eclipse.jdt.internal.compiler.env.IBinaryAnnotation;
+import org.eclipse.jdt.internal.compiler.env.IBinaryField;
+import org.eclipse.jdt.internal.compiler.env.IBinaryMethod;
+import org.eclipse.jdt.internal.compiler.lookup.TagBits;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ClassFileReader} of the patched JDT core, which decodes the members, annotations and signature of a
+ * class file on demand. The class file of {@link ClassFileReaderFixture} is read.
+ */
+@SuppressWarnings("restriction")
+public class ClassFileReaderTest {
+
+	private static final String MARKER = "L" + ClassFileReaderFixture.Marker.class.getName().replace('.', '/') + ";"; //$NON-NLS-1$ //$NON-NLS-2$
+
+	@Test
+	public void testDecodesMembersOnDemand() throws Exception {
+		checkFixture(new ClassFileReader(readFixture(), null));
+	}
+
+	@Test
+	public void testFullyInitialized() throws Exception {
+		checkFixture(new ClassFileReader(readFixture(), null, true));
+	}
+
+	@Test
+	public void testTruncatedClassFile() throws Exception {
+		byte[] bytes = readFixture();
+		for (int length = 0; length < bytes.length; length++) {
+			try {
+				ClassFileReader reader = new ClassFileReader(Arrays.copyOf(bytes, length), null);
+				// Decoding the members or the annotations must not fail later on
+				reader.getFields();
+				reader.getMethods();
+				reader.getAnnotations();
+				reader.getTagBits();
+				fail("Truncated class file of " + length + " bytes has been read"); //$NON-NLS-1$ //$NON-NLS-2$
+			} catch (ClassFormatException e) {
+				// expected
+			}
+		}
+	}
+
+	private static void checkFixture(ClassFileReader reader) {
+		assertNotNull(reader.getGenericSignature());
+		// Standard annotations are only reflected by the tag bits
+		assertTrue((reader.getTagBits() & TagBits.AnnotationDeprecated) != 0);
+		assertMarked(reader.getAnnotations());
+
+		assertEquals(2, reader.getFields().length);
+		assertNull(findField(reader, "CONSTANT").getGenericSignature()); //$NON-NLS-1$
+		assertNotNull(findField(reader, "elements").getGenericSignature()); //$NON-NLS-1$
+
+		assertEquals(3, reader.getMethods().length); // the constructor, annotated() and generic()
+		assertNotNull(findMethod(reader, "<init>")); //$NON-NLS-1$
+		assertMarked(findMethod(reader, "annotated").getAnnotations()); //$NON-NLS-1$
+		assertNotNull(findMethod(reader, "generic").getGenericSignature()); //$NON-NLS-1$
+	}
+
+	private static void assertMarked(IBinaryAnnotation[] annotations) {
+		assertNotNull(annotations);
+		assertEquals(1, annotations.length);
+		assertEquals(MARKER, new String(annotations[0].getTypeName()));
+	}
+
+	private static IBinaryField findField(ClassFileReader reader, String name) {
+		for (IBinaryField field : reader.getFields()) {
+			if (name.equals(new String(field.getName()))) {
+				return field;
+			}
+		}
+		fail("Field " + name + " not found"); //$NON-NLS-1$ //$NON-NLS-2$
+		return null;
+	}
+
+	private static IBinaryMethod findMethod(ClassFileReader reader, String selector) {
+		for (IBinaryMethod method : reader.getMethods()) {
+			if (selector.equals(new String(method.getSelector()))) {
+				return method;
+			}
+		}
+		fail("Method " + selector + " not found"); //$NON-NLS-1$ //$NON-NLS-2$
+		return null;
+	}
+
+	private static byte[] readFixture() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = ClassFileReaderFixture.class.getResourceAsStream(ClassFileReaderFixture.class.getSimpleName() + ".class")) { //$NON-NLS-1$
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,169 @@
+package org.eclipse.jdt.postfixcompletion.tests.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.internal.codeassist.CompletionNodeRequestor;
+import org.eclipse.jdt.internal.codeassist.InternalCompletionContext;
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.launching.JavaRuntime;
+import org.eclipse.jdt.postfixcompletion.core.JavaStatementPostfixContextType;
+import org.eclipse.jdt.postfixcompletion.core.PostfixCompletionInvocation;
+import org.eclipse.jdt.postfixcompletion.core.PostfixTemplateEngine;
+import org.eclipse.jdt.postfixcompletion.core.PostfixTemplateIndex;
+import org.eclipse.jdt.postfixcompletion.core.PostfixTemplateProposal;
+import org.eclipse.jface.text.Document;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the proposals computed by the {@link PostfixTemplateEngine}.
+ */
+@SuppressWarnings("restriction")
+public class PostfixTemplateEngineTest {
+
+	private static final String PROJECT_NAME = "PostfixEngineTest"; //$NON-NLS-1$
+
+	private static IJavaProject javaProject;
+	private static PostfixTemplateEngine engine;
+
+	@BeforeClass
+	public static void setUpProject() throws CoreException {
+		IWorkspace workspace = ResourcesPlugin.getWorkspace();
+		IWorkspaceDescription workspaceDescription = workspace.getDescription();
+		workspaceDescription.setAutoBuilding(false);
+		workspace.setDescription(workspaceDescription);
+
+		IProject project = workspace.getRoot().getProject(PROJECT_NAME);
+		project.create(null);
+		project.open(null);
+		IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { JavaCore.NATURE_ID });
+		project.setDescription(description, null);
+
+		IFolder src = project.getFolder("src"); //$NON-NLS-1$
+		src.create(true, true, null);
+		javaProject = JavaCore.create(project);
+		javaProject.setRawClasspath(new IClasspathEntry[] {
+				JavaCore.newSourceEntry(src.getFullPath()),
+				JavaRuntime.getDefaultJREContainerEntry()
+		}, project.getFolder("bin").getFullPath(), null); //$NON-NLS-1$
+
+		engine = new PostfixTemplateEngine(JavaPlugin.getDefault().getTemplateContextRegistry().getContextType(JavaStatementPostfixContextType.ID_ALL));
+	}
+
+	@AfterClass
+	public static void deleteProject() throws CoreException {
+		javaProject.getProject().delete(true, null);
+	}
+
+	@Test
+	public void testCostlyTemplatesAreProposedWhenBudgetIsExceeded() throws Exception {
+		String source = "package p;\n" //$NON-NLS-1$
+				+ "\n" //$NON-NLS-1$
+				+ "public class A {\n" //$NON-NLS-1$
+				+ "	void m() {\n" //$NON-NLS-1$
+				+ "		java.util.Collections.emptyList().\n" //$NON-NLS-1$
+				+ "	}\n" //$NON-NLS-1$
+				+ "}\n"; //$NON-NLS-1$
+		PostfixCompletionInvocation invocation = createInvocation("A", source, offsetAfter(source, "emptyList().")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// The deadline has already passed when the first template is checked
+		List<PostfixTemplateProposal> deferred = new ArrayList<>();
+		PostfixTemplateProposal[] proposals = engine.complete(invocation, System.nanoTime(), deferred);
+
+		PostfixTemplateIndex index = PostfixTemplateIndex.getDefault();
+		assertNotNull(findProposal(proposals, "var")); //$NON-NLS-1$
+		assertNotNull(findProposal(proposals, "field")); //$NON-NLS-1$
+		assertFalse(deferred.isEmpty());
+		for (PostfixTemplateProposal proposal : deferred) {
+			assertTrue(proposal.getTemplate().getName(), index.isCostly(proposal.getTemplate()));
+			assertTrue(proposal.getTemplate().getName(), findProposal(proposals, proposal.getTemplate().getName()) == proposal);
+		}
+
+		// The previews of the deferred proposals are computed on a snapshot of the document
+		PostfixCompletionInvocation snapshot = invocation.forDocument(new Document(source));
+		String[] previews = engine.computePreviews(snapshot, deferred.toArray(new PostfixTemplateProposal[deferred.size()]));
+		for (int i = 0; i < previews.length; i++) {
+			assertNotNull(deferred.get(i).getTemplate().getName(), previews[i]);
+		}
+	}
+
+	@Test
+	public void testQualifiedFieldReceiver() throws Exception {
+		String source = "package p;\n" //$NON-NLS-1$
+				+ "\n" //$NON-NLS-1$
+				+ "public class Q {\n" //$NON-NLS-1$
+				+ "	static class B {\n" //$NON-NLS-1$
+				+ "		String field;\n" //$NON-NLS-1$
+				+ "	}\n" //$NON-NLS-1$
+				+ "	B b;\n" //$NON-NLS-1$
+				+ "	void m(Q a) {\n" //$NON-NLS-1$
+				+ "		a.b.field.\n" //$NON-NLS-1$
+				+ "	}\n" //$NON-NLS-1$
+				+ "}\n"; //$NON-NLS-1$
+		PostfixCompletionInvocation invocation = createInvocation("Q", source, offsetAfter(source, "a.b.field.")); //$NON-NLS-1$ //$NON-NLS-2$
+
+		// The templates are applicable to the type of the last field rather than to the type of the first variable
+		PostfixTemplateProposal[] proposals = engine.complete(invocation);
+		assertNotNull(findProposal(proposals, "sysout")); //$NON-NLS-1$
+		assertNull(findProposal(proposals, "throw")); //$NON-NLS-1$
+	}
+
+	private static PostfixTemplateProposal findProposal(PostfixTemplateProposal[] proposals, String name) {
+		for (PostfixTemplateProposal proposal : proposals) {
+			if (proposal.getTemplate().getName().equals(name)) {
+				return proposal;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a compilation unit and the invocation of a code completion at the given offset.
+	 */
+	private static PostfixCompletionInvocation createInvocation(String name, String source, int offset) throws CoreException {
+		ICompilationUnit unit = createCompilationUnit(name, source);
+		final InternalCompletionContext[] completionContext = new InternalCompletionContext[1];
+		unit.codeComplete(offset, new CompletionNodeRequestor() {
+			@Override
+			public void acceptCompletionNode(InternalCompletionContext context) {
+				if (context.isExtended()) {
+					completionContext[0] = context;
+				}
+			}
+		});
+		assertNotNull("no completion node", completionContext[0]); //$NON-NLS-1$
+		return new PostfixCompletionInvocation(new Document(source), offset, unit, completionContext[0].getCompletionNode(),
+				completionContext[0].getCompletionNodeParent());
+	}
+
+	private static int offsetAfter(String source, String text) {
+		return source.indexOf(text) + text.length();
+	}
+
+	private static ICompilationUnit createCompilationUnit(String name, String source) throws CoreException {
+		IPackageFragmentRoot root = javaProject.getPackageFragmentRoot(javaProject.getProject().getFolder("src")); //$NON-NLS-1$
+		IPackageFragment fragment = root.createPackageFragment("p", true, null); //$NON-NLS-1$
+		return fragment.createCompilationUnit(name + ".java", source, true, null); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,195 @@
+package org.eclipse.jdt.postfixcompletion.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.BufferChangedEvent;
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.IBufferChangedListener;
+import org.eclipse.jdt.core.IJavaModelStatusConstants;
+import org.eclipse.jdt.core.IOpenable;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.UndoEdit;
+
+/**
+ * The buffer of a private working copy which is backed by an {@link IDocument}.
+ * <br/>
+ * The batch expansion works on a standalone document instead of an editor. Like the buffer of a working copy opened in an editor,
+ * this buffer and the document share their contents: the template name typed into the document is seen by the <code>CompletionEngine</code>.
+ * The buffer is never saved, the imports and fields added by the templates are recorded in a <code>PostfixUnitRewrite</code> instead.
+ */
+class DocumentBuffer implements IBuffer, IBuffer.ITextEditCapability, IDocumentListener {
+
+	private final IOpenable owner;
+	private final IDocument document;
+	private final List<IBufferChangedListener> listeners = new ArrayList<>();
+	private boolean closed;
+
+	DocumentBuffer(IOpenable owner, IDocument document) {
+		this.owner = owner;
+		this.document = document;
+		document.addDocumentListener(this);
+	}
+
+	@Override
+	public UndoEdit applyTextEdit(TextEdit edit, IProgressMonitor monitor) throws JavaModelException {
+		try {
+			return edit.apply(document);
+		} catch (MalformedTreeException | BadLocationException e) {
+			throw new JavaModelException(e, IJavaModelStatusConstants.BAD_TEXT_EDIT_LOCATION);
+		}
+	}
+
+	@Override
+	public void documentAboutToBeChanged(DocumentEvent event) {
+	}
+
+	@Override
+	public void documentChanged(DocumentEvent event) {
+		fireBufferChanged(new BufferChangedEvent(this, event.getOffset(), event.getLength(), event.getText()));
+	}
+
+	private void fireBufferChanged(BufferChangedEvent event) {
+		IBufferChangedListener[] current;
+		synchronized (listeners) {
+			current = listeners.toArray(new IBufferChangedListener[listeners.size()]);
+		}
+		for (IBufferChangedListener listener : current) {
+			listener.bufferChanged(event);
+		}
+	}
+
+	@Override
+	public void addBufferChangedListener(IBufferChangedListener listener) {
+		synchronized (listeners) {
+			if (!listeners.contains(listener)) {
+				listeners.add(listener);
+			}
+		}
+	}
+
+	@Override
+	public void removeBufferChangedListener(IBufferChangedListener listener) {
+		synchronized (listeners) {
+			listeners.remove(listener);
+		}
+	}
+
+	@Override
+	public void append(char[] text) {
+		append(new String(text));
+	}
+
+	@Override
+	public void append(String text) {
+		replace(document.getLength(), 0, text);
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		document.removeDocumentListener(this);
+		fireBufferChanged(new BufferChangedEvent(this, 0, 0, null));
+		synchronized (listeners) {
+			listeners.clear();
+		}
+	}
+
+	@Override
+	public char getChar(int position) {
+		try {
+			return document.getChar(position);
+		} catch (BadLocationException e) {
+			throw new ArrayIndexOutOfBoundsException(position);
+		}
+	}
+
+	@Override
+	public char[] getCharacters() {
+		return document.get().toCharArray();
+	}
+
+	@Override
+	public String getContents() {
+		return document.get();
+	}
+
+	@Override
+	public int getLength() {
+		return document.getLength();
+	}
+
+	@Override
+	public IOpenable getOwner() {
+		return owner;
+	}
+
+	@Override
+	public String getText(int offset, int length) throws IndexOutOfBoundsException {
+		try {
+			return document.get(offset, length);
+		} catch (BadLocationException e) {
+			throw new ArrayIndexOutOfBoundsException(offset);
+		}
+	}
+
+	@Override
+	public IResource getUnderlyingResource() {
+		return null;
+	}
+
+	@Override
+	public boolean hasUnsavedChanges() {
+		return false;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return false;
+	}
+
+	@Override
+	public void replace(int position, int length, char[] text) {
+		replace(position, length, new String(text));
+	}
+
+	@Override
+	public void replace(int position, int length, String text) {
+		try {
+			document.replace(position, length, text);
+		} catch (BadLocationException e) {
+			throw new ArrayIndexOutOfBoundsException(position);
+		}
+	}
+
+	@Override
+	public void save(IProgressMonitor progress, boolean force) throws JavaModelException {
+		// the changes are collected from the document
+	}
+
+	@Override
+	public void setContents(char[] contents) {
+		setContents(new String(contents));
+	}
+
+	@Override
+	public void setContents(String contents) {
+		document.set(contents);
+	}
+}
@@ -0,0 +1,156 @@
+package org.eclipse.jdt.postfixcompletion.batch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.postfixcompletion.batch.PostfixBatchProcessor.FileResult;
+import org.eclipse.jdt.postfixcompletion.core.JavaStatementPostfixContextType;
+import org.eclipse.jface.text.templates.TemplateContextType;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * A headless application which applies postfix templates to the compilation units of the workspace.
+ * <br/>
+ * Usage: <code>eclipse -application org.eclipse.jdt.postfixcompletion.batch -data &lt;workspace&gt; -spec &lt;file&gt; [-threads &lt;n&gt;] [-apply]</code>
+ * <br/>
+ * Each line of the specification file has the form <code>&lt;workspace path of the compilation unit&gt; &lt;offset&gt; &lt;template name&gt;</code>,
+ * where the offset is the end of the inner expression in the current source (i.e. <code>/project/src/a/B.java 1234 nnull</code>).
+ * Empty lines and lines starting with <code>#</code> are ignored. Without <code>-apply</code> the combined edit of each compilation unit is
+ * only printed, with <code>-apply</code> it is applied and the compilation unit is saved. The number of expansions per second is reported at the end.
+ */
+@SuppressWarnings("restriction")
+public class PostfixBatchApplication implements IApplication {
+
+	private static final Integer EXIT_ERROR = Integer.valueOf(1);
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+		String spec = null;
+		boolean apply = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; i++) {
+			if ("-spec".equals(args[i]) && i + 1 < args.length) { //$NON-NLS-1$
+				spec = args[++i];
+			} else if ("-threads".equals(args[i]) && i + 1 < args.length) { //$NON-NLS-1$
+				threads = Math.max(1, Integer.parseInt(args[++i]));
+			} else if ("-apply".equals(args[i])) { //$NON-NLS-1$
+				apply = true;
+			}
+		}
+		if (spec == null) {
+			System.err.println("Usage: -spec <file> [-threads <n>] [-apply]"); //$NON-NLS-1$
+			return EXIT_ERROR;
+		}
+
+		TemplateContextType contextType = JavaPlugin.getDefault().getTemplateContextRegistry().getContextType(JavaStatementPostfixContextType.ID_ALL);
+		if (!(contextType instanceof JavaStatementPostfixContextType)) {
+			System.err.println("The postfix template context type is not registered"); //$NON-NLS-1$
+			return EXIT_ERROR;
+		}
+
+		List<String> failures = new ArrayList<>();
+		Map<ICompilationUnit, List<PostfixExpansion>> expansions = readSpecification(spec, failures);
+		int requested = failures.size();
+		for (List<PostfixExpansion> list : expansions.values()) {
+			requested += list.size();
+		}
+
+		PostfixBatchProcessor processor = new PostfixBatchProcessor((JavaStatementPostfixContextType) contextType, threads);
+		long start = System.nanoTime();
+		Map<ICompilationUnit, List<PostfixExpansion>> valid = processor.validate(expansions, failures);
+		long parsed = System.nanoTime();
+		List<FileResult> results = processor.expand(valid);
+		long expanded = System.nanoTime();
+
+		int count = 0;
+		for (FileResult result : results) {
+			count += result.getExpanded();
+			failures.addAll(result.getFailures());
+			TextEdit edit = result.getEdit();
+			if (!edit.hasChildren()) {
+				continue;
+			}
+			System.out.println(result.getCompilationUnit().getPath() + ": " + result.getExpanded() + " expansions, " + edit); //$NON-NLS-1$ //$NON-NLS-2$
+			if (apply) {
+				applyEdit(result.getCompilationUnit(), edit, failures);
+			}
+		}
+		for (String failure : failures) {
+			System.err.println("Not expanded: " + failure); //$NON-NLS-1$
+		}
+
+		long parseMillis = TimeUnit.NANOSECONDS.toMillis(parsed - start);
+		long expandMillis = TimeUnit.NANOSECONDS.toMillis(expanded - parsed);
+		double seconds = (expanded - start) / 1e9;
+		System.out.println(String.format("%d of %d expansions in %d files, parse %d ms, expand %d ms (%d threads), %.1f expansions/s", //$NON-NLS-1$
+				Integer.valueOf(count), Integer.valueOf(requested), Integer.valueOf(results.size()), Long.valueOf(parseMillis), Long.valueOf(expandMillis),
+				Integer.valueOf(threads), Double.valueOf(seconds > 0 ? count / seconds : 0)));
+		return IApplication.EXIT_OK;
+	}
+
+	@Override
+	public void stop() {
+		// the expansion is not interruptible
+	}
+
+	private static Map<ICompilationUnit, List<PostfixExpansion>> readSpecification(String spec, List<String> failures) throws IOException {
+		Map<ICompilationUnit, List<PostfixExpansion>> result = new LinkedHashMap<>();
+		for (String line : Files.readAllLines(Paths.get(spec), StandardCharsets.UTF_8)) {
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) { //$NON-NLS-1$
+				continue;
+			}
+			String[] parts = line.split("\\s+"); //$NON-NLS-1$
+			if (parts.length != 3) {
+				failures.add(line + ": invalid line"); //$NON-NLS-1$
+				continue;
+			}
+			IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(new Path(parts[0]));
+			ICompilationUnit unit = JavaCore.createCompilationUnitFrom(file);
+			if (unit == null || !unit.exists()) {
+				failures.add(line + ": no compilation unit"); //$NON-NLS-1$
+				continue;
+			}
+			int offset;
+			try {
+				offset = Integer.parseInt(parts[1]);
+			} catch (NumberFormatException e) {
+				failures.add(line + ": invalid offset"); //$NON-NLS-1$
+				continue;
+			}
+			List<PostfixExpansion> list = result.get(unit);
+			if (list == null) {
+				list = new ArrayList<>();
+				result.put(unit, list);
+			}
+			list.add(new PostfixExpansion(unit, offset, parts[2]));
+		}
+		return result;
+	}
+
+	private static void applyEdit(ICompilationUnit unit, TextEdit edit, List<String> failures) {
+		try {
+			unit.applyTextEdit(edit, null);
+			unit.save(null, true);
+		} catch (JavaModelException e) {
+			failures.add(unit.getPath() + ": " + e.getMessage()); //$NON-NLS-1$
+		}
+	}
+}
@@ -0,0 +1,428 @@
+package org.eclipse.jdt.postfixcompletion.batch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.WorkingCopyOwner;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NodeFinder;
+import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
+import org.eclipse.jdt.core.dom.rewrite.ImportRewrite;
+import org.eclipse.jdt.internal.codeassist.CompletionNodeRequestor;
+import org.eclipse.jdt.internal.codeassist.InternalCompletionContext;
+import org.eclipse.jdt.postfixcompletion.core.JavaStatementPostfixContext;
+import org.eclipse.jdt.postfixcompletion.core.JavaStatementPostfixContextType;
+import org.eclipse.jdt.postfixcompletion.core.PostfixTemplateIndex;
+import org.eclipse.jdt.postfixcompletion.core.PostfixUnitRewrite;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.templates.Template;
+import org.eclipse.jface.text.templates.TemplateBuffer;
+import org.eclipse.jface.text.templates.TemplateException;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * This class applies postfix templates to many locations of many compilation units without an editor.
+ * <br/>
+ * The expansions are processed in two phases:
+ * <ol>
+ * <li>The compilation units of each project are parsed together with {@link ASTParser#createASTs(ICompilationUnit[], String[], ASTRequestor, org.eclipse.core.runtime.IProgressMonitor)},
+ * thus they share a single lookup environment. Expansions whose offset is not the end of an expression or whose expression does not denote a value
+ * (the name of a type or package or a <code>void</code> method invocation) are rejected. The AST of each compilation unit is kept in a
+ * {@link PostfixUnitRewrite}, which records the imports and fields added by all expansions of the compilation unit.</li>
+ * <li>The compilation units are expanded in parallel on a {@link ForkJoinPool}, one task per compilation unit. Each task works on a document and a
+ * private working copy whose buffer is backed by the document (see {@link DocumentBuffer}). For each expansion the template name is inserted like
+ * it would be typed in the editor, the completion node is resolved by the <code>CompletionEngine</code> and the template is evaluated by a
+ * {@link JavaStatementPostfixContext}. The typed name is removed afterwards, thus every expansion is evaluated against the original source and
+ * results in a {@link ReplaceEdit} of the inner expression only.</li>
+ * </ol>
+ * The result of each compilation unit is a single {@link MultiTextEdit} against its original source, which merges the edits of the expansions with
+ * the edits of the {@link ImportRewrite} and the {@link ASTRewrite} of its {@link PostfixUnitRewrite}.
+ */
+@SuppressWarnings("restriction")
+public class PostfixBatchProcessor {
+
+	/**
+	 * The outcome of the expansions of a single compilation unit.
+	 */
+	public static class FileResult {
+		private final ICompilationUnit compilationUnit;
+		private final TextEdit edit;
+		private final int expanded;
+		private final List<String> failures;
+
+		FileResult(ICompilationUnit compilationUnit, TextEdit edit, int expanded, List<String> failures) {
+			this.compilationUnit = compilationUnit;
+			this.edit = edit;
+			this.expanded = expanded;
+			this.failures = failures;
+		}
+
+		public ICompilationUnit getCompilationUnit() {
+			return compilationUnit;
+		}
+
+		/**
+		 * Returns the combined edit of all expansions against the original source of the compilation unit.
+		 * @return the edit, it has no children if nothing has been expanded
+		 */
+		public TextEdit getEdit() {
+			return edit;
+		}
+
+		/**
+		 * Returns the number of successfully applied expansions.
+		 * @return
+		 */
+		public int getExpanded() {
+			return expanded;
+		}
+
+		public List<String> getFailures() {
+			return failures;
+		}
+	}
+
+	private final JavaStatementPostfixContextType contextType;
+	private final int parallelism;
+	private final Map<ICompilationUnit, PostfixUnitRewrite> unitRewrites = new HashMap<>();
+
+	/**
+	 * @param contextType the postfix context type the templates are evaluated with
+	 * @param parallelism the number of compilation units which are expanded concurrently
+	 */
+	public PostfixBatchProcessor(JavaStatementPostfixContextType contextType, int parallelism) {
+		this.contextType = contextType;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Removes the expansions which can not be applied and adds a message for each of them to the given list.
+	 * The compilation units are parsed per project with a shared lookup environment, their ASTs are kept until they have been expanded.
+	 *
+	 * @param expansions the requested expansions, grouped by compilation unit
+	 * @param failures the list the messages of the rejected expansions are added to
+	 * @return the applicable expansions, grouped by compilation unit
+	 */
+	public Map<ICompilationUnit, List<PostfixExpansion>> validate(final Map<ICompilationUnit, List<PostfixExpansion>> expansions, final List<String> failures) {
+		Map<IJavaProject, List<ICompilationUnit>> unitsByProject = new LinkedHashMap<>();
+		for (ICompilationUnit unit : expansions.keySet()) {
+			List<ICompilationUnit> units = unitsByProject.get(unit.getJavaProject());
+			if (units == null) {
+				units = new ArrayList<>();
+				unitsByProject.put(unit.getJavaProject(), units);
+			}
+			units.add(unit);
+		}
+
+		final Map<ICompilationUnit, List<PostfixExpansion>> result = new LinkedHashMap<>();
+		for (Map.Entry<IJavaProject, List<ICompilationUnit>> entry : unitsByProject.entrySet()) {
+			// The ASTs of a project share their bindings
+			final Object lock = new Object();
+			ASTParser parser = ASTParser.newParser(AST.JLS8);
+			parser.setProject(entry.getKey());
+			parser.setResolveBindings(true);
+			List<ICompilationUnit> units = entry.getValue();
+			parser.createASTs(units.toArray(new ICompilationUnit[units.size()]), new String[0], new ASTRequestor() {
+				@Override
+				public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+					List<PostfixExpansion> valid = new ArrayList<>();
+					for (PostfixExpansion expansion : expansions.get(source)) {
+						String problem = checkExpression(ast, expansion.getOffset());
+						if (problem == null) {
+							valid.add(expansion);
+						} else {
+							failures.add(expansion + ": " + problem); //$NON-NLS-1$
+						}
+					}
+					if (!valid.isEmpty()) {
+						result.put(source, valid);
+						unitRewrites.put(source, new PostfixUnitRewrite(ast, lock));
+					}
+				}
+			}, null);
+		}
+		return result;
+	}
+
+	private static String checkExpression(CompilationUnit ast, int offset) {
+		if (offset <= 0 || offset > ast.getLength()) {
+			return "offset out of range"; //$NON-NLS-1$
+		}
+		ASTNode node = NodeFinder.perform(ast, offset - 1, 1);
+		while (node != null && !(node instanceof Expression && node.getStartPosition() + node.getLength() == offset)) {
+			node = node.getParent();
+		}
+		if (node == null) {
+			return "no expression ends at the offset"; //$NON-NLS-1$
+		}
+		if (node instanceof Name) {
+			IBinding binding = ((Name) node).resolveBinding();
+			if (binding != null && (binding.getKind() == IBinding.TYPE || binding.getKind() == IBinding.PACKAGE)) {
+				return "the expression is the name of a type or package"; //$NON-NLS-1$
+			}
+		}
+		ITypeBinding type = ((Expression) node).resolveTypeBinding();
+		if (type != null && "void".equals(type.getName())) { //$NON-NLS-1$
+			return "the expression is of type void"; //$NON-NLS-1$
+		}
+		return null;
+	}
+
+	/**
+	 * Expands the given compilation units in parallel.
+	 *
+	 * @param expansions the applicable expansions, grouped by compilation unit
+	 * @return the result of each compilation unit in the order of the given map
+	 */
+	public List<FileResult> expand(Map<ICompilationUnit, List<PostfixExpansion>> expansions) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<FileResult>> tasks = new ArrayList<>();
+			for (Map.Entry<ICompilationUnit, List<PostfixExpansion>> entry : expansions.entrySet()) {
+				tasks.add(pool.submit(new ExpandFileTask(entry.getKey(), entry.getValue(), unitRewrites.remove(entry.getKey()))));
+			}
+			List<FileResult> result = new ArrayList<>();
+			for (ForkJoinTask<FileResult> task : tasks) {
+				result.add(task.join());
+			}
+			return result;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Applies all expansions of a single compilation unit on a private working copy.
+	 */
+	private class ExpandFileTask extends RecursiveTask<FileResult> {
+		private static final long serialVersionUID = 1L;
+
+		private final ICompilationUnit unit;
+		private final List<PostfixExpansion> expansions;
+		private PostfixUnitRewrite rewrite;
+
+		ExpandFileTask(ICompilationUnit unit, List<PostfixExpansion> expansions, PostfixUnitRewrite rewrite) {
+			this.unit = unit;
+			this.expansions = new ArrayList<>(expansions);
+			this.rewrite = rewrite;
+		}
+
+		@Override
+		protected FileResult compute() {
+			List<String> failures = new ArrayList<>();
+			String source;
+			final IDocument document;
+			ICompilationUnit workingCopy;
+			try {
+				source = unit.getSource();
+				if (rewrite == null || rewrite.getAST().getLength() != source.length()) {
+					// The compilation unit has not been validated or it has been changed since
+					rewrite = new PostfixUnitRewrite(parse(unit), new Object());
+				}
+				document = new Document(source);
+				workingCopy = unit.getWorkingCopy(new WorkingCopyOwner() {
+					@Override
+					public IBuffer createBuffer(ICompilationUnit copy) {
+						return new DocumentBuffer(copy, document);
+					}
+				}, null);
+			} catch (JavaModelException e) {
+				failures.add(unit.getPath() + ": " + e.getMessage()); //$NON-NLS-1$
+				return new FileResult(unit, new MultiTextEdit(), 0, failures);
+			}
+
+			int expanded = 0;
+			MultiTextEdit expansionEdits = new MultiTextEdit();
+			List<IRegion> replaced = new ArrayList<>();
+			try {
+				// The expansion of an enclosing expression wins over the expansions of the expressions it contains
+				Collections.sort(expansions, new Comparator<PostfixExpansion>() {
+					@Override
+					public int compare(PostfixExpansion e1, PostfixExpansion e2) {
+						return e2.getOffset() - e1.getOffset();
+					}
+				});
+				for (PostfixExpansion expansion : expansions) {
+					String problem = expandTemplate(workingCopy, document, source, rewrite, expansion, expansionEdits, replaced);
+					if (problem == null) {
+						expanded++;
+					} else {
+						failures.add(expansion + ": " + problem); //$NON-NLS-1$
+					}
+				}
+			} finally {
+				try {
+					workingCopy.discardWorkingCopy();
+				} catch (JavaModelException e) {
+					// the working copy is not shared, nothing to clean up
+				}
+			}
+
+			MultiTextEdit edit;
+			try {
+				edit = rewrite.createEdit(source);
+				for (TextEdit expansionEdit : expansionEdits.removeChildren()) {
+					edit.addChild(expansionEdit);
+				}
+			} catch (CoreException | MalformedTreeException e) {
+				failures.add(unit.getPath() + ": " + e.getMessage()); //$NON-NLS-1$
+				return new FileResult(unit, new MultiTextEdit(), 0, failures);
+			}
+			return new FileResult(unit, edit, expanded, failures);
+		}
+	}
+
+	/**
+	 * Applies a single expansion to the given document, which is the buffer of the given working copy and has the contents of the original source.
+	 * The imports and fields added by the template are recorded in the given rewrite, the replacement of the inner expression is added to the given edit.
+	 * The document is reverted to the original source afterwards.
+	 *
+	 * @param replaced the ranges of the original source which have been replaced by the previous expansions
+	 *
+	 * @return <code>null</code> if the template has been applied, otherwise the reason why it could not be applied
+	 */
+	private String expandTemplate(ICompilationUnit workingCopy, IDocument document, String source, PostfixUnitRewrite rewrite, PostfixExpansion expansion,
+			MultiTextEdit edits, List<IRegion> replaced) {
+		Template template = findTemplate(expansion.getTemplateName());
+		if (template == null) {
+			return "unknown template"; //$NON-NLS-1$
+		}
+
+		int offset = expansion.getOffset();
+		String typed = "." + template.getName(); //$NON-NLS-1$
+		int completionOffset = offset + typed.length();
+		boolean recording = false;
+		try {
+			document.replace(offset, 0, typed);
+			try {
+				InternalCompletionContext completionContext = resolveCompletionNode(workingCopy, completionOffset);
+				if (completionContext == null) {
+					return "no completion node"; //$NON-NLS-1$
+				}
+
+				JavaStatementPostfixContext context = contextType.createContext(document, completionOffset, 0, workingCopy,
+						completionContext.getCompletionNode(), completionContext.getCompletionNodeParent());
+				context.setVariable("selection", null); //$NON-NLS-1$
+				context.setUnitRewrite(rewrite);
+				if (!context.canEvaluate(template)) {
+					return "template not applicable"; //$NON-NLS-1$
+				}
+				// The template replaces the inner expression and the typed name, the original source only contains the inner expression
+				int start = context.getStart();
+				if (overlaps(replaced, start, offset - start)) {
+					return "the expression has been replaced by another expansion"; //$NON-NLS-1$
+				}
+
+				context.setReadOnly(false);
+				rewrite.begin();
+				recording = true;
+				TemplateBuffer buffer = context.evaluate(template);
+				if (buffer == null) {
+					return "evaluation failed"; //$NON-NLS-1$
+				}
+				TextEdit edit = createEdit(source, start, offset - start, buffer.getString());
+				if (edit != null) {
+					edits.addChild(edit);
+				}
+				replaced.add(new Region(start, offset - start));
+				recording = false;
+				return null;
+			} finally {
+				if (recording) {
+					rewrite.rollback();
+				}
+				document.replace(offset, typed.length(), ""); //$NON-NLS-1$
+			}
+		} catch (BadLocationException | TemplateException | JavaModelException | MalformedTreeException e) {
+			return e.getMessage();
+		}
+	}
+
+	private static boolean overlaps(List<IRegion> regions, int offset, int length) {
+		for (IRegion region : regions) {
+			if (offset < region.getOffset() + region.getLength() && region.getOffset() < offset + length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Template findTemplate(String name) {
+		for (Template template : PostfixTemplateIndex.getDefault().getTemplatesByPrefix(name)) {
+			if (template.getName().equals(name)) {
+				return template;
+			}
+		}
+		return null;
+	}
+
+	private static InternalCompletionContext resolveCompletionNode(ICompilationUnit workingCopy, int offset) throws JavaModelException {
+		final InternalCompletionContext[] result = new InternalCompletionContext[1];
+		workingCopy.codeComplete(offset, new CompletionNodeRequestor() {
+			@Override
+			public void acceptCompletionNode(InternalCompletionContext context) {
+				if (context.isExtended()) {
+					result[0] = context;
+				}
+			}
+		});
+		return result[0];
+	}
+
+	private static CompilationUnit parse(ICompilationUnit unit) {
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setSource(unit);
+		parser.setResolveBindings(true);
+		return (CompilationUnit) parser.createAST(null);
+	}
+
+	/**
+	 * Creates an edit which replaces the given range of the original source by the given text. Only the changed part of the range,
+	 * i.e. the text between the common prefix and the common suffix, is replaced.
+	 *
+	 * @return the edit or <code>null</code> if the text equals the range
+	 */
+	private static TextEdit createEdit(String original, int offset, int length, String replacement) {
+		int prefix = 0;
+		int max = Math.min(length, replacement.length());
+		while (prefix < max && original.charAt(offset + prefix) == replacement.charAt(prefix)) {
+			prefix++;
+		}
+		if (prefix == length && prefix == replacement.length()) {
+			return null;
+		}
+		int suffix = 0;
+		while (suffix < max - prefix && original.charAt(offset + length - 1 - suffix) == replacement.charAt(replacement.length() - 1 - suffix)) {
+			suffix++;
+		}
+		return new ReplaceEdit(offset + prefix, length - prefix - suffix, replacement.substring(prefix, replacement.length() - suffix));
+	}
+}
@@ -0,0 +1,43 @@
+package org.eclipse.jdt.postfixcompletion.batch;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+
+/**
+ * A single postfix template expansion requested by a batch specification.
+ * <br/>
+ * The offset is the end of the inner expression in the original source of the compilation unit, i.e. the
+ * position a <code>.</code> followed by the template name would be typed at in the editor.
+ */
+public class PostfixExpansion {
+
+	private final ICompilationUnit compilationUnit;
+	private final int offset;
+	private final String templateName;
+
+	public PostfixExpansion(ICompilationUnit compilationUnit, int offset, String templateName) {
+		this.compilationUnit = compilationUnit;
+		this.offset = offset;
+		this.templateName = templateName;
+	}
+
+	public ICompilationUnit getCompilationUnit() {
+		return compilationUnit;
+	}
+
+	/**
+	 * Returns the end offset of the inner expression in the original source.
+	 * @return
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	public String getTemplateName() {
+		return templateName;
+	}
+
+	@Override
+	public String toString() {
+		return compilationUnit.getPath() + ":" + offset + " " + templateName; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
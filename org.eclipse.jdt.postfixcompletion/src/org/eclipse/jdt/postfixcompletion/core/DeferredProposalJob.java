@@ -0,0 +1,90 @@
+package org.eclipse.jdt.postfixcompletion.core;
+
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.swt.custom.StyledText;
+
+/**
+ * This job computes the previews of the costly postfix proposals whose evaluation has been deferred because the completion budget of an
+ * invocation was exceeded.
+ * <br/>
+ * The proposals themselves are already shown in the popup of the invocation, only the evaluation of their templates, which creates a DOM AST
+ * or rewrites imports, is done in the background. The editor document is not thread safe and changes while the user continues typing, thus
+ * the templates are evaluated on a snapshot of the document taken when the job was created. The previews are handed to the proposals in the
+ * UI thread, provided that the modification stamp of the document still matches the snapshot. Otherwise the proposals compute their
+ * previews on demand.
+ */
+public class DeferredProposalJob extends Job {
+
+	private final PostfixTemplateEngine engine;
+	private final PostfixCompletionInvocation invocation;
+	private final PostfixCompletionInvocation snapshotInvocation;
+	private final PostfixTemplateProposal[] proposals;
+	private final ITextViewer viewer;
+	private final long modificationStamp;
+
+	/**
+	 * Creates the job, must be called in the UI thread as the document of the invocation is copied.
+	 */
+	public DeferredProposalJob(PostfixTemplateEngine engine, PostfixCompletionInvocation invocation, long modificationStamp, List<PostfixTemplateProposal> proposals,
+			ITextViewer viewer) {
+		super("Computing postfix template previews"); //$NON-NLS-1$
+		this.engine = engine;
+		this.invocation = invocation;
+		this.snapshotInvocation = invocation.forDocument(new Document(invocation.getDocument().get()));
+		this.modificationStamp = modificationStamp;
+		this.proposals = proposals.toArray(new PostfixTemplateProposal[proposals.size()]);
+		this.viewer = viewer;
+		setSystem(true);
+		setPriority(Job.INTERACTIVE);
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		final String[] previews = engine.computePreviews(snapshotInvocation, proposals);
+		if (monitor.isCanceled()) {
+			return Status.CANCEL_STATUS;
+		}
+
+		final StyledText widget = viewer.getTextWidget();
+		if (widget == null || widget.isDisposed()) {
+			return Status.OK_STATUS;
+		}
+		widget.getDisplay().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				if (widget.isDisposed() || modificationStamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP
+						|| getModificationStamp(invocation.getDocument()) != modificationStamp) {
+					return;
+				}
+				for (int i = 0; i < proposals.length; i++) {
+					if (previews[i] != null && !proposals[i].hasAdditionalProposalInfo()) {
+						proposals[i].setAdditionalProposalInfo(previews[i]);
+					}
+				}
+			}
+		});
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Returns the modification stamp of the given document.
+	 *
+	 * @param document
+	 * @return the modification stamp or {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP}
+	 */
+	static long getModificationStamp(IDocument document) {
+		if (document instanceof IDocumentExtension4) {
+			return ((IDocumentExtension4) document).getModificationStamp();
+		}
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+}
@@ -1,25 +1,21 @@
 package org.eclipse.jdt.postfixcompletion.core;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.NamingConventions;
 import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.BodyDeclaration;
 import org.eclipse.jdt.core.dom.ChildListPropertyDescriptor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.FieldDeclaration;
 import org.eclipse.jdt.core.dom.Modifier;
@@ -30,23 +26,29 @@ import org.eclipse.jdt.core.dom.Type;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.WildcardType;
 import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
+import org.eclipse.jdt.core.dom.rewrite.ImportRewrite;
 import org.eclipse.jdt.internal.compiler.ast.ASTNode;
 import org.eclipse.jdt.internal.compiler.ast.FieldReference;
 import org.eclipse.jdt.internal.compiler.ast.MessageSend;
 import org.eclipse.jdt.internal.compiler.ast.NameReference;
+import org.eclipse.jdt.internal.compiler.ast.QualifiedNameReference;
 import org.eclipse.jdt.internal.compiler.lookup.ArrayBinding;
 import org.eclipse.jdt.internal.compiler.lookup.BaseTypeBinding;
 import org.eclipse.jdt.internal.compiler.lookup.Binding;
+import org.eclipse.jdt.internal.compiler.lookup.FieldBinding;
+import org.eclipse.jdt.internal.compiler.lookup.PackageBinding;
 import org.eclipse.jdt.internal.compiler.lookup.ParameterizedTypeBinding;
-import org.eclipse.jdt.internal.compiler.lookup.ReferenceBinding;
 import org.eclipse.jdt.internal.compiler.lookup.TypeBinding;
 import org.eclipse.jdt.internal.compiler.lookup.VariableBinding;
+import org.eclipse.jdt.internal.corext.codemanipulation.ContextSensitiveImportRewriteContext;
 import org.eclipse.jdt.internal.corext.codemanipulation.StubUtility;
 import org.eclipse.jdt.internal.corext.dom.ASTNodeFactory;
 import org.eclipse.jdt.internal.corext.dom.ASTNodes;
 import org.eclipse.jdt.internal.corext.template.java.JavaContext;
 import org.eclipse.jdt.internal.ui.text.correction.ASTResolving;
-import org.eclipse.jdt.postfixcompletion.resolver.InnerExpressionResolver;
+import org.eclipse.jdt.postfixcompletion.core.PostfixCompletionStats.Counter;
+import org.eclipse.jdt.postfixcompletion.core.PostfixCompletionStats.Phase;
+import org.eclipse.jdt.ui.SharedASTProvider;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.Position;
@@ -57,6 +59,7 @@ import org.eclipse.jface.text.templates.TemplateContextType;
 import org.eclipse.jface.text.templates.TemplateException;
 import org.eclipse.jface.text.templates.TemplateVariable;
 import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.MultiTextEdit;
 import org.eclipse.text.edits.TextEdit;
 
 /**
@@ -71,7 +74,6 @@ public class JavaStatementPostfixContext extends JavaContext {
 
 	private static final Object CONTEXT_TYPE_ID = "postfix"; //$NON-NLS-1$
 	private static final String OBJECT_SIGNATURE = "java.lang.Object"; //$NON-NLS-1$
-	private static final String ID_SEPARATOR = "��"; //$NON-NLS-1$
 	
 	protected ASTNode currentCompletionNode;
 	protected ASTNode currentCompletionNodeParent;
@@ -82,8 +84,31 @@ public class JavaStatementPostfixContext extends JavaContext {
 	private boolean domInitialized;
 	private BodyDeclaration bodyDeclaration;
 	private org.eclipse.jdt.core.dom.ASTNode parentDeclaration;
+	private DomASTSource domASTSource;
+	private PostfixUnitRewrite unitRewrite;
+	
+	/**
+	 * The source of the DOM AST which is used to create new fields and to suggest field names.
+	 */
+	public enum DomASTSource {
+		/** The AST of the {@link SharedASTProvider} was up to date and has been reused */
+		SHARED_AST,
+		/** The compilation unit has been parsed using the completion offset as focal position */
+		FOCAL_PARSE,
+		/** The AST of the original source has been shared by the expansions of a batch (see {@link PostfixUnitRewrite}) */
+		UNIT_REWRITE
+	}
 	
 	private Map<TemplateVariable, int[]> outOfRangeOffsets;
+	
+	private Map<String, Boolean> resolvedTypes;
+	private Boolean innerExpressionValue;
+	private String[] usedVariableNames;
+	private String prefixKey;
+	private int prefixKeyOffset;
+	private int prefixKeyDocumentLength;
+	private Map<String, String[]> suggestedNames;
+	private SupertypeClosureCache supertypeClosures;
 
 	public JavaStatementPostfixContext(TemplateContextType type,
 			IDocument document, final int completionOffset, int completionLength,
@@ -117,44 +142,122 @@ public class JavaStatementPostfixContext extends JavaContext {
 		this.selectedNode = currentNode;
 		
 		outOfRangeOffsets = new HashMap<>();
+		resolvedTypes = new HashMap<>();
+		suggestedNames = new HashMap<>();
+	}
+	
+	/**
+	 * Lets the imports and fields which are added by the templates be recorded in the given rewrite of the original source instead of
+	 * being applied to the document. The document must only differ from the original source by the typed template name, which follows
+	 * the inner expression.
+	 * 
+	 * @param rewrite the rewrite of the compilation unit shared by the expansions of a batch
+	 */
+	public void setUnitRewrite(PostfixUnitRewrite rewrite) {
+		unitRewrite = rewrite;
+	}
+	
+	/**
+	 * Returns <code>true</code> if the imports and fields are recorded in a {@link PostfixUnitRewrite}.
+	 * @return
+	 */
+	public boolean hasUnitRewrite() {
+		return unitRewrite != null;
+	}
+	
+	/*
+	 * @see org.eclipse.jdt.internal.corext.template.java.JavaContext#addImport(java.lang.String)
+	 */
+	@Override
+	public String addImport(String type) {
+		if (unitRewrite == null) {
+			return super.addImport(type);
+		}
+		if (isReadOnly() || type.indexOf('.') == -1) {
+			return type;
+		}
+		synchronized (unitRewrite.getLock()) {
+			ImportRewrite importRewrite = unitRewrite.getImportRewrite();
+			return importRewrite.addImport(type, new ContextSensitiveImportRewriteContext(unitRewrite.getAST(), getASTOffset(), importRewrite));
+		}
+	}
+	
+	/**
+	 * Returns the offset of the completion in the DOM AST. The AST of a {@link PostfixUnitRewrite} does not contain the typed template
+	 * name, thus the start of the inner expression is used.
+	 */
+	private int getASTOffset() {
+		return (unitRewrite == null) ? getCompletionOffset() : getStart();
 	}
 	
 	public String addImportGenericClass(String className) {
-		Pattern p = Pattern.compile("[a-zA-Z0-9$_\\.]+");
-		Matcher m = p.matcher(className);
-		List<String> classNames = new ArrayList<String>();
-		Map<String, String> classNameMapping = new HashMap<String, String>();
-		while (m.find()) {
-			classNames.add(className.substring(m.start(), m.end()));
-		}
-		/*
-		 * In case the import class looks like this:
-		 * a.b.c.Foo<b.c.Foo>
-		 * we have to consider that - if we do not care about ordering, the following could happen:
-		 * 1. trying to import b.c.Foo - import is resolved to Foo
-		 * 2. replacing b.c.Foo with Foo - a.Foo<Foo> --> not correct (should be a.b.c.Foo<Foo>)
-		 * 3. ...
-		 * 
-		 * The solution to this is as follows:
-		 * 1. sorting the fully qualified class names by length
-		 * 2. replacing all occurring class names with unique identifiers ($$id$$)
-		 * 3. importing all class names and map the fully qualified identifier with the resolved identifier of the class
-		 * 4. replace the unique identifiers with the mapped values
-		 */
-		Collections.sort(classNames, new Comparator<String>() {
-			@Override
-			public int compare(String arg0, String arg1) {
-				return arg1.length() - arg0.length();
+		long start = PostfixCompletionStats.start();
+		try {
+			return doAddImportGenericClass(className);
+		} finally {
+			PostfixCompletionStats.record(Phase.ADD_IMPORT_GENERIC_CLASS, start);
+		}
+	}
+	
+	/**
+	 * Imports the types of the given (generic) type name in a single pass and replaces each qualified name by the name
+	 * returned by {@link #addImport(String)}, i.e. <code>java.util.Map&lt;java.lang.String, java.util.List&lt;a.b.Foo&gt;&gt;</code>
+	 * becomes <code>Map&lt;String, List&lt;Foo&gt;&gt;</code>.
+	 * <br/>
+	 * Every distinct qualified name is imported once. Unqualified names (base types, type variables, the keywords of wildcards
+	 * and types of the default package) are copied unchanged, as are the members of parameterized types (<code>a.Outer&lt;T&gt;.Inner</code>).
+	 * The result is only copied to a new buffer if a name has been replaced.
+	 * 
+	 * @param className
+	 * @return the type name using the imported names
+	 */
+	private String doAddImportGenericClass(String className) {
+		int length = className.length();
+		StringBuilder result = null;
+		Map<String, String> importedNames = null;
+		int copied = 0;
+		int i = 0;
+		while (i < length) {
+			if (!Character.isJavaIdentifierStart(className.charAt(i))) {
+				i++;
+				continue;
+			}
+			int nameStart = i;
+			for (; i < length; i++) {
+				char c = className.charAt(i);
+				if (c != '.' && !Character.isJavaIdentifierPart(c)) {
+					break;
+				}
+			}
+			while (className.charAt(i - 1) == '.') { // varargs
+				i--;
+			}
+			boolean qualified = className.lastIndexOf('.', i - 1) >= nameStart;
+			if (!qualified || (nameStart > 0 && className.charAt(nameStart - 1) == '.')) {
+				continue;
+			}
+			
+			String name = className.substring(nameStart, i);
+			String importedName = (importedNames == null) ? null : importedNames.get(name);
+			if (importedName == null) {
+				importedName = addImport(name);
+				if (importedNames == null) {
+					importedNames = new HashMap<>();
+				}
+				importedNames.put(name, importedName);
+			}
+			if (!importedName.equals(name)) {
+				if (result == null) {
+					result = new StringBuilder(length);
+				}
+				result.append(className, copied, nameStart).append(importedName);
+				copied = i;
 			}
-		});
-		for (int i = 0; i < classNames.size(); i++) {
-			className = className.replace(classNames.get(i), ID_SEPARATOR + i + ID_SEPARATOR);
-			classNameMapping.put(classNames.get(i), addImport(classNames.get(i)));
 		}
-		for (int i = 0; i < classNames.size(); i++) {
-			className = className.replace(ID_SEPARATOR + i + ID_SEPARATOR, classNameMapping.get(classNames.get(i)));
+		if (result == null) {
+			return className;
 		}
-		return className;
+		return result.append(className, copied, length).toString();
 	}
 	
 	private Region calculateNodeRegion(ASTNode node) {
@@ -179,7 +282,7 @@ public class JavaStatementPostfixContext extends JavaContext {
 		if (fForceEvaluation)
 			return true;
 		
-		if (selectedNode == null) // We can evaluate to true only if we have a valid inner expression
+		if (selectedNode == null || !isInnerExpressionValue()) // We can evaluate to true only if we have a valid inner expression
 			return false;
 		
 		if (template.getName().toLowerCase().startsWith(getPrefixKey().toLowerCase()) == false) {
@@ -187,34 +290,35 @@ public class JavaStatementPostfixContext extends JavaContext {
 		}
 		
 		// We check if the template makes "sense" by checking the requirements/conditions for the template
-		// For this purpose we have to resolve the inner_expression variable of the template
+		// The required types of the inner_expression variable are taken from the precompiled template index
 		// This approach is much faster then delegating this to the existing TemplateTranslator class
 		
-		String regex = ("\\$\\{([a-zA-Z]+):" + InnerExpressionResolver.INNER_EXPRESSION_VAR + "\\(([^\\$|\\{|\\}]*)\\)\\}"); // TODO Review this regex
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(template.getPattern());
-		boolean result = true;
-		
-		while (matcher.find()) {
-			String[] types = matcher.group(2).split(",");
-			for (String s : types) {
-				if (!arrayContains(InnerExpressionResolver.FLAGS, s)) {
-					result = false;
-					if (this.isNodeResolvingTo(selectedNode, s.trim()) == true) {
-						return true;
-					}
-				}
+		String[] types = PostfixTemplateIndex.getDefault().getRequiredTypes(template);
+		if (types.length == 0) {
+			return true;
+		}
+		for (String type : types) {
+			if (isInnerExpressionResolvingTo(type)) {
+				return true;
 			}
-	    }
-		
-		return result;
+		}
+		return false;
 	}
 	
-	private boolean arrayContains(Object[] array, Object o) {
-		for (Object a : array) {
-			if (a.equals(o)) return true;
+	/**
+	 * Returns <code>true</code> if the inner expression resolves to the given type signature.
+	 * The result is cached for the lifetime of this context as all templates requiring the same type share the result.
+	 * 
+	 * @param signature a fully qualified type, the name of a base type or <code>array</code>
+	 * @return true if the inner expression resolves to the given signature, false otherwise
+	 */
+	public boolean isInnerExpressionResolvingTo(String signature) {
+		Boolean result = resolvedTypes.get(signature);
+		if (result == null) {
+			result = Boolean.valueOf(selectedNode != null && isNodeResolvingTo(selectedNode, signature));
+			resolvedTypes.put(signature, result);
 		}
-		return false;
+		return result.booleanValue();
 	}
 
 	/**
@@ -226,22 +330,31 @@ public class JavaStatementPostfixContext extends JavaContext {
 	 * new Object().		=> getPrefixKey() returns ""<br/>
 	 * new Object().a		=> getPrefixKey() returns "a"<br/>
 	 * new object().asdf	=> getPrefixKey() returns "asdf"<br/>
+	 * <br/>
+	 * The prefix is computed once per completion offset and document length, it is recomputed when the
+	 * completion offset is moved by a change of the document (i.e. a new field or import).
 	 * 
 	 * @return an empty string or a string which represents the prefix of the key which was typed in
 	 */
 	protected String getPrefixKey() {
 		IDocument document = getDocument();
-		int start = getCompletionOffset();
 		int end = getCompletionOffset();
+		if (prefixKey != null && prefixKeyOffset == end && prefixKeyDocumentLength == document.getLength()) {
+			return prefixKey;
+		}
+		String result = "";
+		int start = end;
 		try {
-			String temp = document.get(start, 1);
-			while (!".".equals(temp)) {
-				temp = document.get(--start, 1);
+			while (document.getChar(start) != '.') {
+				start--;
 			}
-			return document.get(start + 1, end - start - 1);
+			result = document.get(start + 1, end - start - 1);
 		} catch (BadLocationException e) {
 		}
-		return "";
+		prefixKey = result;
+		prefixKeyOffset = end;
+		prefixKeyDocumentLength = document.getLength();
+		return result;
 	}
 	
 	@Override
@@ -305,7 +418,7 @@ public class JavaStatementPostfixContext extends JavaContext {
 	 * isNodeResolvingTo(node of type java.lang.String, "java.lang.Iterable") returns false<br/>
 	 * </code>
 	 * 
-	 * TODO Implement this method without using the recursive helper method if there are any performance/stackoverflow issues
+	 * The supertypes of the resolved type are looked up in the {@link SupertypeClosureCache} of this context.
 	 * 
 	 * @param node an ASTNode
 	 * @param signature a fully qualified type
@@ -315,42 +428,28 @@ public class JavaStatementPostfixContext extends JavaContext {
 		if (signature == null || signature.trim().length() == 0) {
 			return true;
 		}
-		Binding b = resolveNodeToBinding(node);
+		TypeBinding b = resolveNodeToType(node);
+		if (b == null || !b.isValidBinding()) {
+			// The type could not be resolved (i.e. because of compile errors), the templates are not restricted in this case
+			return true;
+		}
+		if (b == TypeBinding.VOID || b == TypeBinding.NULL) {
+			return false;
+		}
 		if (b instanceof ParameterizedTypeBinding) {
 			ParameterizedTypeBinding ptb = (ParameterizedTypeBinding) b;
-			return resolvesReferenceBindingTo(ptb.actualType(), signature);
+			return getSupertypeClosures().resolvesTo(ptb.actualType(), signature);
 		} else if (b instanceof BaseTypeBinding) {
 			return (new String(b.readableName()).equals(signature));
-		} else if (b instanceof TypeBinding) {
-			return resolvesReferenceBindingTo((TypeBinding) b, signature);
 		}
-		
-		return true;
+		return getSupertypeClosures().resolvesTo(b, signature);
 	}
 	
-	/**
-	 * This is a recursive method which performs a depth first search in the inheritance graph of the given {@link TypeBinding}.
-	 * 
-	 * @param sb a TypeBinding
-	 * @param signature a fully qualified type
-	 * @return true if the given TypeBinding itself or one of its superclass/superinterfaces resolves to the given signature. false otherwise.
-	 */
-	private boolean resolvesReferenceBindingTo(TypeBinding sb, String signature) {
-		if (sb == null) {
-			return false;
-		}
-		if (new String(sb.readableName()).startsWith(signature) || (sb instanceof ArrayBinding && "array".equals(signature))) {
-			return true;
-		}
-		List<ReferenceBinding> bindings = new ArrayList<>();
-		Collections.addAll(bindings, sb.superInterfaces());
-		bindings.add(sb.superclass());
-		boolean result = false;
-		Iterator<ReferenceBinding> it = bindings.iterator();
-		while (it.hasNext() && result == false) {
-			result = resolvesReferenceBindingTo(it.next(), signature);
+	private SupertypeClosureCache getSupertypeClosures() {
+		if (supertypeClosures == null) {
+			supertypeClosures = new SupertypeClosureCache(PostfixTemplateIndex.getDefault().getReceiverTypes());
 		}
-		return result;
+		return supertypeClosures;
 	}
 	
 	protected boolean resolvesReferenceBindingToArray(TypeBinding sb) {
@@ -365,28 +464,78 @@ public class JavaStatementPostfixContext extends JavaContext {
 		return isNodeResolvingTo(node, "boolean");
 	}
 	
-	protected Binding resolveNodeToBinding(ASTNode node) {
-		if (node instanceof NameReference) {
-    		NameReference nr = (NameReference) node;
-			if (nr.binding instanceof VariableBinding) {
-				VariableBinding vb = (VariableBinding) nr.binding;
-				return vb.type;
-			}
-		} else if (node instanceof FieldReference) {
-    		FieldReference fr = (FieldReference) node;
-			return fr.receiver.resolvedType;
+	/**
+	 * Returns the type of the inner expression of the given completion node.
+	 * <br/>
+	 * The completion node of <code>expression.</code> is a member access whose receiver is the inner expression, i.e. a message send
+	 * (<code>foo().bar().</code>), an allocation (<code>new Foo().</code>), a literal (<code>"foo".</code>) or any other expression.
+	 * The completion node of <code>name.</code> is a (qualified) name reference, the inner expression is the referenced variable or field.
+	 * <br/>
+	 * If the inner expression does not denote a value (the name of a type or a package, or the invocation of a <code>void</code> method)
+	 * {@link TypeBinding#VOID} is returned.
+	 * 
+	 * @param node the completion node
+	 * @return the type of the inner expression, {@link TypeBinding#VOID} if it does not denote a value or <code>null</code> if it could not be resolved
+	 */
+	protected TypeBinding resolveNodeToType(ASTNode node) {
+		if (node instanceof FieldReference) {
+			return resolveExpressionType(((FieldReference) node).receiver);
+		} else if (node instanceof org.eclipse.jdt.internal.compiler.ast.Expression) {
+			return resolveExpressionType((org.eclipse.jdt.internal.compiler.ast.Expression) node);
 		}
 		return null;
 	}
+	
+	/**
+	 * Returns the type of the given expression. The binding of a resolved qualified name reference (<code>a.b.field</code>) is the binding
+	 * of its first variable, the following fields are kept in its other bindings. The completion node <code>a.b.field.</code> is resolved
+	 * up to the last field, it has no other bindings and no resolved type.
+	 */
+	private TypeBinding resolveExpressionType(org.eclipse.jdt.internal.compiler.ast.Expression expression) {
+		if (expression instanceof NameReference) {
+			Binding b = ((NameReference) expression).binding;
+			if ((b instanceof TypeBinding || b instanceof PackageBinding) && b.isValidBinding()) {
+				return TypeBinding.VOID;
+			} else if (!(b instanceof VariableBinding)) {
+				return null;
+			}
+			if (expression.resolvedType != null) {
+				return expression.resolvedType;
+			}
+			if (expression instanceof QualifiedNameReference) {
+				FieldBinding[] otherBindings = ((QualifiedNameReference) expression).otherBindings;
+				if (otherBindings != null && otherBindings.length > 0) {
+					FieldBinding last = otherBindings[otherBindings.length - 1];
+					return (last == null) ? null : last.type;
+				}
+			}
+			return ((VariableBinding) b).type;
+		}
+		return expression.resolvedType;
+	}
 
 	protected String resolveNodeToTypeString(ASTNode node) {
-		Binding b = resolveNodeToBinding(node);
-		if (b != null) {
+		TypeBinding b = resolveNodeToType(node);
+		if (b != null && b.isValidBinding() && b != TypeBinding.VOID && b != TypeBinding.NULL) {
 			return new String(b.readableName());
 		}
 		return OBJECT_SIGNATURE;
 	}
 	
+	/**
+	 * Returns <code>false</code> if the inner expression is known not to denote a value, i.e. it is the name of a type or
+	 * a package, the invocation of a <code>void</code> method or the <code>null</code> literal. No template can be applied in this case.
+	 * 
+	 * @return false if the inner expression does not denote a value, true otherwise
+	 */
+	public boolean isInnerExpressionValue() {
+		if (innerExpressionValue == null) {
+			TypeBinding b = (selectedNode == null) ? null : resolveNodeToType(selectedNode);
+			innerExpressionValue = Boolean.valueOf(b != TypeBinding.VOID && b != TypeBinding.NULL);
+		}
+		return innerExpressionValue.booleanValue();
+	}
+	
 	/**
 	 * Returns the fully qualified name the node of the current code completion invocation resolves to.
 	 * 
@@ -422,6 +571,17 @@ public class JavaStatementPostfixContext extends JavaContext {
 			modifiers |= Modifier.FINAL;
 		}
 		
+		if (unitRewrite != null) {
+			// The field is only recorded, the returned edit is empty
+			synchronized (unitRewrite.getLock()) {
+				ASTRewrite rewrite = unitRewrite.getASTRewrite();
+				VariableDeclarationFragment newDeclFrag = addFieldDeclaration(rewrite, parentDeclaration, modifiers, varName, type, value);
+				unitRewrite.fieldAdded(rewrite.getListRewrite(parentDeclaration, ASTNodes.getBodyDeclarationsProperty(parentDeclaration)),
+						newDeclFrag.getParent(), varName);
+			}
+			return new MultiTextEdit();
+		}
+		
 		ASTRewrite rewrite= ASTRewrite.create(parentDeclaration.getAST());
 		
 		VariableDeclarationFragment newDeclFrag = addFieldDeclaration(rewrite, parentDeclaration, modifiers, varName, type, value);
@@ -440,19 +600,62 @@ public class JavaStatementPostfixContext extends JavaContext {
 		if (isReadOnly())
 			return;
 		
-		ASTParser parser= ASTParser.newParser(AST.JLS8);
-		parser.setSource(getCompilationUnit());
-		parser.setResolveBindings(true);
-		org.eclipse.jdt.core.dom.ASTNode domAst = parser.createAST(new NullProgressMonitor());
-		
-//		org.eclipse.jdt.core.dom.AST ast = domAst.getAST();
+		long start = PostfixCompletionStats.start();
+		CompilationUnit domAst = (unitRewrite == null) ? getSharedAST() : unitRewrite.getAST();
+		if (unitRewrite != null) {
+			domASTSource = DomASTSource.UNIT_REWRITE;
+		} else if (domAst != null) {
+			domASTSource = DomASTSource.SHARED_AST;
+			PostfixCompletionStats.increment(Counter.SHARED_AST_HITS);
+		} else {
+			// Fall back to a partial parse which skips the statements of all methods not enclosing the completion offset
+			ASTParser parser= ASTParser.newParser(AST.JLS8);
+			parser.setSource(getCompilationUnit());
+			parser.setResolveBindings(true);
+			parser.setFocalPosition(getCompletionOffset());
+			domAst = (CompilationUnit) parser.createAST(new NullProgressMonitor());
+			domASTSource = DomASTSource.FOCAL_PARSE;
+			PostfixCompletionStats.increment(Counter.FOCAL_PARSE_FALLBACKS);
+		}
 		
-		NodeFinder nf = new NodeFinder(domAst, getCompletionOffset(), 1);
+		NodeFinder nf = new NodeFinder(domAst, getASTOffset(), 1);
 		org.eclipse.jdt.core.dom.ASTNode cv = nf.getCoveringNode();
 		
 		bodyDeclaration = ASTResolving.findParentBodyDeclaration(cv);
 		parentDeclaration = ASTResolving.findParentType(cv);
 		domInitialized = true;
+		PostfixCompletionStats.record(Phase.INIT_DOM_AST, start);
+	}
+	
+	/**
+	 * Returns the AST of the {@link SharedASTProvider} if it is available without waiting and if it
+	 * reflects the current content of the document.
+	 * 
+	 * @return the shared AST or <code>null</code> if there is no up to date shared AST
+	 */
+	private CompilationUnit getSharedAST() {
+		ICompilationUnit cu = getCompilationUnit();
+		try {
+			if (cu == null || !cu.isConsistent()) {
+				return null;
+			}
+		} catch (JavaModelException e) {
+			return null;
+		}
+		CompilationUnit ast = SharedASTProvider.getAST(cu, SharedASTProvider.WAIT_NO, null);
+		if (ast == null || ast.getLength() != getDocument().getLength()) {
+			return null;
+		}
+		return ast;
+	}
+	
+	/**
+	 * Returns the source of the DOM AST which has been used by this context.
+	 * 
+	 * @return the source of the DOM AST or <code>null</code> if the DOM AST has not been initialized
+	 */
+	public DomASTSource getDomASTSource() {
+		return domASTSource;
 	}
 
 	/**
@@ -499,7 +702,7 @@ public class JavaStatementPostfixContext extends JavaContext {
 		newDecl.setType(type);
 		newDecl.modifiers().addAll(ASTNodeFactory.newModifiers(ast, modifiers));
 
-		int insertIndex = findFieldInsertIndex(decls, getCompletionOffset(), modifiers);
+		int insertIndex = findFieldInsertIndex(decls, getASTOffset(), modifiers);
 		rewrite.getListRewrite(newTypeDecl, property).insertAt(newDecl, insertIndex, null);
 		
 		return newDeclFrag;
@@ -580,6 +783,32 @@ public class JavaStatementPostfixContext extends JavaContext {
 	}
 	
 	public String[] suggestFieldName(String type, String[] excludes, boolean staticField, boolean finalField) throws IllegalArgumentException {
+		return suggestNames(type, excludes, getFieldNamingConvention(staticField, finalField));
+	}
+	
+	private static int getFieldNamingConvention(boolean staticField, boolean finalField) {
+		if (staticField && finalField) {
+			return NamingConventions.VK_STATIC_FINAL_FIELD;
+		} else if (staticField && !finalField) {
+			return NamingConventions.VK_STATIC_FIELD;
+		}
+		return NamingConventions.VK_INSTANCE_FIELD;
+	}
+	
+	/*
+	 * @see org.eclipse.jdt.internal.corext.template.java.JavaContext#suggestVariableNames(java.lang.String)
+	 */
+	@Override
+	public String[] suggestVariableNames(String type) throws IllegalArgumentException {
+		if (isReadOnly()) {
+			// The template is only previewed (additional proposal info), so we do not compute the variables in scope.
+			// This would require a complete code completion run, the names are computed properly when the template is applied.
+			return suggestCachedNames(type, new String[0], NamingConventions.VK_LOCAL);
+		}
+		return super.suggestVariableNames(type);
+	}
+	
+	private String[] suggestNames(String type, String[] excludes, int namingConventions) {
 		int dim = 0;
 		while (type.endsWith("[]")) {
 			dim++;
@@ -587,28 +816,54 @@ public class JavaStatementPostfixContext extends JavaContext {
 		}
 
 		IJavaProject project = getJavaProject();
-		
-		int namingConventions = 0;
-		if (staticField && finalField) {
-			namingConventions = NamingConventions.VK_STATIC_FINAL_FIELD;
-		} else if (staticField && !finalField) {
-			namingConventions = NamingConventions.VK_STATIC_FIELD;
-		} else {
-			namingConventions = NamingConventions.VK_INSTANCE_FIELD;
-		}
-		
 		if (project != null)
 			return StubUtility.getVariableNameSuggestions(namingConventions, project, type, dim, Arrays.asList(excludes), true);
 
 		return new String[] {Signature.getSimpleName(type).toLowerCase()};
 	}
 	
+	/**
+	 * Returns the name suggestions of {@link #suggestNames(String, String[], int)}, which are memoized per type (including the dimensions) and naming kind.
+	 * The excludes must be the same for all calls with the same naming kind during the lifetime of this context.
+	 */
+	private String[] suggestCachedNames(String type, String[] excludes, int namingConventions) {
+		String key = namingConventions + ":" + type; //$NON-NLS-1$
+		String[] result = suggestedNames.get(key);
+		if (result == null) {
+			result = suggestNames(type, excludes, namingConventions);
+			suggestedNames.put(key, result);
+		}
+		return result.clone();
+	}
+	
+	/**
+	 * Returns the names of the variables used in the enclosing body declaration. The names are collected once per context, thus all
+	 * proposals and variables of a code completion invocation share them.
+	 */
+	private String[] getUsedVariableNames() {
+		if (usedVariableNames == null) {
+			if (unitRewrite == null) {
+				usedVariableNames = ASTResolving.getUsedVariableNames(bodyDeclaration);
+			} else {
+				synchronized (unitRewrite.getLock()) {
+					// The fields added by the previous expansions are not part of the AST
+					String[] names = ASTResolving.getUsedVariableNames(bodyDeclaration);
+					String[] fieldNames = unitRewrite.getFieldNames();
+					usedVariableNames = new String[names.length + fieldNames.length];
+					System.arraycopy(names, 0, usedVariableNames, 0, names.length);
+					System.arraycopy(fieldNames, 0, usedVariableNames, names.length, fieldNames.length);
+				}
+			}
+		}
+		return usedVariableNames;
+	}
+	
 	public String[] suggestFieldName(String type, boolean finalField, boolean forceStatic) {
 		if (!domInitialized) {
 			initDomAST();
 		}
 		if (domInitialized) {
-			return suggestFieldName(type, ASTResolving.getUsedVariableNames(bodyDeclaration), (forceStatic) ? forceStatic : isBodyStatic(), finalField);
+			return suggestCachedNames(type, getUsedVariableNames(), getFieldNamingConvention((forceStatic) ? forceStatic : isBodyStatic(), finalField));
 		}
 		// If the dom is not initialized yet (template preview) we return a dummy name
 		return new String[] { "newField" };
@@ -634,10 +889,19 @@ public class JavaStatementPostfixContext extends JavaContext {
 	public TemplateBuffer evaluate(Template template)
 			throws BadLocationException, TemplateException {
 		
-		TemplateBuffer result = super.evaluate(template);
+		long start = PostfixCompletionStats.start();
+		TemplateBuffer result;
+		try {
+			result = super.evaluate(template);
+		} finally {
+			PostfixCompletionStats.record(Phase.EVALUATE, start);
+		}
 		
 		// After the template buffer has been created we are able to add out of range offsets
 		// This is not possible beforehand as it will result in an exception!
+		if (outOfRangeOffsets.isEmpty()) {
+			return result;
+		}
 		for (TemplateVariable tv : result.getVariables()) {
 	            
             int[] outOfRangeOffsets = this.getVariableOutOfRangeOffsets(tv);
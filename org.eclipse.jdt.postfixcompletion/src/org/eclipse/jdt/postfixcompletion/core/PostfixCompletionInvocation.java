@@ -0,0 +1,129 @@
+package org.eclipse.jdt.postfixcompletion.core;
+
+import java.util.Set;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.internal.compiler.ast.ASTNode;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.templates.Template;
+
+/**
+ * This class holds the state of a single postfix code completion invocation.
+ * <br/>
+ * An instance is created by the {@link PostfixCompletionProposalComputer} for each invocation and passed to
+ * {@link PostfixTemplateEngine#complete(PostfixCompletionInvocation)}. As the engine does not keep any state of its own,
+ * overlapping invocations (i.e. auto activation and an explicit invocation or two editors) do not interfere.
+ * Instances are immutable and do not refer to the viewer, thus they can be used outside of the UI thread.
+ * <br/>
+ * While the user continues typing the template name after the dot the receiver expression does not change. In this case
+ * {@link #forOffset(int)} derives an invocation which shares the completion node and the applicable templates of the receiver.
+ */
+@SuppressWarnings("restriction")
+public class PostfixCompletionInvocation {
+
+	private final IDocument document;
+	private final int offset;
+	private final ICompilationUnit compilationUnit;
+	private final ASTNode completionNode;
+	private final ASTNode completionNodeParent;
+	private final Applicability applicability;
+
+	/**
+	 * The templates which can be applied to the receiver expression, shared by all invocations derived by {@link PostfixCompletionInvocation#forOffset(int)}.
+	 */
+	private static class Applicability {
+		private PostfixTemplateIndex index;
+		private Set<Template> templates;
+
+		synchronized Set<Template> get(PostfixTemplateIndex currentIndex) {
+			return (index == currentIndex) ? templates : null;
+		}
+
+		synchronized void set(PostfixTemplateIndex currentIndex, Set<Template> applicableTemplates) {
+			index = currentIndex;
+			templates = applicableTemplates;
+		}
+	}
+
+	public PostfixCompletionInvocation(IDocument document, int offset, ICompilationUnit compilationUnit, ASTNode completionNode, ASTNode completionNodeParent) {
+		this(document, offset, compilationUnit, completionNode, completionNodeParent, new Applicability());
+	}
+
+	private PostfixCompletionInvocation(IDocument document, int offset, ICompilationUnit compilationUnit, ASTNode completionNode, ASTNode completionNodeParent,
+			Applicability applicability) {
+		this.document = document;
+		this.offset = offset;
+		this.compilationUnit = compilationUnit;
+		this.completionNode = completionNode;
+		this.completionNodeParent = completionNodeParent;
+		this.applicability = applicability;
+	}
+
+	/**
+	 * Returns an invocation for the same receiver expression at the given offset. The caller has to ensure that the document
+	 * has only been changed after the dot following the receiver expression.
+	 *
+	 * @param newOffset the offset the code completion has been invoked at
+	 * @return the new invocation
+	 */
+	public PostfixCompletionInvocation forOffset(int newOffset) {
+		return new PostfixCompletionInvocation(document, newOffset, compilationUnit, completionNode, completionNodeParent, applicability);
+	}
+
+	/**
+	 * Returns an invocation for the same location of the given document. The document must have the same contents as the
+	 * document of this invocation, i.e. it is a snapshot which can be read outside of the UI thread.
+	 *
+	 * @param snapshot a copy of the document of this invocation
+	 * @return the new invocation
+	 */
+	public PostfixCompletionInvocation forDocument(IDocument snapshot) {
+		return new PostfixCompletionInvocation(snapshot, offset, compilationUnit, completionNode, completionNodeParent, applicability);
+	}
+
+	/**
+	 * Returns the templates which have been found to be applicable to the receiver expression using the given index.
+	 *
+	 * @param index
+	 * @return the applicable templates or <code>null</code> if they have not been computed for the given index
+	 */
+	Set<Template> getApplicableTemplates(PostfixTemplateIndex index) {
+		return applicability.get(index);
+	}
+
+	void setApplicableTemplates(PostfixTemplateIndex index, Set<Template> templates) {
+		applicability.set(index, templates);
+	}
+
+	public IDocument getDocument() {
+		return document;
+	}
+
+	/**
+	 * Returns the offset the code completion was invoked at.
+	 * @return
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	public ICompilationUnit getCompilationUnit() {
+		return compilationUnit;
+	}
+
+	/**
+	 * Returns the completion node which was resolved by the <code>CompletionEngine</code>.
+	 * @return
+	 */
+	public ASTNode getCompletionNode() {
+		return completionNode;
+	}
+
+	/**
+	 * Returns the parent of the completion node which was resolved by the <code>CompletionEngine</code>.
+	 * @return
+	 */
+	public ASTNode getCompletionNodeParent() {
+		return completionNodeParent;
+	}
+}
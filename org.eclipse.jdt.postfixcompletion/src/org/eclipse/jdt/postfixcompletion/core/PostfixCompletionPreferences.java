@@ -0,0 +1,33 @@
+package org.eclipse.jdt.postfixcompletion.core;
+
+import org.eclipse.core.runtime.Platform;
+
+/**
+ * This class provides the preferences of the postfix code completion.
+ * <br/>
+ * The preferences are stored in the node of the plug-in id and are looked up in the instance, configuration and default scope,
+ * thus they can also be set using a <code>plugin_customization.ini</code>.
+ */
+public class PostfixCompletionPreferences {
+
+	public static final String PLUGIN_ID = "org.eclipse.jdt.postfixcompletion"; //$NON-NLS-1$
+
+	/**
+	 * The time budget of a postfix code completion invocation in milliseconds, measured after the completion node has been resolved.
+	 * All applicable templates are proposed, but if the budget is exceeded the previews of the remaining templates which need a DOM AST
+	 * or import rewriting are computed in the background. The default <code>0</code> disables the budget, the previews are computed on demand.
+	 */
+	public static final String COMPLETION_BUDGET = "completion_budget"; //$NON-NLS-1$
+
+	private PostfixCompletionPreferences() {
+	}
+
+	/**
+	 * Returns the time budget of a postfix code completion invocation.
+	 *
+	 * @return the budget in milliseconds or <code>0</code> if the budget is disabled
+	 */
+	public static int getCompletionBudget() {
+		return Math.max(0, Platform.getPreferencesService().getInt(PLUGIN_ID, COMPLETION_BUDGET, 0, null));
+	}
+}
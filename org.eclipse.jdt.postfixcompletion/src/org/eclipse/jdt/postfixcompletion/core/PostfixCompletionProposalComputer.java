@@ -1,19 +1,33 @@
 package org.eclipse.jdt.postfixcompletion.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.CompletionContext;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.internal.codeassist.CompletionNodeRequestor;
 import org.eclipse.jdt.internal.codeassist.InternalCompletionContext;
-import org.eclipse.jdt.internal.compiler.ast.ASTNode;
 import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.text.java.AbstractTemplateCompletionProposalComputer;
 import org.eclipse.jdt.internal.ui.text.template.contentassist.TemplateEngine;
-import org.eclipse.jdt.ui.text.java.CompletionProposalCollector;
+import org.eclipse.jdt.postfixcompletion.core.PostfixCompletionStats.Counter;
+import org.eclipse.jdt.postfixcompletion.core.PostfixCompletionStats.Phase;
+import org.eclipse.jdt.ui.text.java.ContentAssistInvocationContext;
+import org.eclipse.jdt.ui.text.java.IJavaCompletionProposal;
 import org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext;
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
 import org.eclipse.jface.text.templates.ContextTypeRegistry;
 import org.eclipse.jface.text.templates.TemplateContextType;
 
@@ -22,6 +36,70 @@ public class PostfixCompletionProposalComputer extends AbstractTemplateCompletio
 	
 	private final PostfixTemplateEngine postfixCompletionTemplateEngine;
 	
+	private final Object deferredLock = new Object();
+	private DeferredProposalJob deferredJob;
+	
+	private final Object receiverCacheLock = new Object();
+	private ReceiverCache receiverCache;
+	
+	/**
+	 * The invocation of the last code completion at a receiver expression. It is reused as long as the document has only been changed
+	 * after the dot following the receiver, i.e. when the proposals are recomputed after the user deleted some characters of the template name.
+	 * <br/>
+	 * The proposals may be computed outside of the UI thread while the document is changed in the UI thread. Therefore the cache is keyed on
+	 * the document and its modification stamp: the listener only advances the stamp for changes after the dot, any other change of the document
+	 * (including one the listener has not been notified of yet) results in a different stamp.
+	 */
+	private static class ReceiverCache implements IDocumentListener {
+		private final PostfixCompletionInvocation invocation;
+		private final int nameStart;
+		private long modificationStamp;
+		private boolean valid = true;
+
+		ReceiverCache(PostfixCompletionInvocation invocation, int nameStart, long modificationStamp) {
+			this.invocation = invocation;
+			this.nameStart = nameStart;
+			this.modificationStamp = modificationStamp;
+			invocation.getDocument().addDocumentListener(this);
+		}
+
+		/**
+		 * Returns the cached invocation if the given document has only been changed after the dot since it has been cached.
+		 * 
+		 * @param document
+		 * @param start the start of the template name in the document
+		 * @return the invocation or <code>null</code> if it can not be reused
+		 */
+		synchronized PostfixCompletionInvocation get(IDocument document, int start) {
+			if (!valid || invocation.getDocument() != document || nameStart != start
+					|| DeferredProposalJob.getModificationStamp(document) != modificationStamp) {
+				return null;
+			}
+			return invocation;
+		}
+
+		@Override
+		public synchronized void documentAboutToBeChanged(DocumentEvent event) {
+			if (event.getOffset() < nameStart) {
+				valid = false;
+			}
+		}
+
+		@Override
+		public synchronized void documentChanged(DocumentEvent event) {
+			if (valid) {
+				modificationStamp = DeferredProposalJob.getModificationStamp(event.getDocument());
+			}
+		}
+
+		void dispose() {
+			synchronized (this) {
+				valid = false;
+			}
+			invocation.getDocument().removeDocumentListener(this);
+		}
+	}
+	
 	public PostfixCompletionProposalComputer() {
 		ContextTypeRegistry templateContextRegistry = JavaPlugin.getDefault().getTemplateContextRegistry();
 		postfixCompletionTemplateEngine = createTemplateEngine(templateContextRegistry, JavaStatementPostfixContextType.ID_ALL);
@@ -33,8 +111,178 @@ public class PostfixCompletionProposalComputer extends AbstractTemplateCompletio
 		return new PostfixTemplateEngine(contextType);
 	}
 
+	/*
+	 * The super implementation keeps the engine of the current invocation in a field and lets the engine collect the proposals.
+	 * Instead the state of each invocation is kept in a PostfixCompletionInvocation, thus overlapping invocations do not interfere.
+	 * As in the super implementation the proposals of templates whose pattern starts with a proposed keyword (e.g. for, if, while, throw)
+	 * are sorted in front of the keyword proposal.
+	 * If a completion budget is configured the previews of the costly proposals are computed up front as long as the budget allows,
+	 * the remaining ones are computed by a DeferredProposalJob. The budget starts after the completion node has been resolved,
+	 * thus a large compilation unit does not use it up before any template has been checked.
+	 * 
+	 * @see org.eclipse.jdt.internal.ui.text.java.AbstractTemplateCompletionProposalComputer#computeCompletionProposals(org.eclipse.jdt.ui.text.java.ContentAssistInvocationContext, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	public List<ICompletionProposal> computeCompletionProposals(ContentAssistInvocationContext context, IProgressMonitor monitor) {
+		if (!(context instanceof JavaContentAssistInvocationContext))
+			return Collections.emptyList();
+
+		JavaContentAssistInvocationContext javaContext = (JavaContentAssistInvocationContext) context;
+		PostfixCompletionInvocation invocation = reuseInvocation(javaContext);
+		if (invocation == null) {
+			long modificationStamp = DeferredProposalJob.getModificationStamp(javaContext.getDocument());
+			invocation = createInvocation(javaContext);
+			if (invocation == null)
+				return Collections.emptyList();
+			cacheInvocation(invocation, modificationStamp);
+		}
+
+		PostfixTemplateProposal[] proposals;
+		int budget = PostfixCompletionPreferences.getCompletionBudget();
+		if (budget == 0) {
+			proposals = postfixCompletionTemplateEngine.complete(invocation);
+		} else {
+			long start = System.nanoTime();
+			long modificationStamp = DeferredProposalJob.getModificationStamp(invocation.getDocument());
+			List<PostfixTemplateProposal> deferredProposals = new ArrayList<>();
+			proposals = postfixCompletionTemplateEngine.complete(invocation, start + TimeUnit.MILLISECONDS.toNanos(budget), deferredProposals);
+			if (!deferredProposals.isEmpty()) {
+				PostfixCompletionStats.increment(Counter.DEFERRED_INVOCATIONS);
+				schedule(new DeferredProposalJob(postfixCompletionTemplateEngine, invocation, modificationStamp, deferredProposals, javaContext.getViewer()));
+			}
+		}
+		updateKeywordRelevance(javaContext, proposals);
+		return new ArrayList<ICompletionProposal>(Arrays.asList(proposals));
+	}
+
+	/**
+	 * Gives the proposals of templates whose pattern starts with a keyword slightly more relevance than the keyword proposal,
+	 * like {@link AbstractTemplateCompletionProposalComputer#computeCompletionProposals(ContentAssistInvocationContext, IProgressMonitor)}.
+	 * The keyword proposals have been computed together with the core context, thus no further code completion is run.
+	 * 
+	 * @param context
+	 * @param proposals
+	 */
+	private static void updateKeywordRelevance(JavaContentAssistInvocationContext context, PostfixTemplateProposal[] proposals) {
+		if (proposals.length == 0)
+			return;
+
+		IJavaCompletionProposal[] keywordProposals = context.getKeywordProposals();
+		for (PostfixTemplateProposal proposal : proposals) {
+			String pattern = proposal.getTemplate().getPattern();
+			for (IJavaCompletionProposal keywordProposal : keywordProposals) {
+				if (pattern.startsWith(keywordProposal.getDisplayString())) {
+					proposal.setRelevance(keywordProposal.getRelevance() + 1);
+					break;
+				}
+			}
+		}
+	}
+
+	private void schedule(DeferredProposalJob job) {
+		synchronized (deferredLock) {
+			if (deferredJob != null) {
+				deferredJob.cancel();
+			}
+			deferredJob = job;
+		}
+		job.schedule();
+	}
+
+	/**
+	 * Returns an invocation for the receiver expression of the previous invocation if the code completion has been invoked
+	 * in the template name following the same receiver. This skips the resolution of the completion node by the <code>CompletionEngine</code>
+	 * and the lookup of the applicable templates.
+	 * 
+	 * @param context
+	 * @return the invocation or <code>null</code> if the previous invocation can not be reused
+	 */
+	private PostfixCompletionInvocation reuseInvocation(JavaContentAssistInvocationContext context) {
+		ReceiverCache cache;
+		synchronized (receiverCacheLock) {
+			cache = receiverCache;
+		}
+		if (cache == null || context.getViewer().getSelectedRange().y > 0) {
+			return null;
+		}
+		int offset = context.getInvocationOffset();
+		PostfixCompletionInvocation invocation = cache.get(context.getDocument(), getNameStart(context.getDocument(), offset));
+		if (invocation == null) {
+			return null;
+		}
+		PostfixCompletionStats.increment(Counter.REUSED_INVOCATIONS);
+		return invocation.forOffset(offset);
+	}
+
+	/**
+	 * Caches the given invocation if it has been invoked after a dot.
+	 * 
+	 * @param invocation
+	 * @param modificationStamp the modification stamp of the document the invocation has been computed for
+	 */
+	private void cacheInvocation(PostfixCompletionInvocation invocation, long modificationStamp) {
+		int nameStart = getNameStart(invocation.getDocument(), invocation.getOffset());
+		ReceiverCache cache = null;
+		if (modificationStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP && nameStart > 0
+				&& isAfterDot(invocation.getDocument(), nameStart)) {
+			cache = new ReceiverCache(invocation, nameStart, modificationStamp);
+		}
+		setReceiverCache(cache);
+	}
+
+	private void clearReceiverCache() {
+		setReceiverCache(null);
+	}
+
+	private void setReceiverCache(ReceiverCache cache) {
+		ReceiverCache previous;
+		synchronized (receiverCacheLock) {
+			previous = receiverCache;
+			receiverCache = cache;
+		}
+		if (previous != null) {
+			previous.dispose();
+		}
+	}
+
+	/**
+	 * Returns the start of the identifier which ends at the given offset.
+	 * 
+	 * @param document
+	 * @param offset
+	 * @return the start of the identifier or the offset itself if there is no identifier in front of it
+	 */
+	private static int getNameStart(IDocument document, int offset) {
+		int result = offset;
+		try {
+			while (result > 0 && Character.isJavaIdentifierPart(document.getChar(result - 1))) {
+				result--;
+			}
+		} catch (BadLocationException e) {
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the engine if postfix templates can be proposed at the location of the given context. This method is not used by
+	 * {@link #computeCompletionProposals(ContentAssistInvocationContext, IProgressMonitor)}. Only the core context, which the
+	 * context has already computed, is checked: the completion node is resolved by the engine itself when it is asked for the proposals.
+	 */
 	@Override
 	protected TemplateEngine computeCompletionEngine(JavaContentAssistInvocationContext context) {
+		if (context.getCompilationUnit() == null)
+			return null;
+		CompletionContext coreContext = context.getCoreContext();
+		return (coreContext != null && isPostfixLocation(context, coreContext)) ? postfixCompletionTemplateEngine : null;
+	}
+
+	/**
+	 * Creates the state of a postfix completion invocation in the given context.
+	 * 
+	 * @param context
+	 * @return the invocation or <code>null</code> if no postfix templates can be proposed in the given context
+	 */
+	private PostfixCompletionInvocation createInvocation(JavaContentAssistInvocationContext context) {
 		ICompilationUnit unit = context.getCompilationUnit();
 		if (unit == null)
 			return null;
@@ -44,69 +292,112 @@ public class PostfixCompletionProposalComputer extends AbstractTemplateCompletio
 			return null;
 
 		CompletionContext coreContext = context.getCoreContext();
-		if (coreContext != null) {
-			int tokenLocation= coreContext.getTokenLocation();
-			int tokenStart= coreContext.getTokenStart();
-			int tokenKind= coreContext.getTokenKind();
+		if (coreContext != null && isPostfixLocation(context, coreContext)) {
+			PostfixCompletionStats.increment(Counter.INVOCATIONS);
+			if (PostfixCompletionStats.TIMING) {
+				PostfixCompletionStats.recordDocumentSize(context.getDocument().getNumberOfLines());
+			}
 			
-			/*
-			// XXX print out tokenlocation stuff (debugging)
-			System.out.println("All Tokens: " + CompletionContext.TL_CONSTRUCTOR_START + " " + CompletionContext.TL_MEMBER_START + " " + CompletionContext.TL_STATEMENT_START);
-			System.out.println("Token Start: " + coreContext.getTokenStart());
-			System.out.println("Token End: " + coreContext.getTokenEnd());
-			System.out.println("Token Kind: " + coreContext.getTokenKind());
-			System.out.println("Token Location: " + coreContext.getTokenLocation());
-			System.out.println("Enclosing Element: " + coreContext.getEnclosingElement());
-			System.out.println("Offset: " + coreContext.getOffset());
-			System.out.println("Token Array: " + Arrays.toString(coreContext.getToken()));
-			System.out.println("Kind Tokens: " + CompletionContext.TOKEN_KIND_NAME + ", " + CompletionContext.TOKEN_KIND_STRING_LITERAL + ", " + CompletionContext.TOKEN_KIND_UNKNOWN);
-			*/
-			if (context.getViewer().getSelectedRange().y > 0) { // If there is an active selection we do not want to contribute to the CA
+			InternalCompletionContext extendedContext = analyzeCoreContext(context, coreContext);
+			if (extendedContext == null) {
 				return null;
 			}
-			
-			if ((tokenLocation == 0 && tokenStart > -1)
-					|| ((tokenLocation & CompletionContext.TL_MEMBER_START) != 0 && tokenKind == CompletionContext.TOKEN_KIND_NAME && tokenStart > -1)
-					|| (tokenLocation == 0 && isAfterDot(context.getDocument(), context.getInvocationOffset()))) {
-				
-				analyzeCoreContext(context, coreContext);
 
-				return postfixCompletionTemplateEngine;
-			}
+			return new PostfixCompletionInvocation(context.getDocument(), context.getInvocationOffset(), unit,
+					extendedContext.getCompletionNode(), extendedContext.getCompletionNodeParent());
 		}
 		return null;
 	}
 
-	private void analyzeCoreContext(JavaContentAssistInvocationContext context,
+	/**
+	 * Returns <code>true</code> if the token location of the given core context allows postfix templates. This check does not
+	 * run a code completion.
+	 * 
+	 * @param context
+	 * @param coreContext
+	 * @return true if postfix templates can be proposed at the location, false otherwise
+	 */
+	private static boolean isPostfixLocation(JavaContentAssistInvocationContext context, CompletionContext coreContext) {
+		int tokenLocation= coreContext.getTokenLocation();
+		int tokenStart= coreContext.getTokenStart();
+		int tokenKind= coreContext.getTokenKind();
+		
+		/*
+		// XXX print out tokenlocation stuff (debugging)
+		System.out.println("All Tokens: " + CompletionContext.TL_CONSTRUCTOR_START + " " + CompletionContext.TL_MEMBER_START + " " + CompletionContext.TL_STATEMENT_START);
+		System.out.println("Token Start: " + coreContext.getTokenStart());
+		System.out.println("Token End: " + coreContext.getTokenEnd());
+		System.out.println("Token Kind: " + coreContext.getTokenKind());
+		System.out.println("Token Location: " + coreContext.getTokenLocation());
+		System.out.println("Enclosing Element: " + coreContext.getEnclosingElement());
+		System.out.println("Offset: " + coreContext.getOffset());
+		System.out.println("Token Array: " + Arrays.toString(coreContext.getToken()));
+		System.out.println("Kind Tokens: " + CompletionContext.TOKEN_KIND_NAME + ", " + CompletionContext.TOKEN_KIND_STRING_LITERAL + ", " + CompletionContext.TOKEN_KIND_UNKNOWN);
+		*/
+		if (context.getViewer().getSelectedRange().y > 0) { // If there is an active selection we do not want to contribute to the CA
+			return false;
+		}
+		
+		return (tokenLocation == 0 && tokenStart > -1)
+				|| ((tokenLocation & CompletionContext.TL_MEMBER_START) != 0 && tokenKind == CompletionContext.TOKEN_KIND_NAME && tokenStart > -1)
+				|| (tokenLocation == 0 && isAfterDot(context.getDocument(), context.getInvocationOffset()));
+	}
+
+	/**
+	 * Returns the extended completion context which provides the completion node and its parent.
+	 * 
+	 * @param context
+	 * @param coreContext
+	 * @return the extended context or <code>null</code> if no completion node has been found
+	 */
+	private InternalCompletionContext analyzeCoreContext(JavaContentAssistInvocationContext context,
 			CompletionContext coreContext) {
-		// Fetch the information of the InternalCompletionContext and update our template engine
+		// Fetch the information of the InternalCompletionContext
 		if (coreContext instanceof InternalCompletionContext && ((InternalCompletionContext)coreContext).isExtended()) {
-		    updateTemplateEngine((InternalCompletionContext)coreContext);
+		    return (InternalCompletionContext)coreContext;
 		    
 		} else if (coreContext instanceof InternalCompletionContext && ((InternalCompletionContext)coreContext).isExtended() == false) {
 			// If the coreContext is not extended atm for some reason we have to extend it ourself in order to the needed information
+			// The CompletionNodeRequestor lets the CompletionEngine stop after the completion node has been resolved, no proposals are computed
 			final ICompilationUnit cu = context.getCompilationUnit();
-		    final CompletionProposalCollector collector = new CompletionProposalCollector(cu) {
+			final InternalCompletionContext[] extendedContext = new InternalCompletionContext[1];
+		    final CompletionNodeRequestor requestor = new CompletionNodeRequestor() {
 		        @Override
-		        public void acceptContext(final CompletionContext context) {
-		            super.acceptContext(context);
-		            updateTemplateEngine((InternalCompletionContext) context);
+		        public void acceptCompletionNode(InternalCompletionContext context) {
+		        	if (context.isExtended()) {
+		        		extendedContext[0] = context;
+		        	}
 		        }
 		    };
-		    collector.setInvocationContext(context);
-		    collector.setRequireExtendedContext(true);
+		    long start = PostfixCompletionStats.start();
 		    try {
-		        cu.codeComplete(context.getInvocationOffset(), collector);
+		        cu.codeComplete(context.getInvocationOffset(), requestor);
 		    } catch (JavaModelException e) {
 		    	
+		    } finally {
+		    	PostfixCompletionStats.record(Phase.CONTEXT_EXTENSION, start);
 		    }
+		    return extendedContext[0];
 		}
+		return null;
 	}
 	
-	private void updateTemplateEngine(InternalCompletionContext context) {
-        ASTNode completionNode = context.getCompletionNode();
-        ASTNode completionNodeParent = context.getCompletionNodeParent();
-        postfixCompletionTemplateEngine.setASTNodes(completionNode, completionNodeParent);
+	/*
+	 * @see org.eclipse.jdt.internal.ui.text.java.AbstractTemplateCompletionProposalComputer#sessionStarted()
+	 */
+	@Override
+	public void sessionStarted() {
+		super.sessionStarted();
+	}
+	
+	/*
+	 * @see org.eclipse.jdt.internal.ui.text.java.AbstractTemplateCompletionProposalComputer#sessionEnded()
+	 */
+	@Override
+	public void sessionEnded() {
+		clearReceiverCache();
+		super.sessionEnded();
+		PostfixCompletionStats.dumpSession();
 	}
 	
 	/**
@@ -115,7 +406,7 @@ public class PostfixCompletionProposalComputer extends AbstractTemplateCompletio
 	 * @param offset
 	 * @return true if the given offset is directly after a dot character, false otherwise
 	 */
-	private boolean isAfterDot(IDocument document, int offset) {
+	private static boolean isAfterDot(IDocument document, int offset) {
 		try {
 			return document.get(offset - 1, 1).charAt(0) == '.';
 		} catch (BadLocationException e) {
@@ -0,0 +1,276 @@
+package org.eclipse.jdt.postfixcompletion.core;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.core.runtime.Platform;
+
+/**
+ * This class records the time spent in the phases of the postfix code completion.
+ * <br/>
+ * The recording is enabled with the debug option <code>org.eclipse.jdt.postfixcompletion/debug/timing</code>
+ * (see the <code>.options</code> file of this plug-in). The durations of each phase are collected in a histogram with
+ * logarithmic buckets which is printed together with the size of the completed compilation units at the end of every content assist session.
+ * With the option <code>org.eclipse.jdt.postfixcompletion/debug/timing/trace</code> each duration is additionally printed as soon as it is recorded.
+ * <br/>
+ * If the options are disabled {@link #start()} and {@link #record(Phase, long)} do nothing.
+ * <br/>
+ * Overruns of the completion budget (see {@link PostfixCompletionPreferences#COMPLETION_BUDGET}) are counted per template
+ * independent of the debug options, they can be queried with {@link #getBudgetOverruns()}.
+ */
+public class PostfixCompletionStats {
+
+	private static final String PLUGIN_ID = PostfixCompletionPreferences.PLUGIN_ID;
+
+	public static final boolean TIMING = isOptionEnabled(PLUGIN_ID + "/debug") && isOptionEnabled(PLUGIN_ID + "/debug/timing"); //$NON-NLS-1$ //$NON-NLS-2$
+	public static final boolean TRACE = TIMING && isOptionEnabled(PLUGIN_ID + "/debug/timing/trace"); //$NON-NLS-1$
+
+	/**
+	 * The measured phases of the postfix code completion.
+	 */
+	public enum Phase {
+		/** The re-run of the <code>codeComplete</code> to obtain the completion node */
+		CONTEXT_EXTENSION("context extension"), //$NON-NLS-1$
+		/** The lookup of the applicable templates using <code>canEvaluate</code> */
+		CAN_EVALUATE("canEvaluate"), //$NON-NLS-1$
+		/** The creation of the DOM AST */
+		INIT_DOM_AST("initDomAST"), //$NON-NLS-1$
+		/** The evaluation of a template for the preview or when it is applied */
+		EVALUATE("evaluate"), //$NON-NLS-1$
+		/** The import of the types of a (generic) type name */
+		ADD_IMPORT_GENERIC_CLASS("addImportGenericClass"); //$NON-NLS-1$
+
+		private final String label;
+
+		private Phase(String label) {
+			this.label = label;
+		}
+	}
+
+	/**
+	 * The counted events of the postfix code completion.
+	 */
+	public enum Counter {
+		/** A completion invocation of the postfix proposal computer */
+		INVOCATIONS("invocations"), //$NON-NLS-1$
+		/** An invocation which reused the completion node and applicable templates of the previous invocation at the same receiver */
+		REUSED_INVOCATIONS("reused invocations"), //$NON-NLS-1$
+		/** An invocation which deferred the previews of templates to the background because the completion budget was exceeded */
+		DEFERRED_INVOCATIONS("deferred invocations"), //$NON-NLS-1$
+		/** The DOM AST of the {@link org.eclipse.jdt.ui.SharedASTProvider} could be reused */
+		SHARED_AST_HITS("shared AST hits"), //$NON-NLS-1$
+		/** The DOM AST had to be created by a partial parse */
+		FOCAL_PARSE_FALLBACKS("focal parse fallbacks"); //$NON-NLS-1$
+
+		private final String label;
+
+		private Counter(String label) {
+			this.label = label;
+		}
+	}
+
+	private static final PostfixCompletionStats fgDefault = new PostfixCompletionStats();
+
+	private final Histogram[] phases;
+	private final Histogram lines;
+	private final AtomicLong[] counters;
+	private final ConcurrentMap<String, AtomicInteger> budgetOverruns;
+
+	private PostfixCompletionStats() {
+		phases = new Histogram[Phase.values().length];
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = new Histogram();
+		}
+		lines = new Histogram();
+		counters = new AtomicLong[Counter.values().length];
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new AtomicLong();
+		}
+		budgetOverruns = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Returns the start time for a measurement.
+	 *
+	 * @return the current value of {@link System#nanoTime()} or <code>0</code> if the timing is disabled
+	 */
+	public static long start() {
+		return TIMING ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the duration of the given phase.
+	 *
+	 * @param phase the measured phase
+	 * @param start the value returned by {@link #start()} when the phase began
+	 */
+	public static void record(Phase phase, long start) {
+		if (!TIMING) {
+			return;
+		}
+		long duration = System.nanoTime() - start;
+		fgDefault.phases[phase.ordinal()].add(duration);
+		if (TRACE) {
+			System.out.println("[postfix] " + phase.label + ": " + TimeUnit.NANOSECONDS.toMicros(duration) + "us"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	/**
+	 * Increments the given counter.
+	 *
+	 * @param counter
+	 */
+	public static void increment(Counter counter) {
+		if (TIMING) {
+			fgDefault.counters[counter.ordinal()].incrementAndGet();
+		}
+	}
+
+	/**
+	 * Records the number of lines of the document the completion has been invoked in. This allows to correlate
+	 * the durations with the size of the compilation units.
+	 *
+	 * @param numberOfLines
+	 */
+	public static void recordDocumentSize(int numberOfLines) {
+		if (TIMING) {
+			fgDefault.lines.add(numberOfLines);
+		}
+	}
+
+	/**
+	 * Counts an overrun of the completion budget which occurred while the given template was evaluated.
+	 *
+	 * @param templateName the name of the template
+	 */
+	public static void recordBudgetOverrun(String templateName) {
+		AtomicInteger count = fgDefault.budgetOverruns.get(templateName);
+		if (count == null) {
+			AtomicInteger newCount = new AtomicInteger();
+			count = fgDefault.budgetOverruns.putIfAbsent(templateName, newCount);
+			if (count == null) {
+				count = newCount;
+			}
+		}
+		count.incrementAndGet();
+		if (TRACE) {
+			System.out.println("[postfix] completion budget exceeded by template " + templateName); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Returns the number of completion budget overruns per template name since the start of the workbench.
+	 *
+	 * @return a map from the template name to the number of overruns
+	 */
+	public static Map<String, Integer> getBudgetOverruns() {
+		Map<String, Integer> result = new TreeMap<>();
+		for (Map.Entry<String, AtomicInteger> entry : fgDefault.budgetOverruns.entrySet()) {
+			result.put(entry.getKey(), Integer.valueOf(entry.getValue().get()));
+		}
+		return result;
+	}
+
+	/**
+	 * Prints the histograms of the current content assist session and resets them.
+	 */
+	public static void dumpSession() {
+		if (!TIMING || fgDefault.counters[Counter.INVOCATIONS.ordinal()].get() == 0) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("[postfix] session summary (durations in us)\n"); //$NON-NLS-1$
+		sb.append(String.format("%-24s %8s %8s %8s %8s %8s %10s%n", "phase", "count", "p50", "p90", "p99", "max", "total")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+		for (Phase phase : Phase.values()) {
+			Histogram h = fgDefault.phases[phase.ordinal()];
+			sb.append(String.format("%-24s %8d %8d %8d %8d %8d %10d%n", phase.label, h.getCount(), //$NON-NLS-1$
+					toMicros(h.getPercentile(0.5)), toMicros(h.getPercentile(0.9)), toMicros(h.getPercentile(0.99)),
+					toMicros(h.getMax()), toMicros(h.getTotal())));
+			h.reset();
+		}
+		Histogram h = fgDefault.lines;
+		sb.append(String.format("%-24s %8d %8d %8d %8d %8d%n", "document lines", h.getCount(), //$NON-NLS-1$ //$NON-NLS-2$
+				h.getPercentile(0.5), h.getPercentile(0.9), h.getPercentile(0.99), h.getMax()));
+		h.reset();
+		for (Counter counter : Counter.values()) {
+			sb.append(counter.label).append(": ").append(fgDefault.counters[counter.ordinal()].getAndSet(0)).append('\n'); //$NON-NLS-1$
+		}
+		Map<String, Integer> overruns = getBudgetOverruns();
+		if (!overruns.isEmpty()) {
+			sb.append("budget overruns (total): ").append(overruns).append('\n'); //$NON-NLS-1$
+		}
+		System.out.print(sb);
+	}
+
+	private static long toMicros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+
+	private static boolean isOptionEnabled(String option) {
+		return "true".equalsIgnoreCase(Platform.getDebugOption(option)); //$NON-NLS-1$
+	}
+
+	/**
+	 * A thread safe histogram with 64 buckets, the bucket <code>i</code> contains the values in <code>[2^(i-1), 2^i)</code>.
+	 * Percentiles are reported as the upper bound of the bucket they fall into, which is sufficient to spot outliers.
+	 */
+	private static class Histogram {
+		private final AtomicLongArray buckets = new AtomicLongArray(64);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		void add(long value) {
+			if (value < 0) {
+				value = 0;
+			}
+			buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+			count.incrementAndGet();
+			total.addAndGet(value);
+			long currentMax;
+			while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+				// retry
+			}
+		}
+
+		long getCount() {
+			return count.get();
+		}
+
+		long getTotal() {
+			return total.get();
+		}
+
+		long getMax() {
+			return max.get();
+		}
+
+		long getPercentile(double percentile) {
+			long threshold = (long) Math.ceil(count.get() * percentile);
+			long seen = 0;
+			for (int i = 0; i < buckets.length(); i++) {
+				seen += buckets.get(i);
+				if (seen >= threshold && seen > 0) {
+					long upperBound = i >= 63 ? Long.MAX_VALUE : (1L << i) - 1;
+					return Math.min(upperBound, max.get());
+				}
+			}
+			return max.get();
+		}
+
+		void reset() {
+			for (int i = 0; i < buckets.length(); i++) {
+				buckets.set(i, 0);
+			}
+			count.set(0);
+			total.set(0);
+			max.set(0);
+		}
+	}
+}
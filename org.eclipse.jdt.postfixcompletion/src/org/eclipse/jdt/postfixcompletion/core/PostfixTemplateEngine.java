@@ -1,9 +1,14 @@
 package org.eclipse.jdt.postfixcompletion.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.eclipse.jdt.core.ICompilationUnit;
-import org.eclipse.jdt.internal.compiler.ast.ASTNode;
-import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.text.template.contentassist.TemplateEngine;
+import org.eclipse.jdt.postfixcompletion.core.PostfixCompletionStats.Phase;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
@@ -11,10 +16,13 @@ import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.templates.Template;
 import org.eclipse.jface.text.templates.TemplateContextType;
 import org.eclipse.jface.text.templates.TemplateProposal;
-import org.eclipse.swt.graphics.Point;
 
 /**
  * This is an extension to the existing {@link TemplateEngine} and is responsible for the creation of the {@link JavaStatementPostfixContext} instance.
+ * <br/>
+ * The engine does not keep any state of a code completion invocation, all information is passed in a {@link PostfixCompletionInvocation} to
+ * {@link #complete(PostfixCompletionInvocation)} which returns the proposals instead of collecting them in the engine. Thus a single engine
+ * can be used by concurrent invocations.
  * TODO If the super implementation of the {@link TemplateEngine#complete(ITextViewer, int, ICompilationUnit)} is rewritten and the creation of the context and {@link TemplateProposal} is
  * externalized to its own method we can get rid of the code duplication in the <code>complete(..)</code> method. 
  *
@@ -22,45 +30,160 @@ import org.eclipse.swt.graphics.Point;
 @SuppressWarnings("restriction")
 public class PostfixTemplateEngine extends TemplateEngine {
 	
-	protected ASTNode currentNode;
-	protected ASTNode parentNode;
+	private static final PostfixTemplateProposal[] NO_PROPOSALS = new PostfixTemplateProposal[0];
 
 	public PostfixTemplateEngine(TemplateContextType contextType) {
 		super(contextType);
 	}
 	
-	public void setASTNodes(ASTNode currentNode, ASTNode parentNode) {
-		this.currentNode = currentNode;
-		this.parentNode = parentNode;
-	}
-	
+	/**
+	 * Inherited from {@link TemplateEngine}, the proposals are collected in the engine. As the viewer does not provide the completion node
+	 * no template can be applied, use {@link #complete(PostfixCompletionInvocation)} instead.
+	 */
 	@Override
 	public void complete(ITextViewer viewer, int completionPosition, ICompilationUnit compilationUnit) {
-		IDocument document = viewer.getDocument();
-
-		if (!(getContextType() instanceof JavaStatementPostfixContextType))
+		if (viewer.getSelectedRange().y != 0) {
 			return;
+		}
+		PostfixCompletionInvocation invocation = new PostfixCompletionInvocation(viewer.getDocument(), completionPosition, compilationUnit, null, null);
+		getProposals().addAll(Arrays.asList(complete(invocation)));
+	}
+	
+	/**
+	 * Computes the postfix template proposals for the given invocation. This method is thread safe.
+	 * 
+	 * @param invocation the state of the code completion invocation
+	 * @return the proposals, never <code>null</code>
+	 */
+	public PostfixTemplateProposal[] complete(PostfixCompletionInvocation invocation) {
+		return complete(invocation, Long.MAX_VALUE, null);
+	}
+	
+	/**
+	 * Computes the postfix template proposals for the given invocation within a time budget. This method is thread safe.
+	 * <br/>
+	 * All applicable templates are proposed: checking a template only needs the type of the inner expression, which is resolved once per
+	 * receiver type. The costly step is the evaluation of the costly templates (see {@link PostfixTemplateIndex#isCostly(Template)}), which
+	 * creates a DOM AST or rewrites imports to compute the preview. The previews of the costly proposals are computed until the deadline
+	 * has passed, the remaining proposals are added to the given list and their previews can be computed later with
+	 * {@link #computePreviews(PostfixCompletionInvocation, PostfixTemplateProposal[])}.
+	 * 
+	 * @param invocation the state of the code completion invocation
+	 * @param deadline the deadline in terms of {@link System#nanoTime()}
+	 * @param deferred the list the proposals whose preview has not been computed are added to, if <code>null</code> the previews are
+	 * 		computed lazily when they are requested
+	 * @return the proposals, never <code>null</code>
+	 */
+	public PostfixTemplateProposal[] complete(PostfixCompletionInvocation invocation, long deadline, List<PostfixTemplateProposal> deferred) {
+		JavaStatementPostfixContext context = createContext(invocation);
+		if (context == null || !context.isInnerExpressionValue())
+			return NO_PROPOSALS;
 
-		Point selection = viewer.getSelectedRange();
+		long filterStart = PostfixCompletionStats.start();
+		PostfixTemplateIndex index = PostfixTemplateIndex.getDefault();
+		Set<Template> applicableTemplates = getApplicableTemplates(index, invocation, context);
+		IRegion region = getRegion(context);
 
-		String selectedText = null;
-		if (selection.y != 0) {
-			return;
+		List<PostfixTemplateProposal> result = new ArrayList<>();
+		List<PostfixTemplateProposal> costly = new ArrayList<>();
+		for (Template template : index.getTemplatesByPrefix(context.getPrefixKey())) {
+			if (applicableTemplates.contains(template) && context.canEvaluate(template)) {
+				PostfixTemplateProposal proposal = new PostfixTemplateProposal(template, context, region, getImage());
+				result.add(proposal);
+				if (index.isCostly(template)) {
+					costly.add(proposal);
+				}
+			}
 		}
+		PostfixCompletionStats.record(Phase.CAN_EVALUATE, filterStart);
 
-		JavaStatementPostfixContext context = ((JavaStatementPostfixContextType) getContextType()).createContext(document, completionPosition, selection.y, compilationUnit, currentNode, parentNode);
-		context.setVariable("selection", selectedText); //$NON-NLS-1$
-		int start = context.getStart();
-		int end = context.getEnd();
-		IRegion region = new Region(start, end - start);
+		if (deferred != null) {
+			boolean exceeded = false;
+			for (PostfixTemplateProposal proposal : costly) {
+				if (exceeded) {
+					deferred.add(proposal);
+					continue;
+				}
+				proposal.getAdditionalProposalInfo();
+				if (System.nanoTime() - deadline > 0) {
+					// The template which was evaluated while the deadline passed is reported, the previews of the following ones are deferred
+					PostfixCompletionStats.recordBudgetOverrun(proposal.getTemplate().getName());
+					exceeded = true;
+				}
+			}
+		}
+		return result.toArray(new PostfixTemplateProposal[result.size()]);
+	}
+	
+	/**
+	 * Computes the previews of the given proposals, whose evaluation has been deferred by {@link #complete(PostfixCompletionInvocation, long, List)}.
+	 * This method is thread safe and is meant to be called in a background job, thus the invocation must refer to a snapshot of the document
+	 * (see {@link PostfixCompletionInvocation#forDocument(IDocument)}) rather than to the document of the editor. The previews must only be
+	 * handed to the proposals (see {@link PostfixTemplateProposal#setAdditionalProposalInfo(String)}) as long as the document of the editor
+	 * still has the contents of the snapshot.
+	 * 
+	 * @param invocation the state of the code completion invocation on a snapshot of the document
+	 * @param proposals the proposals whose preview has been deferred
+	 * @return the preview of each proposal, never <code>null</code>
+	 */
+	public String[] computePreviews(PostfixCompletionInvocation invocation, PostfixTemplateProposal[] proposals) {
+		String[] result = new String[proposals.length];
+		JavaStatementPostfixContext context = createContext(invocation);
+		if (context == null || !context.isInnerExpressionValue())
+			return result;
 
-		Template[] templates = JavaPlugin.getDefault().getTemplateStore().getTemplates(getContextType().getId());
+		IRegion region = getRegion(context);
+		for (int i = 0; i < proposals.length; i++) {
+			// The proposal is never shown, thus it does not need an image
+			result[i] = new PostfixTemplateProposal(proposals[i].getTemplate(), context, region, null).getAdditionalProposalInfo();
+		}
+		return result;
+	}
+	
+	private JavaStatementPostfixContext createContext(PostfixCompletionInvocation invocation) {
+		if (!(getContextType() instanceof JavaStatementPostfixContextType))
+			return null;
 
-		for (int i = 0; i != templates.length; i++) {
-			Template template = templates[i];
-			if (context.canEvaluate(template)) {
-				getProposals().add(new PostfixTemplateProposal(template, context, region, getImage()));
+		JavaStatementPostfixContext context = ((JavaStatementPostfixContextType) getContextType()).createContext(invocation.getDocument(), invocation.getOffset(), 0,
+				invocation.getCompilationUnit(), invocation.getCompletionNode(), invocation.getCompletionNodeParent());
+		context.setVariable("selection", null); //$NON-NLS-1$
+		return context;
+	}
+	
+	private IRegion getRegion(JavaStatementPostfixContext context) {
+		int start = context.getStart();
+		int end = context.getEnd();
+		return new Region(start, end - start);
+	}
+	
+	/**
+	 * Returns the templates which can be applied to the inner expression of the given invocation. The result is
+	 * shared by the invocations of the same receiver expression (see {@link PostfixCompletionInvocation#forOffset(int)}).
+	 */
+	private Set<Template> getApplicableTemplates(PostfixTemplateIndex index, PostfixCompletionInvocation invocation, JavaStatementPostfixContext context) {
+		Set<Template> result = invocation.getApplicableTemplates(index);
+		if (result == null) {
+			result = findApplicableTemplates(index, context);
+			invocation.setApplicableTemplates(index, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Looks up the templates which can be applied to the inner expression of the given context. Each receiver
+	 * type of the index is checked only once, independent of the number of templates requiring it.
+	 * 
+	 * @param index
+	 * @param context
+	 * @return the set of applicable templates
+	 */
+	private Set<Template> findApplicableTemplates(PostfixTemplateIndex index, JavaStatementPostfixContext context) {
+		Set<Template> result = new HashSet<>(index.getUnconstrainedTemplates());
+		for (String type : index.getReceiverTypes()) {
+			if (context.isInnerExpressionResolvingTo(type)) {
+				result.addAll(index.getTemplatesByType(type));
 			}
 		}
+		return result;
 	}
 }
@@ -0,0 +1,268 @@
+package org.eclipse.jdt.postfixcompletion.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.postfixcompletion.resolver.InnerExpressionResolver;
+import org.eclipse.jface.text.templates.Template;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+
+/**
+ * This class is a precompiled lookup structure over all postfix templates of the template store.
+ * <br/>
+ * The index is built once when the templates are first requested and is only rebuilt after the template store
+ * has been changed. It maps each required receiver type of the <code>inner_expression</code> variable
+ * (i.e. <code>java.util.Collection</code>, <code>array</code>, <code>boolean</code>) to the templates requiring it
+ * and keeps the template names in a prefix structure. This way {@link PostfixTemplateEngine} does not have to scan the patterns of
+ * all templates on every invocation of the code completion.
+ */
+@SuppressWarnings("restriction")
+public class PostfixTemplateIndex {
+
+	/**
+	 * Preference key which is used by {@link JavaPlugin#getTemplateStore()} to persist the templates.
+	 */
+	private static final String TEMPLATES_KEY = "org.eclipse.jdt.ui.text.custom_templates"; //$NON-NLS-1$
+
+	/**
+	 * Matches the <code>inner_expression</code> variables of a pattern, e.g. <code>${i:inner_expression(java.util.Collection,array)}</code>.
+	 * Like in any template variable, the name may be empty or contain digits and underscores. The second group holds the comma separated
+	 * receiver types and flags, which cannot contain the characters delimiting variables.
+	 */
+	private static final Pattern INNER_EXPRESSION_PATTERN = Pattern.compile("\\$\\{(\\w*):" + InnerExpressionResolver.INNER_EXPRESSION_VAR + "\\(([^\\$\\{\\}]*)\\)\\}"); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * Matches the variables whose resolvers create a DOM AST or rewrite imports when the template is applied.
+	 */
+	private static final Pattern COSTLY_VARIABLE_PATTERN = Pattern.compile("\\$\\{[a-zA-Z_]*:(newField|newType|newActualType)\\("); //$NON-NLS-1$
+
+	private static final String[] NO_TYPES = new String[0];
+
+	private static PostfixTemplateIndex fgDefault;
+	private static IPropertyChangeListener fgTemplateStoreListener;
+
+	private final Template[] templates;
+	private final Map<Template, String[]> requiredTypes;
+	private final List<Template> unconstrainedTemplates;
+	private final Map<String, List<Template>> templatesByType;
+	private final NavigableMap<String, List<Template>> templatesByName;
+	private final Set<Template> costlyTemplates;
+
+	public PostfixTemplateIndex(Template[] templates) {
+		this(templates, computeRequiredTypes(templates), computeCostly(templates));
+	}
+
+	/**
+	 * Creates an index using the precompiled receiver types and costly flags of the given templates, i.e. from a {@link PostfixTemplateSnapshot}.
+	 *
+	 * @param templates
+	 * @param requiredTypes the receiver types of each template
+	 * @param costly the costly flag of each template
+	 */
+	PostfixTemplateIndex(Template[] templates, String[][] requiredTypes, boolean[] costly) {
+		this.templates = templates;
+		this.requiredTypes = new HashMap<>();
+		this.unconstrainedTemplates = new ArrayList<>();
+		this.templatesByType = new LinkedHashMap<>();
+		this.templatesByName = new TreeMap<>();
+		this.costlyTemplates = new HashSet<>();
+
+		for (int i = 0; i < templates.length; i++) {
+			Template template = templates[i];
+			String[] types = requiredTypes[i];
+			this.requiredTypes.put(template, types);
+			if (types.length == 0) {
+				unconstrainedTemplates.add(template);
+			}
+			for (String type : types) {
+				getOrCreate(templatesByType, type).add(template);
+			}
+			getOrCreate(templatesByName, template.getName().toLowerCase()).add(template);
+			if (costly[i]) {
+				costlyTemplates.add(template);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index over the postfix templates of the template store of the JDT UI plug-in.
+	 * The index is (re-)built on demand if the template store has been changed since the last call. If the
+	 * {@link PostfixTemplateSnapshot} of the state location is up to date, the index is read from it instead of the template store.
+	 *
+	 * @return the current template index
+	 */
+	public static synchronized PostfixTemplateIndex getDefault() {
+		if (fgTemplateStoreListener == null) {
+			fgTemplateStoreListener = new IPropertyChangeListener() {
+				@Override
+				public void propertyChange(PropertyChangeEvent event) {
+					if (TEMPLATES_KEY.equals(event.getProperty())) {
+						invalidate();
+					}
+				}
+			};
+			JavaPlugin.getDefault().getPreferenceStore().addPropertyChangeListener(fgTemplateStoreListener);
+		}
+		if (fgDefault == null) {
+			String key = PostfixTemplateSnapshot.computeKey(TEMPLATES_KEY);
+			fgDefault = PostfixTemplateSnapshot.read(key);
+			if (fgDefault == null) {
+				fgDefault = new PostfixTemplateIndex(JavaPlugin.getDefault().getTemplateStore().getTemplates(JavaStatementPostfixContextType.ID_ALL));
+				PostfixTemplateSnapshot.write(fgDefault, key);
+			}
+		}
+		return fgDefault;
+	}
+
+	/**
+	 * Discards the current default index. The next call of {@link #getDefault()} rebuilds it.
+	 */
+	public static synchronized void invalidate() {
+		fgDefault = null;
+	}
+
+	/**
+	 * Returns all templates of this index in the order of the template store.
+	 * @return
+	 */
+	public Template[] getTemplates() {
+		return templates;
+	}
+
+	/**
+	 * Returns the templates whose name starts with the given prefix (case insensitive).
+	 *
+	 * @param prefix the prefix of the template name which was typed in, may be empty
+	 * @return a list of templates, never <code>null</code>
+	 */
+	public List<Template> getTemplatesByPrefix(String prefix) {
+		NavigableMap<String, List<Template>> matches = templatesByName;
+		if (prefix.length() > 0) {
+			String lowerCasePrefix = prefix.toLowerCase();
+			matches = templatesByName.subMap(lowerCasePrefix, true, lowerCasePrefix + Character.MAX_VALUE, false);
+		}
+		List<Template> result = new ArrayList<>();
+		for (List<Template> templateList : matches.values()) {
+			result.addAll(templateList);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the templates which do not restrict the type of the <code>inner_expression</code>.
+	 * @return
+	 */
+	public List<Template> getUnconstrainedTemplates() {
+		return unconstrainedTemplates;
+	}
+
+	/**
+	 * Returns all receiver types which are required by at least one template of this index.
+	 * @return
+	 */
+	public Iterable<String> getReceiverTypes() {
+		return templatesByType.keySet();
+	}
+
+	/**
+	 * Returns the templates which can be applied to an inner expression resolving to the given receiver type.
+	 *
+	 * @param type a fully qualified type, the name of a base type or <code>array</code>
+	 * @return a list of templates, never <code>null</code>
+	 */
+	public List<Template> getTemplatesByType(String type) {
+		List<Template> result = templatesByType.get(type);
+		if (result == null) {
+			return Collections.emptyList();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given template contains variables which need a DOM AST or import rewriting
+	 * (<code>newField</code>, <code>newType</code>, <code>newActualType</code>).
+	 * 
+	 * @param template
+	 * @return true if the evaluation of the template is costly, false otherwise
+	 */
+	public boolean isCostly(Template template) {
+		return costlyTemplates.contains(template);
+	}
+
+	/**
+	 * Returns the receiver types the <code>inner_expression</code> of the given template is restricted to.
+	 * If the template is not part of this index its pattern is analyzed on the fly.
+	 *
+	 * @param template
+	 * @return the required types or an empty array if the template can be applied to any inner expression
+	 */
+	public String[] getRequiredTypes(Template template) {
+		String[] result = requiredTypes.get(template);
+		if (result == null) {
+			return computeRequiredTypes(template);
+		}
+		return result;
+	}
+
+	private static String[][] computeRequiredTypes(Template[] templates) {
+		String[][] result = new String[templates.length][];
+		for (int i = 0; i < templates.length; i++) {
+			result[i] = computeRequiredTypes(templates[i]);
+		}
+		return result;
+	}
+
+	private static boolean[] computeCostly(Template[] templates) {
+		boolean[] result = new boolean[templates.length];
+		for (int i = 0; i < templates.length; i++) {
+			result[i] = COSTLY_VARIABLE_PATTERN.matcher(templates[i].getPattern()).find();
+		}
+		return result;
+	}
+
+	private static String[] computeRequiredTypes(Template template) {
+		Matcher matcher = INNER_EXPRESSION_PATTERN.matcher(template.getPattern());
+		List<String> result = null;
+		while (matcher.find()) {
+			String[] types = matcher.group(2).split(",");
+			for (String s : types) {
+				s = s.trim();
+				if (!arrayContains(InnerExpressionResolver.FLAGS, s)) {
+					if (result == null) {
+						result = new ArrayList<>();
+					}
+					result.add(s);
+				}
+			}
+		}
+		return (result == null) ? NO_TYPES : result.toArray(new String[result.size()]);
+	}
+
+	private static boolean arrayContains(Object[] array, Object o) {
+		for (Object a : array) {
+			if (a.equals(o)) return true;
+		}
+		return false;
+	}
+
+	private static List<Template> getOrCreate(Map<String, List<Template>> map, String key) {
+		List<Template> result = map.get(key);
+		if (result == null) {
+			result = new ArrayList<>();
+			map.put(key, result);
+		}
+		return result;
+	}
+}
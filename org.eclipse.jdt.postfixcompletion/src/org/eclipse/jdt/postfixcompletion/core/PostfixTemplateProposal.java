@@ -15,27 +15,86 @@ import org.eclipse.swt.graphics.Image;
  * The class overrides the methods {@link #getReplaceEndOffset()} and {@link #validate(IDocument, int, DocumentEvent)} to
  * allow replacement of existing code input and fixes a bug in the {@link TemplateProposal#validate(IDocument, int, DocumentEvent)} method. The <code>validate(..)</code> method
  * in the super implementation should not use {@link #getReplaceEndOffset()} to determine the prefix of the typed in template name.
+ * <br/>
+ * Only the display string, the image and the relevance of a proposal are computed up front. The template is evaluated
+ * in {@link #apply(org.eclipse.jface.text.ITextViewer, char, int, int)} and, read-only, when the additional info is requested.
  */
 @SuppressWarnings("restriction")
 public class PostfixTemplateProposal extends TemplateProposal {
 
+	private String additionalProposalInfo;
+	private boolean additionalProposalInfoComputed;
+	private int nameStart = -1;
+
 	public PostfixTemplateProposal(Template template, TemplateContext context,
 			IRegion region, Image image) {
 		super(template, context, region, image);
 	}
+	
+	/*
+	 * The additional info requires a (read-only) evaluation of the template, thus it is computed
+	 * only when it is requested for the first time and reused afterwards. It may also be provided
+	 * by a {@link DeferredProposalJob}, thus the cached info is guarded by the proposal.
+	 * 
+	 * (non-Javadoc)
+	 * @see org.eclipse.jdt.internal.ui.text.template.contentassist.TemplateProposal#getAdditionalProposalInfo()
+	 */
+	@Override
+	public String getAdditionalProposalInfo() {
+		synchronized (this) {
+			if (additionalProposalInfoComputed) {
+				return additionalProposalInfo;
+			}
+		}
+		String info = super.getAdditionalProposalInfo();
+		setAdditionalProposalInfo(info);
+		return info;
+	}
+
+	/**
+	 * Returns <code>true</code> if the additional info has already been computed or set.
+	 * @return
+	 */
+	synchronized boolean hasAdditionalProposalInfo() {
+		return additionalProposalInfoComputed;
+	}
+
+	/**
+	 * Sets the additional info which has been computed by an equal proposal, i.e. for the same template on a snapshot of the document.
+	 *
+	 * @param info the additional info
+	 */
+	synchronized void setAdditionalProposalInfo(String info) {
+		additionalProposalInfo = info;
+		additionalProposalInfoComputed = true;
+	}
 
 	/*
+	 * The proposals are filtered in place while the user continues typing the template name. The start of the template name
+	 * is computed once, the typed characters are compared with the template name without copying them.
+	 * 
 	 * (non-Javadoc)
 	 * @see org.eclipse.jdt.internal.ui.text.template.contentassist.TemplateProposal#validate(org.eclipse.jface.text.IDocument, int, org.eclipse.jface.text.DocumentEvent)
 	 */
 	@Override
 	public boolean validate(IDocument document, int offset, DocumentEvent event) {
 		if (getContext() instanceof JavaStatementPostfixContext) {
-			JavaStatementPostfixContext c = (JavaStatementPostfixContext) getContext();
+			if (nameStart < 0) {
+				JavaStatementPostfixContext c = (JavaStatementPostfixContext) getContext();
+				nameStart = c.getStart() + c.getAffectedSourceRegion().getLength() + 1;
+			}
+			String name = getTemplate().getName();
+			int length = offset - nameStart;
+			if (length < 0 || length > name.length()) {
+				return false;
+			}
 			try {
-				int start = c.getStart() + c.getAffectedSourceRegion().getLength() + 1;
-				String content = document.get(start, offset - start);
-				return this.getTemplate().getName().toLowerCase().startsWith(content.toLowerCase());
+				for (int i = 0; i < length; i++) {
+					if (Character.toLowerCase(document.getChar(nameStart + i)) != Character.toLowerCase(name.charAt(i))) {
+						return false;
+					}
+				}
+				return true;
 			} catch (BadLocationException e) {
 				e.printStackTrace();
 			}
@@ -0,0 +1,188 @@
+package org.eclipse.jdt.postfixcompletion.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.runtime.IExtension;
+import org.eclipse.core.runtime.IExtensionPoint;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jface.text.templates.Template;
+import org.osgi.framework.Bundle;
+
+/**
+ * This class persists a {@link PostfixTemplateIndex} in a binary file in the state location of this plug-in.
+ * <br/>
+ * The snapshot contains the postfix templates of the template store together with the precompiled receiver types and costly flags
+ * of each template. It allows to build the index on the first code completion after the start of the workbench without loading
+ * and parsing the XML template files. The snapshot is keyed by the templates which are stored in the preferences (user defined,
+ * modified and deleted templates), the locale the descriptions of the contributed templates are translated to and the version and
+ * modification time of every bundle contributing templates.
+ * If the key of the snapshot does not match the current key, the index is built from the template store and a new snapshot is written.
+ */
+@SuppressWarnings("restriction")
+public class PostfixTemplateSnapshot {
+
+	private static final String FILE_NAME = "postfixtemplates.bin"; //$NON-NLS-1$
+	private static final int MAGIC = 0x50465453; // PFTS
+	private static final int FORMAT_VERSION = 2;
+
+	private static final String TEMPLATES_EXTENSION_POINT = "org.eclipse.ui.editors.templates"; //$NON-NLS-1$
+
+	private PostfixTemplateSnapshot() {
+	}
+
+	/**
+	 * Computes the key of the current template configuration. A snapshot is only valid if it has been written with the same key.
+	 *
+	 * @param templatesKey the preference key the template store persists the templates with
+	 * @return the key
+	 */
+	static String computeKey(String templatesKey) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(FORMAT_VERSION).append('\n');
+		sb.append(Platform.getNL()).append('\n');
+		Set<String> contributors = new TreeSet<>();
+		IExtensionPoint point = Platform.getExtensionRegistry().getExtensionPoint(TEMPLATES_EXTENSION_POINT);
+		if (point != null) {
+			for (IExtension extension : point.getExtensions()) {
+				Bundle bundle = Platform.getBundle(extension.getContributor().getName());
+				if (bundle != null) {
+					contributors.add(bundle.getSymbolicName() + '_' + bundle.getVersion() + '@' + bundle.getLastModified());
+				}
+			}
+		}
+		for (String contributor : contributors) {
+			sb.append(contributor).append('\n');
+		}
+		sb.append(JavaPlugin.getDefault().getPreferenceStore().getString(templatesKey));
+		return sb.toString();
+	}
+
+	/**
+	 * Reads the snapshot from the state location.
+	 *
+	 * @param key the key of the current template configuration
+	 * @return the index of the snapshot or <code>null</code> if there is no snapshot, it is outdated or it can not be read
+	 */
+	static PostfixTemplateIndex read(String key) {
+		File file = getFile();
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		try {
+			// The snapshot is small, it is read at once rather than mapped as a mapped file can not be replaced on Windows
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || !key.equals(getString(buffer))) {
+				return null;
+			}
+			int count = buffer.getInt();
+			Template[] templates = new Template[count];
+			String[][] requiredTypes = new String[count][];
+			boolean[] costly = new boolean[count];
+			for (int i = 0; i < count; i++) {
+				String name = getString(buffer);
+				String description = getString(buffer);
+				String contextTypeId = getString(buffer);
+				String pattern = getString(buffer);
+				byte flags = buffer.get();
+				templates[i] = new Template(name, description, contextTypeId, pattern, (flags & 1) != 0);
+				costly[i] = (flags & 2) != 0;
+				requiredTypes[i] = new String[buffer.getInt()];
+				for (int j = 0; j < requiredTypes[i].length; j++) {
+					requiredTypes[i][j] = getString(buffer);
+				}
+			}
+			return new PostfixTemplateIndex(templates, requiredTypes, costly);
+		} catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+			// The snapshot is corrupt, it is replaced by the next call of write
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the given index to the state location. The file is replaced atomically, thus concurrent readers
+	 * never see a partially written snapshot.
+	 *
+	 * @param index the index which has been built from the template store
+	 * @param key the key of the current template configuration
+	 */
+	static void write(PostfixTemplateIndex index, String key) {
+		File file = getFile();
+		if (file == null) {
+			return;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			putString(out, key);
+			Template[] templates = index.getTemplates();
+			out.writeInt(templates.length);
+			for (Template template : templates) {
+				putString(out, template.getName());
+				putString(out, template.getDescription());
+				putString(out, template.getContextTypeId());
+				putString(out, template.getPattern());
+				out.writeByte((template.isAutoInsertable() ? 1 : 0) | (index.isCostly(template) ? 2 : 0));
+				String[] types = index.getRequiredTypes(template);
+				out.writeInt(types.length);
+				for (String type : types) {
+					putString(out, type);
+				}
+			}
+			out.flush();
+
+			Path target = file.toPath();
+			Path temp = Files.createTempFile(target.getParent(), FILE_NAME, null);
+			try {
+				Files.write(temp, bytes.toByteArray());
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			// The snapshot is only an optimization, the index is built from the template store again on the next start
+		}
+	}
+
+	private static File getFile() {
+		Bundle bundle = Platform.getBundle(PostfixCompletionPreferences.PLUGIN_ID);
+		if (bundle == null) {
+			return null;
+		}
+		return Platform.getStateLocation(bundle).append(FILE_NAME).toFile();
+	}
+
+	private static void putString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		ByteBuffer slice = buffer.slice();
+		slice.limit(length);
+		buffer.position(buffer.position() + length);
+		return StandardCharsets.UTF_8.decode(slice).toString();
+	}
+}
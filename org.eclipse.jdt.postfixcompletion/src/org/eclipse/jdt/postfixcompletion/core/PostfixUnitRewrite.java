@@ -0,0 +1,143 @@
+package org.eclipse.jdt.postfixcompletion.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.rewrite.ASTRewrite;
+import org.eclipse.jdt.core.dom.rewrite.ImportRewrite;
+import org.eclipse.jdt.core.dom.rewrite.ListRewrite;
+import org.eclipse.jdt.internal.corext.codemanipulation.StubUtility;
+import org.eclipse.jface.text.Document;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.TextEdit;
+
+/**
+ * This class collects the imports and fields which are added by the postfix templates applied to a single compilation unit without an editor.
+ * <br/>
+ * All changes are recorded on the DOM AST of the original source, which is shared by the expansions of the compilation unit, rather than applied
+ * to its document (see {@link JavaStatementPostfixContext#setUnitRewrite(PostfixUnitRewrite)}). {@link #createEdit(String)} turns them into the
+ * edits of a single {@link ImportRewrite} and a single {@link ASTRewrite}.
+ * <br/>
+ * The ASTs of the compilation units of a project may share their bindings, thus all bindings are resolved while holding the lock
+ * passed to the constructor.
+ */
+@SuppressWarnings("restriction")
+public class PostfixUnitRewrite {
+
+	private final CompilationUnit ast;
+	private final Object lock;
+	private final ImportRewrite importRewrite;
+	private final ASTRewrite astRewrite;
+	private final Set<String> fieldNames = new HashSet<>();
+
+	private String[] importsBefore;
+	private final List<ASTNode> fieldsAdded = new ArrayList<>();
+	private final List<ListRewrite> fieldLists = new ArrayList<>();
+
+	/**
+	 * @param ast the AST of the compilation unit with resolved bindings, created from its original source
+	 * @param lock the lock which guards the bindings of the AST
+	 */
+	public PostfixUnitRewrite(CompilationUnit ast, Object lock) {
+		this.ast = ast;
+		this.lock = lock;
+		this.importRewrite = StubUtility.createImportRewrite(ast, true);
+		this.astRewrite = ASTRewrite.create(ast.getAST());
+	}
+
+	public CompilationUnit getAST() {
+		return ast;
+	}
+
+	Object getLock() {
+		return lock;
+	}
+
+	ImportRewrite getImportRewrite() {
+		return importRewrite;
+	}
+
+	ASTRewrite getASTRewrite() {
+		return astRewrite;
+	}
+
+	/**
+	 * Returns the names of the fields which have been added by the expansions so far.
+	 * @return
+	 */
+	String[] getFieldNames() {
+		return fieldNames.toArray(new String[fieldNames.size()]);
+	}
+
+	void fieldAdded(ListRewrite list, ASTNode field, String name) {
+		fieldLists.add(list);
+		fieldsAdded.add(field);
+		fieldNames.add(name);
+	}
+
+	/**
+	 * Starts recording the changes of a single expansion, which are discarded by {@link #rollback()} if the expansion fails.
+	 */
+	public void begin() {
+		importsBefore = importRewrite.getAddedImports();
+		fieldLists.clear();
+		fieldsAdded.clear();
+	}
+
+	/**
+	 * Discards the imports and fields which have been added since the last call of {@link #begin()}.
+	 */
+	public void rollback() {
+		if (importsBefore == null) {
+			return;
+		}
+		Set<String> before = new HashSet<>(Arrays.asList(importsBefore));
+		for (String name : importRewrite.getAddedImports()) {
+			if (!before.contains(name)) {
+				importRewrite.removeImport(name);
+			}
+		}
+		for (int i = 0; i < fieldsAdded.size(); i++) {
+			// Removing an inserted node undoes the insertion
+			fieldLists.get(i).remove(fieldsAdded.get(i), null);
+		}
+		fieldLists.clear();
+		fieldsAdded.clear();
+		importsBefore = null;
+	}
+
+	/**
+	 * Returns the edit of all recorded imports and fields against the original source. The edit is flat, i.e. it consists of a
+	 * {@link MultiTextEdit} whose children have no children, thus further edits of other regions can be added to it.
+	 *
+	 * @param source the original source of the compilation unit
+	 * @return the edit
+	 * @throws CoreException if the imports can not be rewritten
+	 */
+	public MultiTextEdit createEdit(String source) throws CoreException {
+		MultiTextEdit result = new MultiTextEdit();
+		synchronized (lock) {
+			addFlattened(result, importRewrite.rewriteImports(null));
+			ICompilationUnit unit = (ICompilationUnit) ast.getJavaElement();
+			addFlattened(result, astRewrite.rewriteAST(new Document(source), unit.getJavaProject().getOptions(true)));
+		}
+		return result;
+	}
+
+	private static void addFlattened(MultiTextEdit result, TextEdit edit) {
+		if (edit.hasChildren()) {
+			for (TextEdit child : edit.removeChildren()) {
+				addFlattened(result, child);
+			}
+		} else if (!(edit instanceof MultiTextEdit)) {
+			result.addChild(edit);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package org.eclipse.jdt.postfixcompletion.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.compiler.CharOperation;
+import org.eclipse.jdt.internal.compiler.lookup.ArrayBinding;
+import org.eclipse.jdt.internal.compiler.lookup.ReferenceBinding;
+import org.eclipse.jdt.internal.compiler.lookup.TypeBinding;
+
+/**
+ * This class caches the supertype closure of {@link TypeBinding}s for the lifetime of a single code completion invocation.
+ * <br/>
+ * The closure of a type binding (the binding itself and all of its superclasses and superinterfaces) is computed once by an
+ * iterative traversal of the inheritance graph. For each closure a bit set over the receiver types of the {@link PostfixTemplateIndex}
+ * is stored, so all templates can be checked against a single closure computation. The readable names of the visited bindings are
+ * interned per cache, thus shared supertypes like <code>java.lang.Object</code> are converted to a name only once.
+ */
+@SuppressWarnings("restriction")
+public class SupertypeClosureCache {
+
+	private static final char[] ARRAY_TYPE = "array".toCharArray(); //$NON-NLS-1$
+
+	private final List<char[]> typeKeys;
+	private final Map<String, Integer> typeKeyIds;
+	private final Map<TypeBinding, Closure> closures;
+	private final Map<TypeBinding, char[]> readableNames;
+
+	/**
+	 * The supertype closure of a single type binding.
+	 */
+	private static class Closure {
+		final char[][] names;
+		final boolean isArray;
+		final BitSet matches;
+		final BitSet evaluated;
+
+		Closure(char[][] names, boolean isArray) {
+			this.names = names;
+			this.isArray = isArray;
+			this.matches = new BitSet();
+			this.evaluated = new BitSet();
+		}
+	}
+
+	/**
+	 * Creates a new cache which precomputes the given receiver types for every closure.
+	 *
+	 * @param receiverTypes the receiver types of the {@link PostfixTemplateIndex}
+	 */
+	public SupertypeClosureCache(Iterable<String> receiverTypes) {
+		typeKeys = new ArrayList<>();
+		typeKeyIds = new HashMap<>();
+		closures = new IdentityHashMap<>();
+		readableNames = new IdentityHashMap<>();
+		for (String type : receiverTypes) {
+			getTypeKeyId(type);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the given {@link TypeBinding} itself or one of its superclasses/superinterfaces resolves to the given signature.
+	 *
+	 * @param binding a TypeBinding
+	 * @param signature a fully qualified type or <code>array</code>
+	 * @return true if the closure of the given TypeBinding contains the given signature, false otherwise
+	 */
+	public boolean resolvesTo(TypeBinding binding, String signature) {
+		if (binding == null) {
+			return false;
+		}
+		Closure closure = getClosure(binding);
+		int id = getTypeKeyId(signature);
+		if (!closure.evaluated.get(id)) {
+			evaluate(closure, id);
+		}
+		return closure.matches.get(id);
+	}
+
+	private Closure getClosure(TypeBinding binding) {
+		Closure closure = closures.get(binding);
+		if (closure == null) {
+			closure = computeClosure(binding);
+			for (int id = 0; id < typeKeys.size(); id++) {
+				evaluate(closure, id);
+			}
+			closures.put(binding, closure);
+		}
+		return closure;
+	}
+
+	private Closure computeClosure(TypeBinding binding) {
+		List<char[]> names = new ArrayList<>();
+		Map<TypeBinding, Boolean> visited = new IdentityHashMap<>();
+		Deque<TypeBinding> pending = new ArrayDeque<>();
+		pending.push(binding);
+		while (!pending.isEmpty()) {
+			TypeBinding current = pending.pop();
+			if (visited.put(current, Boolean.TRUE) != null) {
+				continue;
+			}
+			names.add(getReadableName(current));
+			ReferenceBinding superclass = current.superclass();
+			if (superclass != null) {
+				pending.push(superclass);
+			}
+			ReferenceBinding[] superInterfaces = current.superInterfaces();
+			if (superInterfaces != null) {
+				for (int i = superInterfaces.length - 1; i >= 0; i--) {
+					if (superInterfaces[i] != null) {
+						pending.push(superInterfaces[i]);
+					}
+				}
+			}
+		}
+		return new Closure(names.toArray(new char[names.size()][]), binding instanceof ArrayBinding);
+	}
+
+	private void evaluate(Closure closure, int id) {
+		char[] key = typeKeys.get(id);
+		boolean result = closure.isArray && CharOperation.equals(key, ARRAY_TYPE);
+		for (int i = 0; i < closure.names.length && !result; i++) {
+			result = CharOperation.prefixEquals(key, closure.names[i]);
+		}
+		closure.matches.set(id, result);
+		closure.evaluated.set(id);
+	}
+
+	private char[] getReadableName(TypeBinding binding) {
+		char[] name = readableNames.get(binding);
+		if (name == null) {
+			name = binding.readableName();
+			readableNames.put(binding, name);
+		}
+		return name;
+	}
+
+	private int getTypeKeyId(String type) {
+		Integer id = typeKeyIds.get(type);
+		if (id == null) {
+			id = Integer.valueOf(typeKeys.size());
+			typeKeys.add(type.toCharArray());
+			typeKeyIds.put(type, id);
+		}
+		return id.intValue();
+	}
+}
@@ -76,6 +76,11 @@ public class NewFieldResolver extends TemplateVariableResolver {
 		TextEdit te = jc.addField(newType, names[0], publicField, forceStatic, finalField, (initValue && ref instanceof JavaVariable) ? getValueFromVariable((JavaVariable) ref) : null);
 		if (te != null) {
 			jc.markAsUsed(names[0]);
+			if (jc.hasUnitRewrite()) {
+				// The field has been recorded in the rewrite of a batch expansion, there is no linked mode
+				mv.setResolved(true);
+				return;
+			}
 			// We can apply it to the context
 			jc.applyTextEdit(te);
 			mv.setResolved(true);